@@ -0,0 +1,81 @@
+package org.xmlcml.graphics.svg.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.linestuff.ElementNeighbourhoodManager;
+import org.xmlcml.graphics.svg.linestuff.LineMerger;
+import org.xmlcml.graphics.svg.linestuff.LineMerger.MergeMethod;
+import org.xmlcml.graphics.svg.linestuff.Path2ShapeConverter;
+
+/** shape conversion, line merging and neighbour search.
+ *
+ * The converter modifies its paths, so they are recreated before each invocation (not timed).
+ *
+ * @author pm286
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+
+	private static final double LINE_EPS = 0.01;
+
+	@Param({"100", "1000", "10000"})
+	public int size;
+
+	private SyntheticPage page;
+	private List<SVGPath> pathList;
+	private List<SVGLine> lineList;
+	private List<SVGElement> elementList;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		page = new SyntheticPage(size, 1L);
+		lineList = page.createLines();
+		elementList = new ArrayList<SVGElement>();
+		elementList.addAll(lineList);
+		elementList.addAll(page.createTexts());
+	}
+
+	@Setup(Level.Invocation)
+	public void createPaths() {
+		pathList = page.createPaths();
+	}
+
+	@Benchmark
+	public List<List<SVGShape>> convertPathsToShapes() {
+		return new Path2ShapeConverter().convertPathsToShapesAndSplitAtMoves(pathList);
+	}
+
+	@Benchmark
+	public List<SVGLine> mergeLines() {
+		return LineMerger.mergeLines(lineList, LINE_EPS, MergeMethod.TOUCHING_LINES);
+	}
+
+	@Benchmark
+	public ElementNeighbourhoodManager createNeighbourhoodManager() {
+		return new ElementNeighbourhoodManager(elementList);
+	}
+}
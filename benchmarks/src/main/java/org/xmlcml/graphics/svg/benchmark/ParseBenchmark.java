@@ -0,0 +1,61 @@
+package org.xmlcml.graphics.svg.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.path.SVGPathParser;
+
+/** reading pages and parsing path d strings.
+ *
+ * @author pm286
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	public int size;
+
+	private byte[] svgBytes;
+	private List<String> dList;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		SyntheticPage page = new SyntheticPage(size, 1L);
+		svgBytes = page.getSVGBytes();
+		dList = page.createDStrings();
+	}
+
+	@Benchmark
+	public SVGElement readAndCreateSVG() {
+		return SVGElement.readAndCreateSVG(new ByteArrayInputStream(svgBytes));
+	}
+
+	@Benchmark
+	public void parseDString(Blackhole blackhole) {
+		SVGPathParser parser = new SVGPathParser();
+		for (String d : dList) {
+			blackhole.consume(parser.parseDString(d));
+		}
+	}
+}
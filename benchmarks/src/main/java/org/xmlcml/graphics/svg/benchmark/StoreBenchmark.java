@@ -0,0 +1,51 @@
+package org.xmlcml.graphics.svg.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.store.SVGStore;
+
+/** the whole SVGStore pipeline on a parsed page.
+ *
+ * The store copies its input (default), so the same page is reused.
+ *
+ * @author pm286
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreBenchmark {
+
+	@Param({"100", "1000", "5000"})
+	public int size;
+
+	private SVGElement svgElement;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		svgElement = new SyntheticPage(size, 1L).createSVGElement();
+	}
+
+	@Benchmark
+	public SVGStore readGraphicsElements() {
+		SVGStore store = new SVGStore();
+		store.readGraphicsElements(svgElement);
+		return store;
+	}
+}
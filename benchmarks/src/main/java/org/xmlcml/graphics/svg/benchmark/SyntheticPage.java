@@ -0,0 +1,198 @@
+package org.xmlcml.graphics.svg.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGText;
+
+/** generates reproducible pages that scale with size.
+ *
+ * Each unit of size adds roughly what a dense plot or table page has per cell:
+ * one character, one axial line split into two touching segments (to be merged),
+ * a rectangle, a polyline and a curve as paths (to be converted to shapes).
+ * Pages grow downwards so that density (and neighbour counts) stay constant.
+ *
+ * @author pm286
+ *
+ */
+public class SyntheticPage {
+
+	private static final String SVG_NS = "http://www.w3.org/2000/svg";
+	private static final int UNITS_PER_ROW = 50;
+	private static final double CELL = 12.0;
+
+	private int size;
+	private long seed;
+	private String svgString;
+
+	/**
+	 * @param size number of units
+	 * @param seed for Random
+	 */
+	public SyntheticPage(int size, long seed) {
+		this.size = size;
+		this.seed = seed;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/** page as serialized SVG.
+	 *
+	 * @return
+	 */
+	public String getSVGString() {
+		if (svgString == null) {
+			svgString = createSVGString();
+		}
+		return svgString;
+	}
+
+	public byte[] getSVGBytes() {
+		try {
+			return getSVGString().getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("cannot encode", e);
+		}
+	}
+
+	/** newly parsed page.
+	 *
+	 * @return
+	 */
+	public SVGElement createSVGElement() {
+		return SVGElement.readAndCreateSVG(new ByteArrayInputStream(getSVGBytes()));
+	}
+
+	/** d attributes of all paths (in page order).
+	 *
+	 * @return
+	 */
+	public List<String> createDStrings() {
+		List<String> dList = new ArrayList<String>();
+		Random pathRandom = new Random(seed + 1);
+		for (int i = 0; i < size; i++) {
+			addUnitDStrings(dList, pathRandom, getX(i), getY(i));
+		}
+		return dList;
+	}
+
+	/** new paths (may be modified by converters).
+	 *
+	 * @return
+	 */
+	public List<SVGPath> createPaths() {
+		List<SVGPath> pathList = new ArrayList<SVGPath>();
+		for (String d : createDStrings()) {
+			pathList.add(new SVGPath(d));
+		}
+		return pathList;
+	}
+
+	/** axial line segments; each unit has two touching segments (horizontal or vertical).
+	 *
+	 * @return
+	 */
+	public List<SVGLine> createLines() {
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		Random lineRandom = new Random(seed);
+		for (int i = 0; i < size; i++) {
+			Real2[] points = createLinePoints(lineRandom, i);
+			lineList.add(new SVGLine(points[0], points[1]));
+			lineList.add(new SVGLine(points[1], points[2]));
+		}
+		return lineList;
+	}
+
+	/** single characters in rows.
+	 *
+	 * @return
+	 */
+	public List<SVGText> createTexts() {
+		List<SVGText> textList = new ArrayList<SVGText>();
+		for (int i = 0; i < size; i++) {
+			SVGText text = new SVGText(new Real2(getX(i), getY(i) + CELL / 2), getCharacter(i));
+			text.setFontSize(8.0);
+			textList.add(text);
+		}
+		return textList;
+	}
+
+	private String createSVGString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<svg xmlns=\"").append(SVG_NS).append("\">\n");
+		Random lineRandom = new Random(seed);
+		Random pathRandom = new Random(seed + 1);
+		List<String> dList = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			double x = getX(i);
+			double y = getY(i);
+			sb.append("<text x=\"").append(format(x)).append("\" y=\"").append(format(y + CELL / 2)).
+				append("\" style=\"font-size:8.0;fill:#000000;font-family:Helvetica;\">").
+				append(getCharacter(i)).append("</text>\n");
+			Real2[] points = createLinePoints(lineRandom, i);
+			appendLine(sb, points[0], points[1]);
+			appendLine(sb, points[1], points[2]);
+			dList.clear();
+			addUnitDStrings(dList, pathRandom, x, y);
+			for (String d : dList) {
+				sb.append("<path d=\"").append(d).append("\" style=\"stroke:#000000;fill:none;stroke-width:0.5;\"/>\n");
+			}
+		}
+		sb.append("</svg>\n");
+		return sb.toString();
+	}
+
+	private static Real2[] createLinePoints(Random random, int i) {
+		double x = getX(i);
+		double y = getY(i);
+		double length = CELL * (0.25 + 0.25 * random.nextDouble());
+		if (i % 2 == 0) {
+			return new Real2[] {new Real2(x, y), new Real2(x + length, y), new Real2(x + 2 * length, y)};
+		} else {
+			return new Real2[] {new Real2(x, y), new Real2(x, y + length), new Real2(x, y + 2 * length)};
+		}
+	}
+
+	private static void appendLine(StringBuilder sb, Real2 xy1, Real2 xy2) {
+		sb.append("<line x1=\"").append(format(xy1.getX())).append("\" y1=\"").append(format(xy1.getY())).
+			append("\" x2=\"").append(format(xy2.getX())).append("\" y2=\"").append(format(xy2.getY())).
+			append("\" style=\"stroke:#000000;stroke-width:0.5;\"/>\n");
+	}
+
+	private static void addUnitDStrings(List<String> dList, Random random, double x, double y) {
+		double w = CELL * (0.2 + 0.5 * random.nextDouble());
+		double h = CELL * (0.2 + 0.5 * random.nextDouble());
+		dList.add("M"+format(x)+" "+format(y)+" L"+format(x + w)+" "+format(y)+" L"+format(x + w)+" "+format(y + h)+
+				" L"+format(x)+" "+format(y + h)+" Z");
+		dList.add("M"+format(x)+" "+format(y + h)+" L"+format(x + w / 3)+" "+format(y + h / 2)+
+				" L"+format(x + 2 * w / 3)+" "+format(y + 0.8 * h)+" L"+format(x + w)+" "+format(y));
+		dList.add("M"+format(x)+" "+format(y)+" C"+format(x + w / 4)+" "+format(y + h)+" "+
+				format(x + 3 * w / 4)+" "+format(y - h)+" "+format(x + w)+" "+format(y));
+	}
+
+	private static double getX(int i) {
+		return 20.0 + (i % UNITS_PER_ROW) * CELL;
+	}
+
+	private static double getY(int i) {
+		return 20.0 + (i / UNITS_PER_ROW) * CELL;
+	}
+
+	private static String getCharacter(int i) {
+		return String.valueOf((char) ('a' + i % 26));
+	}
+
+	private static String format(double d) {
+		return String.format(Locale.US, "%.3f", d);
+	}
+}
@@ -24,7 +24,6 @@ import org.xmlcml.xml.XMLUtil;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.GeneralPath;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
@@ -473,7 +472,19 @@ public class GraphicsElement extends Element implements SVGConstants {
 	public StyleBundle getStyleBundle() {
 		String style = this.getStyle();
 		if (style != null) {
-			styleBundle = new StyleBundle(style);
+			styleBundle = new StyleBundle(StyleBundle.getSharedStyleBundle(style));
+		}
+		return styleBundle;
+	}
+
+	/** as getStyleBundle() but may return the shared parsed bundle, which must not be modified.
+	 * 
+	 * @return
+	 */
+	private StyleBundle getSharedStyleBundle() {
+		String style = this.getStyle();
+		if (style != null) {
+			styleBundle = StyleBundle.getSharedStyleBundle(style);
 		}
 		return styleBundle;
 	}
@@ -501,9 +512,7 @@ public class GraphicsElement extends Element implements SVGConstants {
 	}
 
 	private StyleBundle convertFromExplicitAttributes() {
-		if (styleBundle == null) {
-			styleBundle = new StyleBundle();
-		}
+		ensureModifiableStyleBundle();
 		styleBundle.processStyle(this.getAttributeValue(StyleBundle.STYLE));
 		styleBundle.convertAndRemoveExplicitAttributes(this);
 		return styleBundle;
@@ -511,13 +520,23 @@ public class GraphicsElement extends Element implements SVGConstants {
 
     void convertToExplicitAttributes() {
 		if (styleBundle != null) {
+			ensureModifiableStyleBundle();
 			styleBundle.removeStyleAttributesAndMakeExplicit(this);
 		}
 	}
 
+	/** copy on write of shared bundle */
+	private void ensureModifiableStyleBundle() {
+		if (styleBundle == null) {
+			styleBundle = new StyleBundle();
+		} else if (styleBundle.isShared()) {
+			styleBundle = new StyleBundle(styleBundle);
+		}
+	}
+
 	private Object getSubStyle(String attName) {
 		if (useStyleAttribute) {
-			StyleBundle styleBundle = getStyleBundle();
+			StyleBundle styleBundle = getSharedStyleBundle();
 			return (styleBundle == null ? null : styleBundle.getSubStyle(attName));
 		} else {
 			return getAttributeValue(attName);
@@ -660,7 +679,7 @@ public class GraphicsElement extends Element implements SVGConstants {
 		}
 	}
 
-	protected void drawFill(Graphics2D g2d, GeneralPath path) {
+	protected void drawFill(Graphics2D g2d, Shape path) {
 		setGraphicsStroke(g2d);
 		draw(g2d, path);
 		setGraphicsFill(g2d);
@@ -114,17 +114,19 @@ public class SVGCircle extends SVGShape {
 	
 	protected void drawElement(Graphics2D g2d) {
 		saveGraphicsSettingsAndApplyTransform(g2d);
-		double x = this.getDouble(CX);
-		double y = this.getDouble(CY);
-		double r = this.getDouble(R);
-		Real2 xy0 = new Real2(x, y);
-		xy0 = transform(xy0, cumulativeTransform);
-		double rad = transform(r, cumulativeTransform);
-		Ellipse2D ellipse = new Ellipse2D.Double(xy0.x-rad, xy0.y-rad, rad+rad, rad+rad);
+		Shape ellipse = getTransformedAWTShape(cumulativeTransform.getAffineTransform());
 		fill(g2d, ellipse);
 		draw(g2d, ellipse);
 		restoreGraphicsSettingsAndTransform(g2d);
 	}
+
+	@Override
+	protected Shape createAWTShape() {
+		double x = this.getDouble(CX);
+		double y = this.getDouble(CY);
+		double r = this.getDouble(R);
+		return new Ellipse2D.Double(x - r, y - r, r + r, r + r);
+	}
 	
 	/**
 	 * @param x1 the x1 to set
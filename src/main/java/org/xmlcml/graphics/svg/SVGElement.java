@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Angle;
@@ -50,6 +51,7 @@ import org.xmlcml.graphics.svg.text.SVGWordPage;
 import org.xmlcml.graphics.svg.text.SVGWordPageList;
 import org.xmlcml.graphics.svg.text.SVGWordPara;
 import org.xmlcml.graphics.svg.text.SVGWordPhrase;
+import org.xmlcml.graphics.svg.util.RTree;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -73,7 +75,10 @@ import nu.xom.canonical.Canonicalizer;
  */
 public class SVGElement extends GraphicsElement {
 
-	private static final int EXTRA_TRANSFORM_PRECISION = 2;
+	public static final int EXTRA_TRANSFORM_PRECISION = 2;
+	// compiled once; transform attributes are parsed for every element on flattening
+	private static final Pattern MULTIPLE_SPACES = Pattern.compile("  *");
+	private static final Pattern TRANSFORM_VALUE_SEPARATOR = Pattern.compile(S_COMMA+S_PIPE+S_SPACE);
 
 	private static Logger LOG = Logger.getLogger(SVGElement.class);
 
@@ -99,13 +104,35 @@ public class SVGElement extends GraphicsElement {
 	public final static String ID = "id";
 
 	protected static final String BOUNDING_BOX = "boundingBox";
+	/** changes to these do not alter the bounding box */
+	private static final Set<String> NON_GEOMETRIC_ATTRIBUTES = new HashSet<String>();
+	static {
+		NON_GEOMETRIC_ATTRIBUTES.add(ID);
+		NON_GEOMETRIC_ATTRIBUTES.add(SVG_CLASS);
+		NON_GEOMETRIC_ATTRIBUTES.add(TITLE);
+		NON_GEOMETRIC_ATTRIBUTES.add("fill");
+		NON_GEOMETRIC_ATTRIBUTES.add("stroke");
+		NON_GEOMETRIC_ATTRIBUTES.add("stroke-width");
+		NON_GEOMETRIC_ATTRIBUTES.add("opacity");
+	}
+	/** inherited by descendants; changes alter the extents of descendant text */
+	private static final Set<String> INHERITED_FONT_ATTRIBUTES = new HashSet<String>();
+	static {
+		INHERITED_FONT_ATTRIBUTES.add(StyleBundle.STYLE);
+		INHERITED_FONT_ATTRIBUTES.add(StyleBundle.FONT_SIZE);
+		INHERITED_FONT_ATTRIBUTES.add(StyleBundle.FONT_FAMILY);
+		INHERITED_FONT_ATTRIBUTES.add(StyleBundle.FONT_WEIGHT);
+		INHERITED_FONT_ATTRIBUTES.add(StyleBundle.FONT_STYLE);
+	}
 	
 	private Element userElement;
 	private String strokeSave;
 	private String fillSave;
 
 	protected Real2Range boundingBox = null;
-	protected boolean boundingBoxCached = false;
+	protected boolean boundingBoxCached = true;
+	/** set by invalidateBoundingBox() on this or any descendant */
+	private boolean boundingBoxDirty = true;
 	//private AffineTransform savedAffineTransform;
 	
 	
@@ -132,8 +159,26 @@ public class SVGElement extends GraphicsElement {
 	 * Copy constructor from non-subclassed elements
 	 */
 	public static SVGElement readAndCreateSVG(Element element) {
-		SVGElement newElement = null;
 		String tag = element.getLocalName();
+		SVGElement newElement = createSubclassedElement(tag, getClassAttributeValue(element));
+		if (newElement != null) {
+	        newElement.copyAttributesFrom(element);
+	        createSubclassedChildren(element, newElement);
+		}
+        return newElement;
+	}
+
+	/** creates an empty subclassed element from its tag and (optional) class attribute.
+	 * 
+	 * shared by the tree copier (readAndCreateSVG(Element)) and the streaming reader
+	 * so that both dispatch identically.
+	 * 
+	 * @param tag local name of element
+	 * @param clazz value of class attribute (may be null)
+	 * @return new element without attributes or children; unknown tags create an SVGG with class=tag
+	 */
+	static SVGElement createSubclassedElement(String tag, String clazz) {
+		SVGElement newElement = null;
 		if (tag == null || tag.equals(S_EMPTY)) {
 			throw new RuntimeException("no tag");
 		} else if (tag.equals(SVGCircle.TAG)) {
@@ -147,11 +192,11 @@ public class SVGElement extends GraphicsElement {
 		} else if (tag.equals(SVGEllipse.TAG)) {
 			newElement = new SVGEllipse();
 		} else if (tag.equals(SVGG.TAG)) {
-			newElement = createSVGGOrClasses(element);
+			newElement = createSVGGOrClasses(clazz);
 		} else if (tag.equals(SVGImage.TAG)) {
 			newElement = new SVGImage();
 		} else if (tag.equals(SVGLine.TAG)) {
-			newElement = createSVGLineOrClasses(element);
+			newElement = createSVGLineOrClasses(clazz);
 		} else if (tag.equals(SVGPath.TAG)) {
 			newElement = new SVGPath();
 		} else if (tag.equals(SVGPattern.TAG)) {
@@ -159,7 +204,7 @@ public class SVGElement extends GraphicsElement {
 		} else if (tag.equals(SVGPolyline.TAG)) {
 			newElement = new SVGPolyline();
 		} else if (tag.equals(SVGPolygon.TAG)) {
-			newElement = createSVGPolygonOrClasses(element);
+			newElement = createSVGPolygonOrClasses(clazz);
 		} else if (tag.equals(SVGRect.TAG)) {
 			newElement = new SVGRect();
 		} else if (tag.equals(SVGScript.TAG)) {
@@ -177,16 +222,11 @@ public class SVGElement extends GraphicsElement {
 			newElement.setClassName(tag);
 			LOG.trace("unsupported svg element: "+tag);
 		}
-		if (newElement != null) {
-	        newElement.copyAttributesFrom(element);
-	        createSubclassedChildren(element, newElement);
-		}
-        return newElement;
+		return newElement;
 	}
 
-	private static SVGElement createSVGGOrClasses(Element element) {
+	private static SVGElement createSVGGOrClasses(String clazz) {
 		SVGElement newElement;
-		String clazz = getClassAttributeValue(element);
 		// word stuff
 		if (SVGWordPara.CLASS.equals(clazz)) {
 			newElement = new SVGWordPara();
@@ -208,9 +248,8 @@ public class SVGElement extends GraphicsElement {
 		return newElement;
 	}
 
-	private static SVGElement createSVGLineOrClasses(Element element) {
+	private static SVGElement createSVGLineOrClasses(String clazz) {
 		SVGElement newElement;
-		String clazz = getClassAttributeValue(element);
 		if (SVGArrow.ARROW.equals(clazz)) {
 			newElement = new SVGArrow();
 		} else {
@@ -219,9 +258,8 @@ public class SVGElement extends GraphicsElement {
 		return newElement;
 	}
 
-	private static SVGElement createSVGPolygonOrClasses(Element element) {
+	private static SVGElement createSVGPolygonOrClasses(String clazz) {
 		SVGElement newElement;
-		String clazz = getClassAttributeValue(element);
 		if (SVGTriangle.TRIANGLE.equals(clazz)) {
 			newElement = new SVGTriangle();
 		} else {
@@ -242,6 +280,9 @@ public class SVGElement extends GraphicsElement {
 	/** 
 	 * Converts an SVG file to SVGElement
 	 * 
+	 * builds a XOM tree and then copies it; for large files SVGStreamReader
+	 * creates the same tree in a single pass.
+	 * 
 	 * @param file
 	 * @return
 	 */
@@ -465,7 +506,7 @@ public class SVGElement extends GraphicsElement {
 				String kw = s.substring(0, lb);
 				String values = s.substring(lb + 1, rb);
 				// remove unwanted spaces
-				values = values.replaceAll("  *", " ");
+				values = MULTIPLE_SPACES.matcher(values).replaceAll(" ");
 				s = s.substring(rb+1).trim();
 				Transform2 t2 = makeTransform(kw, values);
 				transformList.add(t2);
@@ -484,7 +525,7 @@ public class SVGElement extends GraphicsElement {
 		valueString = valueString.replace(S_PIPE+S_SPACE, S_PIPE);
 		LOG.trace("Transform "+valueString);
 		Transform2 t2 = new Transform2();
-		String[] vv = valueString.trim().split(S_COMMA+S_PIPE+S_SPACE);
+		String[] vv = TRANSFORM_VALUE_SEPARATOR.split(valueString.trim());
 		RealArray ra = new RealArray(vv);
 		double[] raa = ra.getArray();
 		double[][] array = t2.getMatrix();
@@ -873,6 +914,10 @@ public class SVGElement extends GraphicsElement {
 	
 	/** subclassed to tidy format.
 	 * by default formats children
+	 * 
+	 * <p>This rewrites the attributes of the whole subtree. If rounding is only needed
+	 * for output use SVGWriter.setDecimalPlaces(), which rounds as it writes.</p>
+	 * 
 	 * @param places decimal places
 	 */
 	public void format(int places) {
@@ -934,6 +979,8 @@ public class SVGElement extends GraphicsElement {
 		Real2Range r2r = this.getBoundingBox();
 		if (r2r != null) {
 			if (decimalPlaces != null) {
+				// do not round the cached box
+				r2r = new Real2Range(r2r);
 				r2r.format(decimalPlaces);
 			}
 			SVGUtil.setSVGXAttribute(this, BOUNDING_BOX, r2r.toString());
@@ -1045,12 +1092,17 @@ public class SVGElement extends GraphicsElement {
 	}
 
 	protected void aggregateBBfromSelfAndDescendants() {
-		Nodes childNodes = this.query("./svg:*", XMLConstants.SVG_XPATH);
-		if (childNodes.size() > 0) {
-			boundingBox = new Real2Range();
-		}
-		for (int i = 0; i < childNodes.size(); i++) {
-			SVGElement child = (SVGElement) childNodes.get(i);
+		// equivalent to query("./svg:*") without compiling XPath on every call
+		boundingBox = null;
+		for (int i = 0; i < getChildCount(); i++) {
+			Node node = getChild(i);
+			if (!(node instanceof SVGElement)) {
+				continue;
+			}
+			if (boundingBox == null) {
+				boundingBox = new Real2Range();
+			}
+			SVGElement child = (SVGElement) node;
 			Real2Range childBoundingBox = child.getBoundingBox();
 			if (childBoundingBox != null) {
 				if (!childBoundingBox.isValid()) {
@@ -1062,14 +1114,122 @@ public class SVGElement extends GraphicsElement {
 		}
 	}
 
+	/** whether getBoundingBox() must recompute.
+	 * 
+	 * true if never computed, if invalidated since last computed, or if caching is off.
+	 * Clears the invalidation, so callers must recompute when this returns true.
+	 * 
+	 * @return
+	 */
 	protected boolean boundingBoxNeedsUpdating() {
-		return boundingBox == null || !boundingBoxCached;
+		boolean needsUpdating = boundingBox == null || !boundingBoxCached || boundingBoxDirty;
+		boundingBoxDirty = false;
+		return needsUpdating;
 	}
 	
+	/** cache bounding box until this element or a descendant changes.
+	 * 
+	 * @param boundingBoxCached default true; if false recompute on every call
+	 */
 	public void setBoundingBoxCached(boolean boundingBoxCached) {
 		this.boundingBoxCached = boundingBoxCached;
 	}
 
+	/** marks bounding box of this and all ancestors as needing recalculation.
+	 * 
+	 * called automatically when geometric attributes or children change;
+	 * subclasses holding geometry outside attributes should call it when that changes.
+	 */
+	public void invalidateBoundingBox() {
+		ParentNode node = this;
+		while (node instanceof Element) {
+			if (node instanceof SVGElement) {
+				((SVGElement) node).boundingBoxDirty = true;
+			}
+			node = node.getParent();
+		}
+	}
+
+	private void invalidateBoundingBox(Attribute attribute) {
+		if (isGeometricAttribute(attribute)) {
+			invalidateBoundingBox();
+			if (getChildCount() > 0 && attribute.getNamespaceURI().length() == 0 &&
+					INHERITED_FONT_ATTRIBUTES.contains(attribute.getLocalName())) {
+				invalidateDescendantBoundingBoxes(this);
+			}
+		}
+	}
+
+	/** font and style are inherited so descendants (especially text) must also be recalculated.
+	 */
+	private static void invalidateDescendantBoundingBoxes(Element parent) {
+		for (int i = 0; i < parent.getChildCount(); i++) {
+			Node child = parent.getChild(i);
+			if (child instanceof Element) {
+				if (child instanceof SVGElement) {
+					((SVGElement) child).boundingBoxDirty = true;
+				}
+				invalidateDescendantBoundingBoxes((Element) child);
+			}
+		}
+	}
+
+	/** can a change to attribute alter geometry (bounding box, shape)?
+	 * 
+	 * @param attribute
+	 * @return false for style-only attributes, svgx annotations and null
+	 */
+	protected static boolean isGeometricAttribute(Attribute attribute) {
+		return attribute != null && !NON_GEOMETRIC_ATTRIBUTES.contains(attribute.getLocalName()) &&
+				!SVGConstants.SVGX_NS.equals(attribute.getNamespaceURI());
+	}
+
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		invalidateBoundingBox(attribute);
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		Attribute removed = super.removeAttribute(attribute);
+		invalidateBoundingBox(removed);
+		return removed;
+	}
+
+	@Override
+	public void insertChild(Node child, int position) {
+		super.insertChild(child, position);
+		invalidateBoundingBox();
+	}
+
+	@Override
+	public Node removeChild(int position) {
+		Node removed = super.removeChild(position);
+		invalidateBoundingBox();
+		return removed;
+	}
+
+	@Override
+	public Node removeChild(Node child) {
+		Node removed = super.removeChild(child);
+		invalidateBoundingBox();
+		return removed;
+	}
+
+	@Override
+	public void replaceChild(Node oldChild, Node newChild) {
+		super.replaceChild(oldChild, newChild);
+		invalidateBoundingBox();
+	}
+
+	@Override
+	public Nodes removeChildren() {
+		Nodes removed = super.removeChildren();
+		invalidateBoundingBox();
+		return removed;
+	}
+
 	public SVGShape createGraphicalBoundingBox() {
 		Real2Range r2r = this.getBoundingBox();
 		SVGRect rect = createGraphicalBox(r2r, getBBStroke(), getBBFill(), getBBStrokeWidth(), getBBOpacity());
@@ -1272,6 +1432,22 @@ public class SVGElement extends GraphicsElement {
 		return containedElements;
 	}
 
+	/** as extractElementsContainedInBox(List, Real2Range) but only examines indexed elements near the box.
+	 * 
+	 * @param elementIndex
+	 * @param bbox
+	 * @return
+	 */
+	public static List<SVGElement> extractElementsContainedInBox(RTree<? extends SVGElement> elementIndex, Real2Range bbox) {
+		List<SVGElement> containedElements = new ArrayList<SVGElement>();
+		for (SVGElement element : elementIndex.findIntersecting(bbox)) {
+			if (bbox.includes(element.getBoundingBox())) {
+				containedElements.add(element);
+			}
+		}
+		return containedElements;
+	}
+
 	/** elements filtered by yrange
 	 * 
 	 * @param textList
@@ -1294,7 +1470,8 @@ public class SVGElement extends GraphicsElement {
 		Real2Range bbox = elem.getBoundingBox();
 		RealRange range = (RealRange.Direction.HORIZONTAL.equals(dir)) ? 
 				bbox.getXRange() : bbox.getYRange();
-		return range;
+		// copy as bbox is cached and RealRangeArray may merge ranges
+		return new RealRange(range);
 	}
 
 	public static RealRangeArray getRealRangeArray(List<? extends SVGElement> elementList, RealRange.Direction dir) {
@@ -1345,8 +1522,7 @@ public class SVGElement extends GraphicsElement {
 	public static RealRangeArray createMask(List<? extends SVGElement> elementList, Direction direction) {
 		RealRangeArray realRangeArray = new RealRangeArray();
 		for (SVGElement element : elementList) {
-			Real2Range bbox = element.getBoundingBox();
-			realRangeArray.add((Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange()));
+			realRangeArray.add(getRange(element, direction));
 		}
 		realRangeArray.sortAndRemoveOverlapping();
 		return realRangeArray;
@@ -1355,10 +1531,9 @@ public class SVGElement extends GraphicsElement {
 	public static RealRangeArray createMask(List<SVGElement> elementList, Direction direction, double tolerance) {
 			RealRangeArray realRangeArray = new RealRangeArray();
 			for (SVGElement element : elementList) {
-				Real2Range bbox = element.getBoundingBox();
-				RealRange range = (Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange());
+				RealRange range = getRange(element, direction);
 				range.extendBothEndsBy(tolerance);
-				realRangeArray.add((Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange()));
+				realRangeArray.add(range);
 			}
 			realRangeArray.sortAndRemoveOverlapping();
 			return realRangeArray;
@@ -0,0 +1,34 @@
+/**
+ *    Copyright 2011 Peter Murray-Rust et. al.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.xmlcml.graphics.svg;
+
+/** callback for elements delivered by SVGStreamExtractor.
+ * 
+ * The element is detached (it has no parent) and is not retained by the extractor,
+ * so handlers may keep, copy or discard it.
+ * 
+ * @author pm286
+ *
+ */
+public interface SVGElementHandler {
+
+	/** called once for each element of a registered type, in document order.
+	 * 
+	 * @param element subclassed element (e.g. SVGPath) with cumulative transforms already applied
+	 */
+	void handleElement(SVGElement element);
+}
@@ -17,6 +17,7 @@
 package org.xmlcml.graphics.svg;
 
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.util.ArrayList;
 import java.util.List;
@@ -114,17 +115,19 @@ public class SVGEllipse extends SVGShape {
 
 	protected void drawElement(Graphics2D g2d) {
 		saveGraphicsSettingsAndApplyTransform(g2d);
-		Real2 xy0 = getCXY();
-		Real2 rxy = getRXY();
-		xy0 = transform(xy0, cumulativeTransform);
-		double rrx = transform(rxy.getX(), cumulativeTransform) * 0.5;
-		double rry = transform(rxy.getY(), cumulativeTransform) * 0.5;
-		
-		Ellipse2D ellipse = new Ellipse2D.Double(xy0.x - rrx, xy0.y - rry, rrx + rrx, rry + rry);
+		Shape ellipse = getTransformedAWTShape(cumulativeTransform.getAffineTransform());
 		fill(g2d, ellipse);
 		draw(g2d, ellipse);
 		restoreGraphicsSettingsAndTransform(g2d);
 	}
+
+	@Override
+	protected Shape createAWTShape() {
+		Real2 xy0 = getCXY();
+		double rx = getRX();
+		double ry = getRY();
+		return new Ellipse2D.Double(xy0.x - rx, xy0.y - ry, rx + rx, ry + ry);
+	}
 	
 	public Real2 getRXY() {
 		return new Real2(this.getRX(), this.getRY());
@@ -69,6 +69,26 @@ public class SVGImage extends SVGShape {
 		mimeType2ImageTypeMap.put(IMAGE_PNG, PNG);
 	}
 	
+	public static final int MAX_CACHED_IMAGES = 16;
+	
+	private static volatile int maxCachedImages = MAX_CACHED_IMAGES;
+
+	/** decoded images keyed by (identity of) the compact payload; least recently used are discarded.
+	 * copies share the payload and so share the decoded image.
+	 */
+	private static final Map<byte[], BufferedImage> IMAGE_BY_BYTES = Collections.synchronizedMap(
+		new LinkedHashMap<byte[], BufferedImage>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<byte[], BufferedImage> eldest) {
+				return size() > maxCachedImages;
+			}
+		});
+
+	// compact payload replacing the xlink:href attribute (see compactImageData()); 
+	// not initialised here as addAttribute() may clear it during superclass construction
+	private byte[] imageBytes;
+	private String imageMimeType;
+
 	/** constructor
 	 */
 	public SVGImage() {
@@ -83,6 +103,9 @@ public class SVGImage extends SVGShape {
 	 */
 	public SVGImage(SVGElement element) {
         super(element);
+        if (element instanceof SVGImage && ((SVGImage) element).imageBytes != null) {
+        	setCompactImageData(((SVGImage) element).imageBytes, ((SVGImage) element).imageMimeType);
+        }
 	}
 	
 	/** constructor
@@ -286,21 +309,242 @@ public class SVGImage extends SVGShape {
 	 */
 	public BufferedImage getBufferedImage() {
 		BufferedImage bufferedImage = null;
-		String hrefData = this.getImageValue();
-		if (hrefData != null) {
-			bufferedImage = readSrcDataToBufferedImage(hrefData);
+		if (imageBytes != null) {
+			bufferedImage = getOrDecodeImageBytes();
+		} else {
+			String hrefData = this.getImageValue();
+			if (hrefData != null) {
+				bufferedImage = readSrcDataToBufferedImage(hrefData);
+			}
+		}
+		return bufferedImage;
+	}
+
+	/** decodes compact payload through the LRU cache.
+	 * 
+	 * the cached image is shared; callers should copy it before modifying pixels.
+	 * @return image
+	 */
+	private BufferedImage getOrDecodeImageBytes() {
+		byte[] bytes = imageBytes;
+		BufferedImage bufferedImage = IMAGE_BY_BYTES.get(bytes);
+		if (bufferedImage == null) {
+			// races only cause duplicate decoding
+			try {
+				bufferedImage = ImageIO.read(new ByteArrayInputStream(bytes));
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot read image bytes", e);
+			}
+			if (bufferedImage != null) {
+				IMAGE_BY_BYTES.put(bytes, bufferedImage);
+			}
 		}
 		return bufferedImage;
 	}
+
 	/*
 	 * <image transform="matrix(0.06781766590473381,-0.0,-0.0,0.0678967742330725,33.93199920654297,33.12698745727539)"
 	 *  x="0.0" y="0.0" width="702.0" height="310.0" xlink:href="data:image/png;base64,iVBORw0KGgoAAAA..."
 	 * xmlns:xlink="http://www.w3.org/1999/xlink"/>
 	 */
 	public String getImageValue() {
+		if (imageBytes != null) {
+			return createHrefAttributeValue(imageMimeType, Base64.encode(imageBytes));
+		}
 		String value = this.getAttributeValue(HREF, XLINK_NS);
 		return value;
 	}
+
+	/** number of decoded images kept (default MAX_CACHED_IMAGES).
+	 * 
+	 * @param size
+	 */
+	public static void setMaxCachedImages(int size) {
+		maxCachedImages = size;
+	}
+
+	public static void clearImageCache() {
+		IMAGE_BY_BYTES.clear();
+	}
+
+	/** true if image data is held as compact bytes rather than an href attribute.
+	 * 
+	 * @return
+	 */
+	public boolean hasCompactImageData() {
+		return imageBytes != null;
+	}
+
+	/** replaces a data: href attribute by compact bytes.
+	 * 
+	 * <p>The base64 is decoded to bytes (about 3/4 of the string's bytes and no char[] overhead);
+	 * getImageValue() and getBufferedImage() work as before. Bounding boxes (x, y, width, height,
+	 * transform) are unaffected. SVGSerializer, SVGWriter and SVGUtil.debug() write the href from the
+	 * bytes; toXML() and other serializers omit it unless inflateImageData() is called first.
+	 * SVGStreamReader.setCompactImageData() compacts images as they are read.</p>
+	 * 
+	 * @return true if compacted
+	 */
+	public boolean compactImageData() {
+		Attribute hrefAttribute = this.getAttribute(HREF, XLINK_NS);
+		if (hrefAttribute != null && setCompactImageData(hrefAttribute.getValue())) {
+			super.removeAttribute(hrefAttribute);
+			return true;
+		}
+		return false;
+	}
+
+	/** restores the href attribute from compact bytes.
+	 * 
+	 * required before toXML() or serializers other than SVGSerializer and SVGWriter.
+	 */
+	public void inflateImageData() {
+		if (imageBytes != null) {
+			String value = getImageValue();
+			clearCompactImageData();
+			super.addAttribute(new Attribute(XLINK_PREF+":"+HREF, XLINK_NS, value));
+		}
+	}
+
+	/** restores href attributes of element and all descendant images.
+	 * 
+	 * @param svgElement
+	 */
+	public static void inflateImages(SVGElement svgElement) {
+		if (svgElement instanceof SVGImage) {
+			((SVGImage) svgElement).inflateImageData();
+		}
+		for (SVGImage image : extractSelfAndDescendantImages(svgElement)) {
+			image.inflateImageData();
+		}
+	}
+
+	/** compacts element and all descendant images.
+	 * 
+	 * @param svgElement
+	 */
+	public static void compactImages(SVGElement svgElement) {
+		if (svgElement instanceof SVGImage) {
+			((SVGImage) svgElement).compactImageData();
+		}
+		for (SVGImage image : extractSelfAndDescendantImages(svgElement)) {
+			image.compactImageData();
+		}
+	}
+
+	/** href attribute created from compact bytes, for serializers; the image is not changed.
+	 * 
+	 * @return null if no compact bytes
+	 */
+	public Attribute createCompactHrefAttribute() {
+		return imageBytes == null ? null : new Attribute(XLINK_PREF+":"+HREF, XLINK_NS, getImageValue());
+	}
+
+	/** temporarily adds href attributes to compact images (self and descendants).
+	 * 
+	 * for serializers which only read attributes; must be followed by removeTemporaryHrefs().
+	 * @param element
+	 * @return images with temporary hrefs
+	 */
+	public static List<SVGImage> addTemporaryHrefs(Element element) {
+		List<SVGImage> imageList = new ArrayList<SVGImage>();
+		if (element instanceof SVGElement) {
+			List<SVGImage> images = new ArrayList<SVGImage>();
+			if (element instanceof SVGImage) {
+				images.add((SVGImage) element);
+			}
+			images.addAll(extractSelfAndDescendantImages((SVGElement) element));
+			for (SVGImage image : images) {
+				Attribute hrefAttribute = image.createCompactHrefAttribute();
+				if (hrefAttribute != null) {
+					// bypass addAttribute() which would discard the bytes
+					image.addTemporaryHref(hrefAttribute);
+					imageList.add(image);
+				}
+			}
+		}
+		return imageList;
+	}
+
+	/** removes hrefs added by addTemporaryHrefs(); images keep their compact bytes.
+	 * 
+	 * @param imageList
+	 */
+	public static void removeTemporaryHrefs(List<SVGImage> imageList) {
+		for (SVGImage image : imageList) {
+			Attribute hrefAttribute = image.getAttribute(HREF, XLINK_NS);
+			if (hrefAttribute != null) {
+				image.removeTemporaryHref(hrefAttribute);
+			}
+		}
+	}
+
+	private void addTemporaryHref(Attribute hrefAttribute) {
+		super.addAttribute(hrefAttribute);
+	}
+
+	private void removeTemporaryHref(Attribute hrefAttribute) {
+		super.removeAttribute(hrefAttribute);
+	}
+
+	/** any href replaces previous compact bytes.
+	 * 
+	 * all element creation (readAndCreateSVG, SVGStreamReader, copy) comes through here.
+	 */
+	@Override
+	public void addAttribute(Attribute attribute) {
+		if (isXlinkHref(attribute)) {
+			clearCompactImageData();
+		}
+		super.addAttribute(attribute);
+	}
+
+	private static boolean isXlinkHref(Attribute attribute) {
+		return attribute != null && HREF.equals(attribute.getLocalName()) && 
+				XLINK_NS.equals(attribute.getNamespaceURI());
+	}
+
+	/** parses data:image/xxx;base64,... without regex (values may be megabytes).
+	 * 
+	 * @param value
+	 * @return false if not base64 image data (value is then left as attribute)
+	 */
+	private boolean setCompactImageData(String value) {
+		String prefix = DATA+":";
+		String separator = ";"+BASE64+",";
+		if (value == null || !value.startsWith(prefix+"image/")) {
+			return false;
+		}
+		int idx = value.indexOf(separator);
+		if (idx == -1) {
+			return false;
+		}
+		byte[] bytes = Base64.decode(value.substring(idx + separator.length()));
+		if (bytes == null) {
+			return false;
+		}
+		clearCompactImageData();
+		setCompactImageData(bytes, value.substring(prefix.length(), idx));
+		return true;
+	}
+
+	/** the xlink namespace is declared so that serializers can write the href in scope.
+	 */
+	private void setCompactImageData(byte[] bytes, String mimeType) {
+		imageBytes = bytes;
+		imageMimeType = mimeType;
+		if (!XLINK_NS.equals(getNamespaceURI(XLINK_PREF))) {
+			addNamespaceDeclaration(XLINK_PREF, XLINK_NS);
+		}
+	}
+
+	private void clearCompactImageData() {
+		if (imageBytes != null) {
+			IMAGE_BY_BYTES.remove(imageBytes);
+			imageBytes = null;
+			imageMimeType = null;
+		}
+	}
 	
 	
 	/** makes a new list composed of the images in the list
@@ -334,9 +578,8 @@ public class SVGImage extends SVGShape {
 	public boolean writeImage(File imageFile, String mimeType) throws IOException {
 		boolean wrote = false;
 		Attribute xLinkAttribute = this.getAttribute(HREF, XLINK_NS);
-		if (xLinkAttribute != null) {
-			String xLinkValue = xLinkAttribute.getValue();
-			BufferedImage bufferedImage = readSrcDataToBufferedImage(xLinkValue);
+		if (xLinkAttribute != null || imageBytes != null) {
+			BufferedImage bufferedImage = getBufferedImage();
 			SVGImage.writeBufferedImage(bufferedImage, mimeType, imageFile);
 			wrote = true;
 		}
@@ -429,6 +672,7 @@ public class SVGImage extends SVGShape {
 			}
 			addXlinkHref(imageData);
 		} else {
+			clearCompactImageData();
 			Attribute hrefAttribute = this.getAttribute(HREF, XLINK_NS);
 			if (hrefAttribute != null) {
 				hrefAttribute.detach();
@@ -450,6 +694,7 @@ public class SVGImage extends SVGShape {
 		if (href != null) {
 			addXlinkHref(href);
 		} else {
+			clearCompactImageData();
 			Attribute hrefAttribute = this.getAttribute(HREF, XLINK_NS);
 			if (hrefAttribute != null) {
 				hrefAttribute.detach();
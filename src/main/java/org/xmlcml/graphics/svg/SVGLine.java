@@ -18,6 +18,7 @@ package org.xmlcml.graphics.svg;
 
 import java.awt.BasicStroke;
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Line2D;
 import java.util.ArrayList;
@@ -34,6 +35,8 @@ import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.euclid.RealRange.Direction;
 import org.xmlcml.euclid.Transform2;
+import org.xmlcml.graphics.svg.linestuff.AxialLineSweeper;
+import org.xmlcml.graphics.svg.linestuff.LineMerger.MergeMethod;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -230,12 +233,17 @@ public class SVGLine extends SVGShape {
 	protected void drawElement(Graphics2D g2d) {
 		saveGraphicsSettingsAndApplyTransform(g2d);
 		ensureCumulativeTransform();
-		Line2D line = createAndSetLine2D();
+		Shape line = getTransformedAWTShape(cumulativeTransform.getAffineTransform());
 		fill(g2d, line);
 		draw(g2d, line);
 		restoreGraphicsSettingsAndTransform(g2d);
 	}
 
+	@Override
+	protected Shape createAWTShape() {
+		return new Line2D.Double(getDouble(X1), getDouble(Y1), getDouble(X2), getDouble(Y2));
+	}
+
 	public void applyAttributes(Graphics2D g2d) {
 		if (g2d != null) {
 			double width = this.getStrokeWidth();
@@ -709,66 +717,35 @@ public class SVGLine extends SVGShape {
 		}
 	}
 
-	/** merges touching parallel lines.
+	/** merges touching or overlapping collinear lines.
 	 * 
-	 * Assumes all lines are parallel; if not will fail messily
+	 * Lines are sorted by coordinate and swept once (AxialLineSweeper), so runs of any
+	 * length are merged in O(n log n). A merged line spans the boxes of its run
+	 * and has the attributes of the first line (in list order) of the run.
 	 * 
-	 * @param lineList
+	 * does not check style attributes
+	 * 
+	 * @param lineList not altered
 	 * @param eps
-	 * @return
+	 * @return unmerged lines (in original order) followed by merged lines
 	 */
 	public static List<SVGLine> mergeParallelLines(List<SVGLine> lineList, double eps) {
-		
-		/** runs through a list of lines joining where possible to create (smaller) list.
-		 * if lines overlap takes union
-		 * 
-		 * Crude algorithm. 
-		 *   1 start = 0;
-		 *   2 size = number of lines
-		 *   3 iline = start ... size-1
-		 *   4 test (iline, iline+1) for join at either end
-		 *      if join, replace lines with merged line
-		 *      start = iline
-		 *      goto 2
-		 *   5 exit if no change
-		 * 
-		 * does not check style attributes
-		 * 
-		 * @param lineList
-		 * @param eps
-		 * @return
-		 */
 		List<SVGLine> lineListNew = new ArrayList<SVGLine>();
-		lineListNew.addAll(lineList);
-		boolean change = true;
-		while (change) {
-			change = false;
-			int size = lineListNew.size();
-			for (int iline = 0; iline < size - 1; iline++) {
-				size = lineListNew.size();
-				for (int jline = iline + 1; jline < size; jline++) {
-					SVGLine linei = lineListNew.get(iline);
-					SVGLine linej = lineListNew.get(jline);
-					LOG.trace("merging \n    "+linei.toXML()+"\n--> "+linej.toXML());
-					SVGLine newLine = createMergedHorizontalOrVerticalLine(linei, linej, eps);
-//					if (newLine == null) {
-//						// try the other direction
-//						newLine = createMergedHorizontalOrVerticalLine(linej, linei, eps);
-//					}
-//					LOG.trace("newline: "+newLine.toXML());
-					if (newLine != null) {
-						lineListNew.remove(jline);
-						lineListNew.remove(iline);
-						lineListNew.add(newLine);
-						LOG.trace("after close lines "+lineListNew.size());
-						for (SVGLine line : lineListNew) {
-							LOG.trace(">> "+line.toXML());
-						}
-						change = true;
-						break;
-					}
+		AxialLineSweeper sweeper = new AxialLineSweeper(eps, eps, MergeMethod.OVERLAP);
+		for (List<SVGLine> run : sweeper.createRuns(lineList)) {
+			SVGLine newLine = run.get(0);
+			if (run.size() > 1) {
+				Real2Range bbox = newLine.getBoundingBox();
+				for (int i = 1; i < run.size(); i++) {
+					bbox = bbox.plus(run.get(i).getBoundingBox());
 				}
+				newLine = new SVGLine();
+				XMLUtil.copyAttributes(run.get(0), newLine);
+				newLine.setXY(bbox.getCorners()[0], 0);
+				newLine.setXY(bbox.getCorners()[1], 1);
+				LOG.trace("merged "+run.size()+" lines: "+newLine.toXML());
 			}
+			lineListNew.add(newLine);
 		}
 		return lineListNew;
 	}
@@ -851,7 +828,7 @@ public class SVGLine extends SVGShape {
 		if (lines == null) {
 			LOG.debug("null lines");
 		} else if (lines.size() > 0) {
-			bbox = lines.get(0).getBoundingBox();
+			bbox = new Real2Range(lines.get(0).getBoundingBox());
 			for (int i = 1; i < lines.size(); i++) {
 				bbox = bbox.plusEquals(lines.get(i).getBoundingBox());
 			}
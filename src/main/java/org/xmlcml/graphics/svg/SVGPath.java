@@ -43,8 +43,10 @@ import org.xmlcml.graphics.svg.path.ClosePrimitive;
 import org.xmlcml.graphics.svg.path.CubicPrimitive;
 import org.xmlcml.graphics.svg.path.LinePrimitive;
 import org.xmlcml.graphics.svg.path.MovePrimitive;
+import org.xmlcml.graphics.svg.path.PackedPathPrimitiveList;
 import org.xmlcml.graphics.svg.path.PathPrimitiveList;
 import org.xmlcml.graphics.svg.path.SVGPathParser;
+import org.xmlcml.graphics.svg.util.GeometricDeduplicator;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -76,10 +78,20 @@ public class SVGPath extends SVGShape {
 	private static final Double MAX_WIDTH = 2.0;
 	public final static Pattern REPEATED_ML = Pattern.compile("ML(ML)*");
 	private static final double CIRCLE_EPSILON = 0.01;
+	/** path parsing dominates many workflows; reuse one parser (and its buffers) per thread */
+	private static final ThreadLocal<SVGPathParser> PATH_PARSER = new ThreadLocal<SVGPathParser>() {
+		@Override
+		protected SVGPathParser initialValue() {
+			return new SVGPathParser();
+		}
+	};
 	
 	private GeneralPath path2;
 	private boolean isClosed = false;
-	private Real2Array coords = null; // for diagnostics
+	private PackedPathPrimitiveList packedPrimitives;
+	private String packedDString = null; // d from which packedPrimitives were created
+	private GeneralPath cachedPath2D;
+	private String path2DString = null; // d from which cachedPath2D was created
 	private SVGPolyline polyline;
 	private Real2Array allCoords;
 	private PathPrimitiveList primitiveList;
@@ -178,7 +190,7 @@ public class SVGPath extends SVGShape {
 	 */
 	public PathPrimitiveList parseDString() {
 		String d = getDString();
-		return (d == null ? null : new SVGPathParser().parseDString(d));
+		return (d == null ? null : PATH_PARSER.get().parseDString(d));
 	}
 	
     private static String createD(Real2Array xy) {
@@ -225,8 +237,7 @@ public class SVGPath extends SVGShape {
 		saveGraphicsSettingsAndApplyTransform(g2d);
 		setAntialiasing(g2d, true);
 //		setAntialiasing(g2d, false);
-		GeneralPath path = createPath2D();
-		path.transform(cumulativeTransform.getAffineTransform());
+		Shape path = getTransformedAWTShape(cumulativeTransform.getAffineTransform());
 		drawFill(g2d, path);
 		restoreGraphicsSettingsAndTransform(g2d);
 	}
@@ -392,22 +403,28 @@ public class SVGPath extends SVGShape {
 		return r2a.isEqualTo(r2a2, epsilon);
 	}
 	
+	/** first coordinate of each primitive.
+	 * 
+	 * @return new array (may be modified by caller)
+	 */
 	public Real2Array getCoords() {
-		//if (coords == null) {
-		coords = new Real2Array();
-		String ss = getDString().trim()+S_SPACE;
-		PathPrimitiveList primitives = createPathPrimitives();
-		for (SVGPathPrimitive primitive : primitives) {
-			Real2 coord = primitive.getFirstCoord();
-			Real2Array coordArray = primitive.getCoordArray();
-			if (coord != null) {
-				coords.add(coord);
-			} else if (coordArray != null) {
-				coords.add(coordArray);
-			}
+		return getPackedPrimitives().createFirstPointArray();
+	}
+
+	/** primitives in compact form (opcodes and coordinates in arrays).
+	 * 
+	 * cached until the d attribute changes. Much smaller than ensurePrimitives() for large paths.
+	 * 
+	 * @return shared list; do not modify
+	 */
+	public PackedPathPrimitiveList getPackedPrimitives() {
+		String d = getDString();
+		// attribute values are immutable so identity shows whether d has been reset
+		if (packedPrimitives == null || d != packedDString) {
+			packedPrimitives = PATH_PARSER.get().parseDStringToPacked(d);
+			packedDString = d;
 		}
-		//}
-		return coords;
+		return packedPrimitives;
 	}
 	
 	/**
@@ -456,7 +473,7 @@ public class SVGPath extends SVGShape {
 	}
 
 	private PathPrimitiveList createPathPrimitives() {
-		return new SVGPathParser().parseDString(getDString());
+		return getPackedPrimitives().createPathPrimitiveList();
 	}
 
 	/** 
@@ -466,9 +483,9 @@ public class SVGPath extends SVGShape {
 	 */
 	@Override
 	public Real2Range getBoundingBox() {
-		if (boundingBox == null) {
-			getCoords();
-			boundingBox = coords.getRange2();
+		if (boundingBoxNeedsUpdating()) {
+			PackedPathPrimitiveList packed = getPackedPrimitives();
+			boundingBox = (packed.size() == 0) ? new Real2Array().getRange2() : packed.getFirstPointBoundingBox();
 		}
 		return boundingBox;
 	}
@@ -503,15 +520,37 @@ public class SVGPath extends SVGShape {
 		return 0.1;
 	}
 
+	/** new Java2D path in user coordinates.
+	 * 
+	 * copy of getOrCreatePath2D() (which is cached).
+	 * 
+	 * @return
+	 */
 	public GeneralPath createPath2D() {
-		path2 = new GeneralPath();
-		ensurePrimitives();
-		for (SVGPathPrimitive pathPrimitive : primitiveList) {
-			pathPrimitive.operateOn(path2);
-		}
+		path2 = new GeneralPath(getOrCreatePath2D());
 		return path2;
 	}
 	
+	/** Java2D path in user coordinates, built from getPackedPrimitives().
+	 * 
+	 * cached until the d attribute changes, so repeated drawing does not re-create the path.
+	 * 
+	 * @return shared path; do not modify (copy or use createTransformedShape())
+	 */
+	public GeneralPath getOrCreatePath2D() {
+		String d = getDString();
+		if (cachedPath2D == null || d != path2DString) {
+			cachedPath2D = getPackedPrimitives().createGeneralPath();
+			path2DString = d;
+		}
+		return cachedPath2D;
+	}
+
+	@Override
+	protected Shape createAWTShape() {
+		return (getDString() == null) ? null : getOrCreatePath2D();
+	}
+	
 	/** get tag.
 	 * @return tag
 	 */
@@ -546,8 +585,9 @@ public class SVGPath extends SVGShape {
 	public String getSignature() {
 		if (signature == null) {
 			if (getDString() != null) {
-				ensurePrimitives();
-				signature = primitiveList.createSignature();
+				PackedPathPrimitiveList packed = getPackedPrimitives();
+				isClosed = packed.isClosed(EPS1);
+				signature = packed.createSignature();
 			}
 		}
 		return signature;
@@ -670,9 +710,10 @@ public class SVGPath extends SVGShape {
 			int cCount = signature.replaceAll("[^C]", "").length();
 			int lCount = signature.replaceAll("[^L]", "").length();
 			if (lCount >= minL && maxC >= cCount) {
-				for (SVGPathPrimitive primitive : primitiveList) {
+				for (SVGPathPrimitive primitive : ensurePrimitives()) {
 					if (primitive instanceof CubicPrimitive) {
-						sb.append("L"+primitive.getLastCoord().toString());
+						Real2 lastCoord = primitive.getLastCoord();
+						sb.append("L"+lastCoord.getX()+" "+lastCoord.getY()+" ");
 					} else {
 						sb.append(primitive.toString());
 					}
@@ -925,6 +966,18 @@ public class SVGPath extends SVGShape {
 		return newPathList;
 	}
 
+	/** as removeShadowedPaths(pathList) but also removes paths whose coordinates differ by less than epsilon.
+	 * 
+	 * paths must have the same signature. Linear time (see GeometricDeduplicator).
+	 * 
+	 * @param pathList
+	 * @param epsilon
+	 * @return first of each set of equal paths
+	 */
+	public static List<SVGPath> removeShadowedPaths(List<SVGPath> pathList, double epsilon) {
+		return GeometricDeduplicator.removeDuplicates(pathList, epsilon);
+	}
+
 	/** paths outside y=0 are not part of the plot but confuse calculation of
 	 * bounding box 
 	 * @param pathList
@@ -409,25 +409,38 @@ public abstract class SVGPoly extends SVGShape {
 		return String.valueOf(real2Array);
 	}
 
-	protected void drawPolylineOrGon(Graphics2D g2d, boolean closed) {
+	protected void drawPolylineOrGon(Graphics2D g2d) {
 		saveGraphicsSettingsAndApplyTransform(g2d);
+		Shape poly = getTransformedAWTShape(cumulativeTransform.getAffineTransform());
+		if (poly != null) {
+			fill(g2d, poly);
+			draw(g2d, poly);
+		}
+		restoreGraphicsSettingsAndTransform(g2d);
+	}
+
+	/** path through the points in user coordinates.
+	 * 
+	 * @param closed add closePath (polygon)
+	 * @return null if no points
+	 */
+	protected GeneralPath createGeneralPath(boolean closed) {
 		getReal2Array();
+		if (real2Array == null || real2Array.size() == 0) {
+			return null;
+		}
 		GeneralPath poly = 
 		        new GeneralPath(GeneralPath.WIND_EVEN_ODD, real2Array.size());
 		Real2 xy0 = real2Array.elementAt(0);
-		xy0 = transform(xy0, cumulativeTransform);
 		poly.moveTo(xy0.getX(), xy0.getY());
 		for (int i = 1; i < real2Array.size(); i++) {
 			Real2 xy = real2Array.elementAt(i);
-			xy = transform(xy, cumulativeTransform);
 		    poly.lineTo(xy.getX(), xy.getY());
 		}
         if (closed) {
 			poly.closePath();
 		}
-		fill(g2d, poly);
-		draw(g2d, poly);
-		restoreGraphicsSettingsAndTransform(g2d);
+		return poly;
 	}
 
 	public SVGRect createRect(double epsilon) {
@@ -537,6 +550,8 @@ public abstract class SVGPoly extends SVGShape {
 	public void add(Real2 point) {
 		ensureReal2Array();
 		real2Array.add(point);
+		invalidateBoundingBox();
+		invalidateAWTShape();
 	}
 
 	private void ensureReal2Array() {
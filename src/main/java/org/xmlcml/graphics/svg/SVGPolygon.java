@@ -17,6 +17,7 @@
 package org.xmlcml.graphics.svg;
 
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -113,7 +114,12 @@ public class SVGPolygon extends SVGPoly {
 
 	@Override
 	protected void drawElement(Graphics2D g2d) {
-		super.drawPolylineOrGon(g2d, true);
+		super.drawPolylineOrGon(g2d);
+	}
+
+	@Override
+	protected Shape createAWTShape() {
+		return createGeneralPath(true);
 	}
 	
 	/** makes a new list composed of the polygons in the list
@@ -17,6 +17,7 @@
 package org.xmlcml.graphics.svg;
 
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -28,6 +29,7 @@ import org.xmlcml.euclid.Line2;
 import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.linestuff.PolylineJoiner;
 import org.xmlcml.xml.XMLUtil;
 
 import nu.xom.Element;
@@ -155,7 +157,12 @@ public class SVGPolyline extends SVGPoly {
 
 	@Override
 	protected void drawElement(Graphics2D g2d) {
-		super.drawPolylineOrGon(g2d, false);
+		super.drawPolylineOrGon(g2d);
+	}
+
+	@Override
+	protected Shape createAWTShape() {
+		return createGeneralPath(false);
 	}
 	
 	/** 
@@ -189,7 +196,22 @@ public class SVGPolyline extends SVGPoly {
 		return polyline;
 	}
 
+	/** joins polylines where the last point of one equals (within eps) the first point of another.
+	 * 
+	 * Unlike quadraticMergePolylines() the polylines need not be neighbours in the list.
+	 * Expected time is linear (see PolylineJoiner).
+	 * 
+	 * @param polylineList not altered
+	 * @param eps
+	 * @return unjoined polylines and new joined polylines, in order of their earliest member
+	 */
+	public static List<SVGPolyline> mergePolylinesAtEndPoints(List<SVGPolyline> polylineList, double eps) {
+		return new PolylineJoiner(eps).joinPolylines(polylineList);
+	}
+
 	/** runs through a list of lines joining where possible to create (smaller) list.
+	 * 
+	 * only joins neighbours in the list; see mergePolylinesAtEndPoints() for large lists.
 	 * 
 	 * Crude algorithm. 
 	 *   1 start = 0;
@@ -17,6 +17,7 @@
 package org.xmlcml.graphics.svg;
 
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.List;
@@ -155,21 +156,18 @@ public class SVGRect extends SVGShape {
 	protected void drawElement(Graphics2D g2d) {
 		saveGraphicsSettingsAndApplyTransform(g2d);
 		ensureCumulativeTransform();
-		double x1 = this.getDouble(X);
-		double y1 = this.getDouble(Y);
-		Real2 xy1 = new Real2(x1, y1);
-		xy1 = transform(xy1, cumulativeTransform);
-		double w = this.getDouble(WIDTH);
-		double h = this.getDouble(HEIGHT);
-		Real2 xy2 = new Real2(x1+w, y1+h);
-		xy2 = transform(xy2, cumulativeTransform);
-		
-		Rectangle2D rect = new Rectangle2D.Double(xy1.x, xy1.y, xy2.x-xy1.x, xy2.y-xy1.y);
+		// transformed shape, so that flipped or rotated rects are drawn
+		Shape rect = getTransformedAWTShape(cumulativeTransform.getAffineTransform());
 		fill(g2d, rect);
 		draw(g2d, rect);
 		restoreGraphicsSettingsAndTransform(g2d);
 	}
 
+	@Override
+	protected Shape createAWTShape() {
+		return new Rectangle2D.Double(getDouble(X), getDouble(Y), getDouble(WIDTH), getDouble(HEIGHT));
+	}
+
 
 	// this only works for 0 += PI/2, +- PI
 	public void applyTransform(Transform2 t2) {
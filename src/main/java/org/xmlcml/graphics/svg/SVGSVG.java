@@ -18,13 +18,13 @@ package org.xmlcml.graphics.svg;
 
 import java.awt.Graphics2D;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.graphics.svg.text.SVGWordPage;
 import org.xmlcml.graphics.svg.text.SVGWordPageList;
+import org.xmlcml.graphics.svg.util.SVGWriter;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -130,19 +130,34 @@ public class SVGSVG extends SVGElement {
 	 * @return
 	 */
 	public static SVGSVG wrapAndWriteAsSVG(SVGElement svgg, File file, double height, double width) {
+		return wrapAndWriteAsSVG(svgg, file, height, width, -1);
+	}
+
+	/**	creates an SVGSVG wrapper for any element and outputs to file with SVGWriter.
+	 * 
+	 * <p>numbers are rounded as they are written; the elements are not formatted.</p>
+	 *   
+	 * @param svgg
+	 * @param file gzipped if suffix is .svgz
+	 * @param height
+	 * @param width
+	 * @param decimalPlaces negative for unchanged
+	 * @return
+	 */
+	public static SVGSVG wrapAndWriteAsSVG(SVGElement svgg, File file, double height, double width, int decimalPlaces) {
 		SVGSVG svgsvg = svgg instanceof SVGSVG ? (SVGSVG) svgg : new SVGSVG();
 		if (svgg != null) {
 			svgsvg = wrapAsSVG(svgg);
 			svgsvg.setHeight(height);
 			svgsvg.setWidth(width);
+			LOG.trace("Writing SVG "+file.getAbsolutePath());
+			SVGWriter writer = new SVGWriter(file);
 			try {
-				LOG.trace("Writing SVG "+file.getAbsolutePath());
-				file.getParentFile().mkdirs();
-				FileOutputStream fos = new FileOutputStream(file);
-				SVGUtil.debug(svgsvg, fos, 1);
-				fos.close();
-			} catch (Exception e) {
-				throw new RuntimeException("cannot write svg to "+file, e);
+				writer.setIndent(1);
+				writer.setDecimalPlaces(decimalPlaces);
+				writer.writeDocument(svgsvg);
+			} finally {
+				writer.close();
 			}
 		}
 		return svgsvg;
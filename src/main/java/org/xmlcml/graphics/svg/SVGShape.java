@@ -1,5 +1,8 @@
 package org.xmlcml.graphics.svg;
 
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -8,6 +11,7 @@ import java.util.Set;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.IntArray;
+import org.xmlcml.euclid.Real2;
 
 import nu.xom.Attribute;
 
@@ -35,6 +39,12 @@ public abstract class SVGShape extends SVGElement {
 			".//svg:rect[not(ancestor::svg:defs)]" +
 			"";
 
+	// Java2D shapes, rebuilt only when a geometric attribute changes
+	private Shape awtShape;
+	private boolean awtShapeDirty = true;
+	private Shape transformedAWTShape;
+	private AffineTransform awtShapeTransform;
+
 	protected SVGShape(String name) {
 		super(name);
 	}
@@ -85,6 +95,106 @@ public abstract class SVGShape extends SVGElement {
 		return getGeometricHash();
 	}
 
+	/** Java2D shape in user coordinates (without transforms).
+	 * 
+	 * created by createAWTShape() and cached until a geometric attribute of this element changes;
+	 * shared by drawing and hit-testing.
+	 * 
+	 * @return shared shape; do not modify. null if the element has no (complete) geometry
+	 */
+	public Shape getAWTShape() {
+		if (awtShape == null || awtShapeDirty) {
+			awtShape = createAWTShape();
+			awtShapeDirty = false;
+			transformedAWTShape = null;
+		}
+		return awtShape;
+	}
+
+	/** Java2D shape transformed by transform.
+	 * 
+	 * the last transformed shape is cached, so repeated drawing with the same (cumulative) transform
+	 * does not re-create it.
+	 * 
+	 * @param transform
+	 * @return shared shape; do not modify. null if getAWTShape() is null
+	 */
+	public Shape getTransformedAWTShape(AffineTransform transform) {
+		Shape shape = getAWTShape();
+		if (shape == null) {
+			return null;
+		}
+		if (transformedAWTShape == null || !transform.equals(awtShapeTransform)) {
+			transformedAWTShape = transform.createTransformedShape(shape);
+			awtShapeTransform = new AffineTransform(transform);
+		}
+		return transformedAWTShape;
+	}
+
+	/** Java2D shape transformed by the transforms of this element and its ancestors.
+	 * 
+	 * @return shared shape; do not modify
+	 */
+	public Shape getTransformedAWTShape() {
+		return getTransformedAWTShape(getCumulativeTransform().getAffineTransform());
+	}
+
+	/** creates the Java2D shape for getAWTShape().
+	 * 
+	 * @return null unless overridden
+	 */
+	protected Shape createAWTShape() {
+		return null;
+	}
+
+	/** does point hit this shape (user coordinates, no transforms)?
+	 * 
+	 * a point hits if it is inside the shape or within tolerance of its outline (so lines and
+	 * open polylines can be hit).
+	 * 
+	 * @param point
+	 * @param tolerance
+	 * @return false if no shape
+	 */
+	public boolean isHitBy(Real2 point, double tolerance) {
+		Shape shape = getAWTShape();
+		if (shape == null || point == null) {
+			return false;
+		}
+		if (shape.contains(point.getX(), point.getY())) {
+			return true;
+		}
+		Shape outline = new BasicStroke((float) (2.0 * tolerance)).createStrokedShape(shape);
+		return outline.contains(point.getX(), point.getY());
+	}
+
+	/** marks the cached Java2D shapes as needing re-creation.
+	 * 
+	 * called automatically when geometric attributes change;
+	 * subclasses holding geometry outside attributes should call it when that changes.
+	 */
+	protected void invalidateAWTShape() {
+		awtShapeDirty = true;
+		transformedAWTShape = null;
+	}
+
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		if (isGeometricAttribute(attribute)) {
+			invalidateAWTShape();
+		}
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		Attribute removed = super.removeAttribute(attribute);
+		if (isGeometricAttribute(removed)) {
+			invalidateAWTShape();
+		}
+		return removed;
+	}
+
 	public void setMarkerEndRef(SVGMarker marker) {
 		String id = marker.getId();
 		this.setMarkerEnd(makeUrlRef(id));
@@ -0,0 +1,236 @@
+/**
+ *    Copyright 2011 Peter Murray-Rust et. al.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.xmlcml.graphics.svg;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Transform2;
+
+import nu.xom.Attribute;
+
+/** push-style extraction of elements from an SVG stream without building the document tree.
+ *
+ * Handlers are registered per tag (path, text, line, image...). While streaming, each element
+ * with a registered handler is built (with its own subtree only, e.g. the tspans of a text),
+ * the cumulative transform of its ancestors and itself is applied and the element
+ * is passed to the handler. Ancestors are never built; only a stack of their transforms is kept,
+ * so memory is bounded by document depth rather than size.
+ *
+ * Typical use (equivalent of PathExtractor/TextExtractor but in constant memory):
+ * <pre>
+ *   SVGStreamExtractor extractor = new SVGStreamExtractor();
+ *   extractor.addPathHandler(new SVGElementHandler() {
+ *       public void handleElement(SVGElement path) {
+ *           Real2Range bbox = path.getBoundingBox();
+ *           ...
+ *       }
+ *   });
+ *   extractor.extract(svgFile);
+ * </pre>
+ *
+ * Elements nested inside a handled element are not reported separately. The transform attribute
+ * of a handled element is removed once applied (SVGText may add a rotation about its origin, as in
+ * SVGUtil.applyAndRemoveCumulativeTransformsFromDocument()).
+ *
+ * @author pm286
+ *
+ */
+public class SVGStreamExtractor {
+
+	private static final Logger LOG = Logger.getLogger(SVGStreamExtractor.class);
+
+	private SVGStreamReader streamReader;
+	private Map<String, SVGElementHandler> handlerByTag;
+	private boolean applyTransforms;
+	private boolean skipDefs;
+	private int handledCount;
+
+	public SVGStreamExtractor() {
+		streamReader = new SVGStreamReader();
+		handlerByTag = new HashMap<String, SVGElementHandler>();
+		applyTransforms = true;
+		skipDefs = false;
+	}
+
+	/** registers handler for elements with given local name.
+	 *
+	 * replaces any previous handler for the tag.
+	 *
+	 * @param tag e.g. SVGPath.TAG
+	 * @param handler
+	 */
+	public void addHandler(String tag, SVGElementHandler handler) {
+		handlerByTag.put(tag, handler);
+	}
+
+	public void addPathHandler(SVGElementHandler handler) {
+		addHandler(SVGPath.TAG, handler);
+	}
+
+	public void addTextHandler(SVGElementHandler handler) {
+		addHandler(SVGText.TAG, handler);
+	}
+
+	public void addLineHandler(SVGElementHandler handler) {
+		addHandler(SVGLine.TAG, handler);
+	}
+
+	public void addImageHandler(SVGElementHandler handler) {
+		addHandler(SVGImage.TAG, handler);
+	}
+
+	/** apply cumulative transforms to handled elements.
+	 *
+	 * @param applyTransforms default true
+	 */
+	public void setApplyTransforms(boolean applyTransforms) {
+		this.applyTransforms = applyTransforms;
+	}
+
+	/** do not report elements inside &lt;defs&gt; (e.g. clipPath paths).
+	 *
+	 * @param skipDefs default false (as SVGPath.extractPaths())
+	 */
+	public void setSkipDefs(boolean skipDefs) {
+		this.skipDefs = skipDefs;
+	}
+
+	/** number of elements passed to handlers in last extraction.
+	 *
+	 * @return
+	 */
+	public int getHandledCount() {
+		return handledCount;
+	}
+
+	/** streams file and invokes handlers.
+	 *
+	 * @param file
+	 * @throws RuntimeException if file cannot be read or parsed
+	 */
+	public void extract(File file) {
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			extract(is);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot read file: "+file, e);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	/** streams input and invokes handlers.
+	 *
+	 * @param is not closed
+	 * @throws RuntimeException if stream cannot be parsed
+	 */
+	public void extract(InputStream is) {
+		XMLStreamReader reader = null;
+		try {
+			reader = streamReader.createStreamReader(is);
+			extract(reader);
+		} catch (XMLStreamException e) {
+			throw new RuntimeException("cannot parse SVG stream", e);
+		} finally {
+			SVGStreamReader.closeQuietly(reader);
+		}
+	}
+
+	private void extract(XMLStreamReader reader) throws XMLStreamException {
+		handledCount = 0;
+		Deque<Transform2> transformStack = new ArrayDeque<Transform2>();
+		transformStack.push(new Transform2());
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String tag = reader.getLocalName();
+				SVGElementHandler handler = handlerByTag.get(tag);
+				if (handler != null) {
+					// consumes the subtree including END_ELEMENT
+					SVGElement element = streamReader.readElement(reader);
+					if (applyTransforms) {
+						applyCumulativeTransform(element, transformStack.peek());
+					}
+					handler.handleElement(element);
+					handledCount++;
+				} else if (skipDefs && SVGDefs.TAG.equals(tag)) {
+					skipElement(reader);
+				} else {
+					String transformValue = reader.getAttributeValue(null, SVGElement.TRANSFORM);
+					transformStack.push(concatenate(transformStack.peek(), transformValue));
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				transformStack.pop();
+			}
+		}
+		LOG.trace("handled "+handledCount+" elements");
+	}
+
+	private static Transform2 concatenate(Transform2 parentTransform, String transformValue) {
+		Transform2 transform = parentTransform;
+		if (transformValue != null) {
+			Transform2 thisTransform = SVGElement.createTransform2FromTransformAttribute(transformValue);
+			transform = parentTransform.concatenate(thisTransform);
+		}
+		return transform;
+	}
+
+	private static void applyCumulativeTransform(SVGElement element, Transform2 parentTransform) {
+		Attribute transformAttribute = element.getAttribute(SVGElement.TRANSFORM);
+		String transformValue = (transformAttribute == null) ? null : transformAttribute.getValue();
+		Transform2 cumulativeTransform = concatenate(parentTransform, transformValue);
+		if (transformAttribute != null) {
+			transformAttribute.detach();
+		}
+		if (!cumulativeTransform.isUnit()) {
+			element.applyTransform(cumulativeTransform);
+		}
+	}
+
+	/** skips the current element and its subtree.
+	 *
+	 * @param reader positioned at START_ELEMENT; on return at matching END_ELEMENT
+	 * @throws XMLStreamException
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+}
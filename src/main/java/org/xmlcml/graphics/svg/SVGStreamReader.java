@@ -0,0 +1,239 @@
+/**
+ *    Copyright 2011 Peter Murray-Rust et. al.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.xmlcml.graphics.svg;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import nu.xom.Attribute;
+import nu.xom.Comment;
+import nu.xom.ProcessingInstruction;
+import nu.xom.Text;
+
+/** reads SVG in a single pass, creating SVGElement subclasses directly from parser events.
+ *
+ * SVGElement.readAndCreateSVG(File) builds a XOM Document and then copies every node
+ * into the subclassed tree, so each page is held twice. This reader uses StAX and
+ * creates SVGPath, SVGText, SVGG, etc. as the start tags are read, with the same tag/class
+ * dispatch as SVGElement.readAndCreateSVG(Element).
+ *
+ * Whitespace, comments and processing instructions are kept as in the copied tree.
+ * External DTDs are not fetched.
+ *
+ * A reader can be reused (including across threads) as it holds only the configured factory
+ * and settings.
+ *
+ * @author pm286
+ *
+ */
+public class SVGStreamReader {
+
+	private static final Logger LOG = Logger.getLogger(SVGStreamReader.class);
+
+	private XMLInputFactory inputFactory;
+	private boolean compactImageData;
+
+	public SVGStreamReader() {
+		inputFactory = createInputFactory();
+	}
+
+	/** hold data: hrefs of images as compact bytes (see SVGImage.compactImageData()).
+	 *
+	 * @param compactImageData default false
+	 */
+	public void setCompactImageData(boolean compactImageData) {
+		this.compactImageData = compactImageData;
+	}
+
+	public boolean isCompactImageData() {
+		return compactImageData;
+	}
+
+	/** convenience method.
+	 *
+	 * @param file
+	 * @return root element (normally SVGSVG)
+	 */
+	public static SVGElement readAndCreateSVG(File file) {
+		return new SVGStreamReader().read(file);
+	}
+
+	/** convenience method.
+	 *
+	 * @param is not closed
+	 * @return root element (normally SVGSVG)
+	 */
+	public static SVGElement readAndCreateSVG(InputStream is) {
+		return new SVGStreamReader().read(is);
+	}
+
+	/** reads file and creates subclassed tree.
+	 *
+	 * @param file
+	 * @return root element
+	 * @throws RuntimeException if file cannot be read or parsed
+	 */
+	public SVGElement read(File file) {
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			return read(is);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot read file: "+file, e);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	/** reads stream and creates subclassed tree.
+	 *
+	 * @param is not closed
+	 * @return root element or null if stream has no elements
+	 * @throws RuntimeException if stream cannot be parsed
+	 */
+	public SVGElement read(InputStream is) {
+		XMLStreamReader reader = null;
+		try {
+			reader = createStreamReader(is);
+			SVGElement root = null;
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+					root = readElement(reader);
+					break;
+				}
+			}
+			return root;
+		} catch (XMLStreamException e) {
+			throw new RuntimeException("cannot parse SVG stream", e);
+		} finally {
+			closeQuietly(reader);
+		}
+	}
+
+	/** creates a reader for the stream using the shared factory.
+	 *
+	 * @param is
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	XMLStreamReader createStreamReader(InputStream is) throws XMLStreamException {
+		return inputFactory.createXMLStreamReader(is);
+	}
+
+	/** reads the element at the current START_ELEMENT and all its descendants.
+	 *
+	 * on return the reader is positioned at the matching END_ELEMENT.
+	 *
+	 * @param reader positioned at START_ELEMENT
+	 * @return subclassed element (not attached to any parent)
+	 * @throws XMLStreamException
+	 */
+	SVGElement readElement(XMLStreamReader reader) throws XMLStreamException {
+		SVGElement element = createElement(reader);
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				element.appendChild(readElement(reader));
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			} else if (event == XMLStreamConstants.CHARACTERS ||
+					event == XMLStreamConstants.CDATA ||
+					event == XMLStreamConstants.SPACE) {
+				element.appendChild(new Text(reader.getText()));
+			} else if (event == XMLStreamConstants.COMMENT) {
+				element.appendChild(new Comment(reader.getText()));
+			} else if (event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+				element.appendChild(new ProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+			} else {
+				LOG.trace("skipped event: "+event);
+			}
+		}
+		return element;
+	}
+
+	/** creates the subclassed element for the current START_ELEMENT and copies its attributes.
+	 *
+	 * @param reader positioned at START_ELEMENT
+	 * @return element without children
+	 */
+	SVGElement createElement(XMLStreamReader reader) {
+		String tag = reader.getLocalName();
+		String clazz = reader.getAttributeValue(null, SVGElement.SVG_CLASS);
+		SVGElement element = SVGElement.createSubclassedElement(tag, clazz);
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			element.addAttribute(createAttribute(reader, i));
+		}
+		if (compactImageData && element instanceof SVGImage) {
+			((SVGImage) element).compactImageData();
+		}
+		return element;
+	}
+
+	private static Attribute createAttribute(XMLStreamReader reader, int i) {
+		String localName = reader.getAttributeLocalName(i);
+		String namespaceURI = reader.getAttributeNamespace(i);
+		String value = reader.getAttributeValue(i);
+		Attribute attribute = null;
+		if (namespaceURI == null || namespaceURI.length() == 0) {
+			attribute = new Attribute(localName, value);
+		} else {
+			String prefix = reader.getAttributePrefix(i);
+			String qName = (prefix == null || prefix.length() == 0) ? localName : prefix+":"+localName;
+			attribute = new Attribute(qName, namespaceURI, value);
+		}
+		return attribute;
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		// XOM gives a single Text node for each run of characters
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		// never fetch external DTDs (many PDF converters reference the W3C SVG DTD)
+		factory.setXMLResolver(new XMLResolver() {
+			public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+				return new ByteArrayInputStream(new byte[0]);
+			}
+		});
+		return factory;
+	}
+
+	static void closeQuietly(XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				LOG.trace("cannot close reader: "+e);
+			}
+		}
+	}
+
+}
@@ -133,7 +133,7 @@ public class SVGText extends SVGElement {
 		estimatedHorizontallength = Double.NaN; 
 		currentBaseY = Double.NaN;
 		calculatedTextEndCoordinate = Double.NaN;
-		setBoundingBoxCached(false);
+		invalidateBoundingBox();
 	}
 
 	public static void setDefaultStyle(SVGElement text) {
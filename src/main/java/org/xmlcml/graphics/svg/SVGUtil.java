@@ -16,6 +16,8 @@ import org.xmlcml.euclid.RealRange;
 import org.xmlcml.euclid.Transform2;
 import org.xmlcml.euclid.Vector2;
 import org.xmlcml.graphics.svg.linestuff.Path2ShapeConverter;
+import org.xmlcml.graphics.svg.util.GeometricDeduplicator;
+import org.xmlcml.graphics.svg.util.RTree;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -124,29 +126,62 @@ public class SVGUtil {
 	}
 
 	/** finds root SVG element ancestor and then removes all transformation in the tree
+	 * 
+	 * single depth-first pass; each transform attribute is parsed once and concatenated 
+	 * with its parent's on the way down, applied to leaf elements and removed on the way up
+	 * (texts keep a rotation about their origin).
+	 * 
 	 * @param element - any element in tree will do
 	 */
 	public static void applyAndRemoveCumulativeTransformsFromDocument(SVGElement element) {
-		List<SVGElement> roots = SVGUtil.getQuerySVGElements(element, "/svg:svg");
-		if (roots.size() == 1) {
-			SVGSVG root = (SVGSVG) roots.get(0);
+		Node rootNode = element.getDocument() == null ? null : element.getDocument().getRootElement();
+		if (rootNode == null) {
+			// no document; the topmost element is the root
+			rootNode = element;
+			while (rootNode.getParent() instanceof Element) {
+				rootNode = rootNode.getParent();
+			}
+		}
+		if (rootNode instanceof SVGSVG) {
+			SVGSVG root = (SVGSVG) rootNode;
 			if (root.getAttribute(TRANSFORMS_APPLIED) == null) {
-				List<SVGElement> leafElements = SVGUtil.getQuerySVGElements(root, "//svg:*[count(*)=0]");
-				applyCumulativeTransforms(leafElements);
-				Nodes transformAttributes = root.query("//@transform");
-				for (int i = 0; i < transformAttributes.size(); i++) {
-					Attribute attribute = (Attribute) transformAttributes.get(i);
-					if (attribute.getParent() instanceof SVGText) {
-						SVGText text = (SVGText) attribute.getParent();
-						LOG.trace("TEXT "+text.toXML());
-						text.setTransformToRotateAboutTextOrigin();
-					} else {
-						attribute.detach();
-					}
-				}
+				applyAndRemoveTransforms(root, new Transform2());
 				root.addAttribute(new Attribute(TRANSFORMS_APPLIED, "yes"));
 			}
-//			roots.get(0).debug("ROOT");
+		}
+	}
+
+	/** applies and removes transforms in subtree.
+	 * 
+	 * @param element
+	 * @param parentTransform cumulative transform of ancestors (not altered)
+	 */
+	private static void applyAndRemoveTransforms(Element element, Transform2 parentTransform) {
+		Attribute transformAttribute = element.getAttribute(SVGElement.TRANSFORM);
+		Transform2 transform = parentTransform;
+		if (transformAttribute != null) {
+			transform = parentTransform.concatenate(
+					SVGElement.createTransform2FromTransformAttribute(transformAttribute.getValue()));
+		}
+		int childCount = element.getChildCount();
+		boolean isLeaf = true;
+		for (int i = 0; i < childCount; i++) {
+			Node child = element.getChild(i);
+			if (child instanceof Element) {
+				isLeaf = false;
+				applyAndRemoveTransforms((Element) child, transform);
+			}
+		}
+		if (isLeaf && element instanceof SVGElement) {
+			((SVGElement) element).applyTransform(transform);
+		}
+		if (element instanceof SVGText) {
+			// rotated texts (re)set their transform when applied
+			if (element.getAttribute(SVGElement.TRANSFORM) != null) {
+				((SVGText) element).setTransformToRotateAboutTextOrigin();
+			}
+		} else if (transformAttribute != null) {
+			element.removeAttribute(transformAttribute);
 		}
 	}
 
@@ -265,6 +300,27 @@ public class SVGUtil {
 		return includedList;
 	}
 	
+	/** find all indexed elements completely within a bounding box.
+	 * 
+	 * as findElementsWithin(Real2Range, List) but only examines elements near the box;
+	 * use when many boxes are queried against the same elements.
+	 * 
+	 * @param boundingBox outer container
+	 * @param elementIndex elements to be examined (e.g. from RTree.createElementTree())
+	 * @return empty list if parameters are null or no elements fit criterion
+	 */
+	public static List<SVGElement> findElementsWithin(Real2Range boundingBox, RTree<? extends SVGElement> elementIndex) {
+		List<SVGElement> includedList = new ArrayList<SVGElement>();
+		if (boundingBox != null && elementIndex != null) {
+			for (SVGElement element : elementIndex.findIntersecting(boundingBox)) {
+				if (boundingBox.includes(element.getBoundingBox())) {
+					includedList.add(element);
+				}
+			}
+		}
+		return includedList;
+	}
+	
 	
 	/** find all elements completely within a bounding box.
 	 * 
@@ -289,6 +345,27 @@ public class SVGUtil {
 		return includedList;
 	}
 	
+	/** find all indexed elements intersecting a bounding box.
+	 * 
+	 * as findElementsIntersecting(Real2Range, List) but only examines elements near the box.
+	 * 
+	 * @param boundingBox 
+	 * @param elementIndex elements to be examined (e.g. from RTree.createElementTree())
+	 * @return empty list if parameters are null or no elements fit criterion
+	 */
+	public static List<SVGElement> findElementsIntersecting(Real2Range boundingBox, RTree<? extends SVGElement> elementIndex) {
+		List<SVGElement> includedList = new ArrayList<SVGElement>();
+		if (boundingBox != null && elementIndex != null) {
+			for (SVGElement element : elementIndex.findIntersecting(boundingBox)) {
+				Real2Range intersect = boundingBox.intersectionWith(element.getBoundingBox());
+				if (intersect != null && intersect.isValid()) {
+					includedList.add(element);
+				}
+			}
+		}
+		return includedList;
+	}
+	
 	/** crude quick method to create list of non-Overlapping BoundingBoxes
 	 * use only for small number of paths
 	 * will only work if paths a
@@ -375,6 +452,32 @@ public class SVGUtil {
 		return shapeList;
 	}
 
+	/**
+	 * Many shapes / paths are drawn twice, sometimes with slightly different coordinates; 
+	 * if two or more are equal within epsilon, detach and remove the later one(s)
+	 * 
+	 * linear time (see GeometricDeduplicator)
+	 * 
+	 * @param shapeList
+	 * @param epsilon
+	 * @return
+	 */
+	public static List<SVGShape> removeDuplicateShapes(List<SVGShape> shapeList, double epsilon) {
+		if (shapeList != null) {
+			GeometricDeduplicator<SVGShape> deduplicator = new GeometricDeduplicator<SVGShape>(epsilon);
+			for (SVGShape shape : shapeList) {
+				if (!deduplicator.addShape(shape)) {
+					shape.detach();
+				}
+			}
+			if (deduplicator.getDuplicateCount() > 0) {
+				LOG.trace("Detached "+deduplicator.getDuplicateCount()+" duplicate shapes");
+				shapeList = deduplicator.getItems();
+			}
+		}
+		return shapeList;
+	}
+
 	public static String getSVGXAttribute(SVGElement svgElement, String attName) {
 		Attribute attribute = getSVGXAttributeAttribute(svgElement, attName);
 		return (attribute == null) ? null : attribute.getValue();
@@ -394,10 +497,14 @@ public class SVGUtil {
 
 	public static void debug(Element gChunk, FileOutputStream fileOutputStream,
 			int indent) {
+		// images holding compact data need their href while serializing
+		List<SVGImage> imageList = SVGImage.addTemporaryHrefs(gChunk);
 		try {
 			XMLUtil.debug(gChunk, fileOutputStream, indent);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			SVGImage.removeTemporaryHrefs(imageList);
 		}
 	}
 
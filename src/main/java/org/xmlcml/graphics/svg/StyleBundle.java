@@ -17,7 +17,9 @@
 package org.xmlcml.graphics.svg;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +47,20 @@ public class StyleBundle implements XMLConstants {
 	// not used in bundle
 	private static final String STROKE_LINECAP = "stroke-linecap";
 
+	/** number of distinct style strings whose parsed bundles are kept */
+	public static final int MAX_CACHED_STYLES = 1000;
+
+	/** parsed bundles keyed by raw style string; least recently used are discarded.
+	 * pages typically repeat a few styles many thousands of times.
+	 */
+	private static final Map<String, StyleBundle> BUNDLE_BY_STYLE = Collections.synchronizedMap(
+		new LinkedHashMap<String, StyleBundle>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String, StyleBundle> eldest) {
+				return size() > MAX_CACHED_STYLES;
+			}
+		});
+
 	// not yet @Deprecated
     static List<String> BUNDLE_ATTRIBUTES;
 	static {
@@ -133,6 +149,7 @@ public class StyleBundle implements XMLConstants {
 	private String stroke;
 	private Double strokeWidth;
 	private Map<String, String> atts = new HashMap<String, String>();
+	private boolean shared;
 
 	static final String STYLE = "style";
 
@@ -187,7 +204,12 @@ public class StyleBundle implements XMLConstants {
 		this.copy(style);
 	}
 	
+	/** the copy is never shared, so can be modified.
+	 * 
+	 * @param style
+	 */
 	public void copy(StyleBundle style) {
+		checkNotShared();
 		if (style != null) {
 			this.clipPath = style.clipPath;
 			this.fill = style.fill;
@@ -200,51 +222,127 @@ public class StyleBundle implements XMLConstants {
 			this.strokeWidth = style.strokeWidth;
 			this.atts = new HashMap<String, String>();
 			for (String name : style.atts.keySet()) {
-				atts.put(name, atts.get(name));
+				atts.put(name, style.atts.get(name));
 			}
 		}
 	}
 	
+	/** parsed bundle for style, shared between all callers.
+	 * 
+	 * The bundle must not be modified (mutators throw RuntimeException); 
+	 * use new StyleBundle(bundle) to get a modifiable copy.
+	 * 
+	 * @param style raw value of style attribute
+	 * @return null if style is null
+	 */
+	public static StyleBundle getSharedStyleBundle(String style) {
+		if (style == null) {
+			return null;
+		}
+		StyleBundle styleBundle = BUNDLE_BY_STYLE.get(style);
+		if (styleBundle == null) {
+			// races only cause duplicate parsing
+			styleBundle = new StyleBundle(style);
+			styleBundle.shared = true;
+			BUNDLE_BY_STYLE.put(style, styleBundle);
+		}
+		return styleBundle;
+	}
+
+	public static void clearSharedStyleBundles() {
+		BUNDLE_BY_STYLE.clear();
+	}
+
+	/** true if the bundle is cached and shared (and so cannot be modified).
+	 * 
+	 * @return
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	private void checkNotShared() {
+		if (shared) {
+			throw new RuntimeException("cannot modify shared StyleBundle; copy it with new StyleBundle(bundle)");
+		}
+	}
+
+	/** parses "name : value; name : value ...".
+	 * 
+	 * scans for separators without regex or intermediate arrays. Values may contain ':'.
+	 * 
+	 * @param style
+	 */
 	void processStyle(String style) {
+		checkNotShared();
 		if (style != null) {
-			style = style.trim();
-			if (!style.equals(S_EMPTY)) {
-				String[] ss = style.split(S_SEMICOLON);
-				for (String s : ss) {
-					s = s.trim();
-					if (s.equals(S_EMPTY)) {
-						continue;
-					}
-					String[] aa = s.split(S_COLON);
-					String attName = aa[0].trim();
-					String attVal = aa[1].trim();
-					if (attName.equals(CLIP_PATH)) {
-						clipPath = attVal;
-					} if (attName.equals(FILL)) {
-						fill = attVal;
-					} else if (attName.equals(FONT_FAMILY)) {
-						fontFamily = attVal; 
-					} else if (attName.equals(FONT_SIZE)) {
-						fontSize = getDouble(attVal); 
-					} else if (attName.equals(FONT_STYLE)) {
-						fontStyle = attVal; 
-					} else if (attName.equals(FONT_WEIGHT)) {
-						fontWeight = attVal; 
-					} else if (attName.equals(OPACITY)) {
-						opacity = getDouble(attVal); 
-					} else if (attName.equals(STROKE)) {
-						stroke = attVal;
-					} else if (attName.equals(STROKE_WIDTH)) {
-						strokeWidth = getDouble(attVal); 
-					} else {
-						atts.put(attName, attVal);
+			int length = style.length();
+			int start = 0;
+			while (start < length) {
+				int end = style.indexOf(';', start);
+				if (end == -1) {
+					end = length;
+				}
+				int colon = style.indexOf(':', start);
+				if (colon == -1 || colon > end) {
+					if (!isWhitespace(style, start, end)) {
+						throw new RuntimeException("bad style (no ':'): "+style.substring(start, end));
 					}
+				} else {
+					String attName = substringTrimmed(style, start, colon);
+					String attVal = substringTrimmed(style, colon + 1, end);
+					processSubStyle(attName, attVal);
 				}
+				start = end + 1;
 			}
 		} else {
 //			copy(DEFAULT_STYLE_BUNDLE);
  		}
 	}
+
+	private void processSubStyle(String attName, String attVal) {
+		if (attName.equals(CLIP_PATH)) {
+			clipPath = attVal;
+		} if (attName.equals(FILL)) {
+			fill = attVal;
+		} else if (attName.equals(FONT_FAMILY)) {
+			fontFamily = attVal; 
+		} else if (attName.equals(FONT_SIZE)) {
+			fontSize = getDouble(attVal); 
+		} else if (attName.equals(FONT_STYLE)) {
+			fontStyle = attVal; 
+		} else if (attName.equals(FONT_WEIGHT)) {
+			fontWeight = attVal; 
+		} else if (attName.equals(OPACITY)) {
+			opacity = getDouble(attVal); 
+		} else if (attName.equals(STROKE)) {
+			stroke = attVal;
+		} else if (attName.equals(STROKE_WIDTH)) {
+			strokeWidth = getDouble(attVal); 
+		} else {
+			atts.put(attName, attVal);
+		}
+	}
+
+	/** as s.substring(start, end).trim() */
+	private static String substringTrimmed(String s, int start, int end) {
+		while (start < end && s.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && s.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return s.substring(start, end);
+	}
+
+	private static boolean isWhitespace(String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
 	
 	/** attVal may be null 
 	 * 
@@ -252,6 +350,7 @@ public class StyleBundle implements XMLConstants {
 	 * @param attVal
 	 */
 	public void setSubStyle(String attName, Object attVal) {
+		checkNotShared();
 		if (attName == null) {
 			throw new RuntimeException("null style");
 		} else if (attName.equals(CLIP_PATH)) {
@@ -373,6 +472,7 @@ public class StyleBundle implements XMLConstants {
 	}
 	
 	public void setClipPath(String clipPath) {
+		checkNotShared();
 		this.clipPath = clipPath;
 	}
 
@@ -381,6 +481,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setFill(String fill) {
+		checkNotShared();
 		this.fill = fill;
 	}
 
@@ -389,6 +490,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setStroke(String stroke) {
+		checkNotShared();
 		this.stroke = stroke;
 	}
 
@@ -397,6 +499,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setStrokeWidth(Double strokeWidth) {
+		checkNotShared();
 		this.strokeWidth = strokeWidth;
 	}
 
@@ -405,6 +508,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setFontFamily(String fontFamily) {
+		checkNotShared();
 		this.fontFamily = fontFamily;
 	}
 
@@ -413,6 +517,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setFontSize(double fontSize) {
+		checkNotShared();
 		this.fontSize = fontSize;
 	}
 
@@ -421,6 +526,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setFontStyle(String fontStyle) {
+		checkNotShared();
 		this.fontStyle = fontStyle;
 	}
 
@@ -429,6 +535,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setFontWeight(String fontWeight) {
+		checkNotShared();
 		this.fontWeight = fontWeight;
 	}
 
@@ -437,6 +544,7 @@ public class StyleBundle implements XMLConstants {
 	}
 
 	public void setOpacity(double opacity) {
+		checkNotShared();
 		this.opacity = opacity;
 	}
 	
@@ -486,60 +594,74 @@ public class StyleBundle implements XMLConstants {
 	}
 	
 	public static boolean isBold(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		String weight = styleBundle == null ? null : styleBundle.getFontWeight();
 		return StyleBundle.FontWeight.BOLD.equals(weight);
 	}
 	
 	public static boolean isItalic(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		String fontStyle = styleBundle == null ? null : styleBundle.getFontStyle();
 		return StyleBundle.FontStyle.ITALIC.equals(fontStyle);
 	}
 
 	public static String getFill(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getFill();
 	}
 
 	public static Double getFontSize(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getFontSize();
 	}
 
 	public static Double getOpacity(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getOpacity();
 	}
 
 	public static Double getStrokeWidth(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getStrokeWidth();
 	}
 
 	public static String getStroke(Element element) {
-		StyleBundle styleBundle = StyleBundle.getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getStroke();
 	}
 
 	public static String getFontWeight(Element element) {
-		StyleBundle styleBundle = getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getFontWeight();
 	}
 
 	public static String getFontStyle(Element element) {
-		StyleBundle styleBundle = getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getFontStyle();
 	}
 
 	public static String getFontFamily(Element element) {
-		StyleBundle styleBundle = getStyleBundle(element);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
 		return styleBundle == null ? null : styleBundle.getFontFamily();
 	}
 
+	/** modifiable bundle for the style attribute of element.
+	 * 
+	 * @param element
+	 * @return null if no style attribute
+	 */
 	public static StyleBundle getStyleBundle(Element element) {
-		String style = element.getAttributeValue(STYLE);
-		return style == null ? null : new StyleBundle(style);
+		StyleBundle styleBundle = getSharedStyleBundle(element);
+		return styleBundle == null ? null : new StyleBundle(styleBundle);
+	}
+
+	/** shared (unmodifiable) bundle for the style attribute of element.
+	 * 
+	 * @param element
+	 * @return null if no style attribute
+	 */
+	public static StyleBundle getSharedStyleBundle(Element element) {
+		return getSharedStyleBundle(element.getAttributeValue(STYLE));
 	}
 	
 
@@ -9,6 +9,7 @@ import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.graphics.svg.SVGRect;
 import org.xmlcml.graphics.svg.SVGSVG;
 import org.xmlcml.graphics.svg.plot.PlotBox;
+import org.xmlcml.graphics.svg.store.SVGDebugSink;
 import org.xmlcml.graphics.svg.store.SVGStore;
 
 /** superclass for extractorAnnotators.
@@ -47,9 +48,20 @@ public abstract class AbstractExtractor {
 	
 	protected abstract Real2Range getBoundingBox();
 
+	/** writes to the debug sink of the store if it is active, else to file.
+	 * 
+	 * @param type
+	 * @param outFilename
+	 * @param g
+	 */
 	protected void writeDebug(String type, String outFilename, SVGG g) {
 		File outFile = new File(outFilename);
-		SVGSVG.wrapAndWriteAsSVG(g, outFile);
+		SVGDebugSink debugSink = (svgStore == null) ? null : svgStore.getDebugSink();
+		if (debugSink != null && debugSink.isActive()) {
+			debugSink.write(g, outFile);
+		} else {
+			SVGSVG.wrapAndWriteAsSVG(g, outFile);
+		}
 		LOG.debug("wrote "+type+": "+outFile.getAbsolutePath());
 	}
 }
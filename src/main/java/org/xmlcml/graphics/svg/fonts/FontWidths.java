@@ -546,18 +546,18 @@ public class FontWidths {
     
     public final static String HELVETICA = "helvetica";
     public final static String TIMES_ROMAN = "times-roman";
-	private static void ensureFontWidthMap() {
-		if (fontWidthMap == null) {
-			fontWidthMap = new HashMap<String, double[]>();
-			fontWidthMap.put("serif", SERIF);
-			fontWidthMap.put(TIMES_ROMAN, SERIF);
-			fontWidthMap.put(HELVETICA, SANS_SERIF);
-			fontWidthMap.put("sans-serif", SANS_SERIF);
-		}
+	// built during class initialization so it is safely published to all threads
+	// (text widths are read concurrently by SVGStoreBatch)
+	static {
+		Map<String, double[]> map = new HashMap<String, double[]>();
+		map.put("serif", SERIF);
+		map.put(TIMES_ROMAN, SERIF);
+		map.put(HELVETICA, SANS_SERIF);
+		map.put("sans-serif", SANS_SERIF);
+		fontWidthMap = map;
 	}
 
     public final static double[] getFontWidths(String family) {
-		ensureFontWidthMap();
 		double[] widths = (family == null) ? null : fontWidthMap.get(family.toLowerCase());
 		return (widths == null) ? fontWidthMap.get(HELVETICA) : widths;
 	}
@@ -0,0 +1,330 @@
+package org.xmlcml.graphics.svg.image;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGImage;
+import org.xmlcml.graphics.svg.SVGStreamReader;
+import org.xmlcml.graphics.svg.util.DaemonThreadFactory;
+
+/** writes the embedded images of many SVG pages in parallel.
+ *
+ * Pages are read on the calling thread; each image is decoded and written by a fixed pool
+ * of worker threads. At most queueCapacity images wait for a worker (the reader blocks
+ * when the queue is full) so only threadCount images are decoded at any time.
+ * <p>
+ * Each worker keeps its own ImageWriter for the batch rather than looking one up per image.
+ * Images are written to fileroot.1.png, fileroot.2.png... where fileroot is the page's base name
+ * (or given). A failed image or page is logged and counted and does not stop the batch.
+ *
+ * <pre>
+ *   ImageBatchExporter exporter = new ImageBatchExporter(new File("target/images"));
+ *   exporter.setThreadCount(8);
+ *   exporter.export(svgFiles);
+ *   LOG.debug(exporter.getReport());
+ * </pre>
+ *
+ * @author pm286
+ *
+ */
+public class ImageBatchExporter {
+
+	private static final Logger LOG = Logger.getLogger(ImageBatchExporter.class);
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	private File outputDirectory;
+	private int threadCount;
+	private int queueCapacity;
+	private String mimeType;
+	private SVGStreamReader streamReader;
+
+	// per batch
+	private ExecutorService executor;
+	private Semaphore queueSlots;
+	private ThreadLocal<ImageWriter> imageWriter;
+	private List<ImageWriter> imageWriterList;
+	private AtomicInteger imageCount;
+	private AtomicInteger failedImageCount;
+	private AtomicLong byteCount;
+	private int pageCount;
+	private int failedPageCount;
+	private long totalMillis;
+
+	public ImageBatchExporter(File outputDirectory) {
+		if (outputDirectory == null) {
+			throw new RuntimeException("null output directory");
+		}
+		this.outputDirectory = outputDirectory;
+		threadCount = Runtime.getRuntime().availableProcessors();
+		queueCapacity = DEFAULT_QUEUE_CAPACITY;
+		mimeType = SVGImage.IMAGE_PNG;
+		streamReader = new SVGStreamReader();
+		resetCounts();
+	}
+
+	/**
+	 * @param threadCount number of writer threads (default number of processors)
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1) {
+			throw new RuntimeException("threadCount must be positive: "+threadCount);
+		}
+		this.threadCount = threadCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * @param queueCapacity images waiting for a writer before reading blocks (default DEFAULT_QUEUE_CAPACITY)
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new RuntimeException("queueCapacity must be positive: "+queueCapacity);
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @param mimeType of written images (default image/png); must be known to ImageIO
+	 */
+	public void setMimeType(String mimeType) {
+		if (SVGImage.getFirstKnownImageWriter(mimeType) == null) {
+			throw new RuntimeException("ImageIO unknown mimeType: "+mimeType);
+		}
+		this.mimeType = mimeType;
+	}
+
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/** exports images from *.svg pages.
+	 *
+	 * @param svgFiles
+	 * @return number of images written
+	 */
+	public int export(List<File> svgFiles) {
+		startBatch();
+		try {
+			for (File svgFile : svgFiles) {
+				SVGElement svgElement = null;
+				try {
+					svgElement = streamReader.read(svgFile);
+				} catch (RuntimeException e) {
+					LOG.error("cannot read "+svgFile+": "+e);
+					failedPageCount++;
+					continue;
+				}
+				submitImages(svgElement, FilenameUtils.getBaseName(svgFile.getName()));
+			}
+		} finally {
+			finishBatch();
+		}
+		return imageCount.get();
+	}
+
+	/** exports images from a single element.
+	 *
+	 * @param svgElement
+	 * @param fileroot files are fileroot.1.png...
+	 * @return number of images written
+	 */
+	public int export(SVGElement svgElement, String fileroot) {
+		startBatch();
+		try {
+			submitImages(svgElement, fileroot);
+		} finally {
+			finishBatch();
+		}
+		return imageCount.get();
+	}
+
+	public int getImageCount() {
+		return imageCount.get();
+	}
+
+	public int getFailedImageCount() {
+		return failedImageCount.get();
+	}
+
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	public int getFailedPageCount() {
+		return failedPageCount;
+	}
+
+	/** bytes written by the last export().
+	 *
+	 * @return
+	 */
+	public long getByteCount() {
+		return byteCount.get();
+	}
+
+	/** elapsed time of the last export().
+	 *
+	 * @return
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	/** number of ImageWriters created by the last export() (at most one per thread).
+	 *
+	 * @return
+	 */
+	public int getImageWriterCount() {
+		return imageWriterList == null ? 0 : imageWriterList.size();
+	}
+
+	public double getImagesPerSecond() {
+		return totalMillis == 0 ? 0.0 : 1000.0 * imageCount.get() / totalMillis;
+	}
+
+	public double getMegabytesPerSecond() {
+		return totalMillis == 0 ? 0.0 : 1000.0 * byteCount.get() / (1024. * 1024. * totalMillis);
+	}
+
+	/** summary of the last export().
+	 *
+	 * @return
+	 */
+	public String getReport() {
+		return "exported "+imageCount+" images ("+failedImageCount+" failed, "+byteCount+" bytes) from "+
+			pageCount+" pages ("+failedPageCount+" failed) on "+threadCount+" threads in "+totalMillis+" ms; "+
+			String.format("%.1f images/s, %.2f MB/s", getImagesPerSecond(), getMegabytesPerSecond());
+	}
+
+	private void resetCounts() {
+		imageCount = new AtomicInteger();
+		failedImageCount = new AtomicInteger();
+		byteCount = new AtomicLong();
+		pageCount = 0;
+		failedPageCount = 0;
+		totalMillis = 0;
+	}
+
+	private void startBatch() {
+		resetCounts();
+		totalMillis = System.currentTimeMillis();
+		outputDirectory.mkdirs();
+		imageWriterList = Collections.synchronizedList(new ArrayList<ImageWriter>());
+		imageWriter = new ThreadLocal<ImageWriter>() {
+			protected ImageWriter initialValue() {
+				ImageWriter writer = SVGImage.getFirstKnownImageWriter(mimeType);
+				imageWriterList.add(writer);
+				return writer;
+			}
+		};
+		// queued + running
+		queueSlots = new Semaphore(queueCapacity + threadCount);
+		executor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory("imagewriter"));
+	}
+
+	private void submitImages(SVGElement svgElement, String fileroot) {
+		List<SVGImage> imageList = SVGImage.extractSelfAndDescendantImages(svgElement);
+		String suffix = StreamingImageExtractor.getSuffix(mimeType);
+		for (int i = 0; i < imageList.size(); i++) {
+			final SVGImage image = imageList.get(i);
+			final File file = new File(outputDirectory, fileroot+"."+(i + 1)+"."+suffix);
+			try {
+				queueSlots.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("export interrupted", e);
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						writeImage(image, file);
+					} finally {
+						queueSlots.release();
+					}
+				}
+			});
+		}
+		pageCount++;
+	}
+
+	private void finishBatch() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("export interrupted", e);
+		} finally {
+			for (ImageWriter writer : imageWriterList) {
+				writer.dispose();
+			}
+		}
+		totalMillis = System.currentTimeMillis() - totalMillis;
+		LOG.debug(getReport());
+	}
+
+	/** decodes and writes a single image on the current (worker) thread.
+	 *
+	 * @param image
+	 * @param file
+	 */
+	private void writeImage(SVGImage image, File file) {
+		try {
+			BufferedImage bufferedImage = image.getBufferedImage();
+			if (bufferedImage == null) {
+				throw new RuntimeException("no image data");
+			}
+			ImageWriter writer = imageWriter.get();
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+			ImageOutputStream ios = null;
+			try {
+				ios = new MemoryCacheImageOutputStream(os);
+				writer.setOutput(ios);
+				writer.write(bufferedImage);
+			} finally {
+				writer.reset();
+				if (ios != null) {
+					ios.close();
+				}
+				os.close();
+			}
+			imageCount.incrementAndGet();
+			byteCount.addAndGet(file.length());
+		} catch (IOException e) {
+			LOG.error("cannot write "+file+": "+e);
+			failedImageCount.incrementAndGet();
+		} catch (RuntimeException e) {
+			LOG.error("cannot write "+file+": "+e);
+			failedImageCount.incrementAndGet();
+		}
+	}
+}
@@ -221,7 +221,38 @@ public class ImageConverter {
 		return svgString;
 	}
 
+	/** reads whole file into memory; for large embedded images use extractImageFiles().
+	 * 
+	 * @param svgFile
+	 * @throws IOException
+	 */
 	public void readSVGFile(File svgFile) throws IOException {
 		svgString = FileUtils.readFileToString(svgFile, "UTF-8");
 	}
+
+	/** streaming equivalent of readSVGFile(), createImageFiles() and replaceHrefDataWithFileRef().
+	 * 
+	 * <p>scans svgFile once (StreamingImageExtractor) decoding each image directly to its file,
+	 * so the SVG and the image data are never held in memory. Uses imageDirectory, fileroot and mimeType.
+	 * svgString is not set.</p>
+	 * 
+	 * @param svgFile
+	 * @param outputSvgFile SVG with hrefs replaced by filePrefix+filename; if null not written
+	 * @param filePrefix
+	 * @return list of filenames (with relative syntax (/rather than \\)
+	 * @throws IOException
+	 */
+	public List<String> extractImageFiles(File svgFile, File outputSvgFile, String filePrefix) throws IOException {
+		if (imageDirectory == null) {
+			throw new RuntimeException("No image directory");
+		}
+		StreamingImageExtractor extractor = new StreamingImageExtractor(imageDirectory);
+		extractor.setFileroot(fileroot);
+		extractor.setMimeType(mimeType);
+		imageFilenames = new ArrayList<String>();
+		for (File file : extractor.extractImages(svgFile, outputSvgFile, filePrefix)) {
+			imageFilenames.add(file.toString().replaceAll("\\\\", "/"));
+		}
+		return imageFilenames;
+	}
 }
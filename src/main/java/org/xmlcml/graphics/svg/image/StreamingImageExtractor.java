@@ -0,0 +1,431 @@
+package org.xmlcml.graphics.svg.image;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGImage;
+
+/** extracts base64 images from SVG in a single streaming pass.
+ *
+ * <p>The SVG is read character by character; when the href of an &lt;image&gt; holds
+ * data:image/...;base64,... the payload is decoded as it is read and written directly
+ * to an image file, so neither the document nor the image data is ever held as a String.
+ * Heap use is independent of the size of the embedded images.</p>
+ *
+ * <p>If a Writer is given the SVG is copied to it with each data href replaced by a reference
+ * to its file (as ImageConverter.replaceHrefDataWithFileRef()). Other markup is copied unchanged.</p>
+ *
+ * <p>Images are written in their embedded format (no decoding of pixels) unless setMimeType() asks
+ * for another, when the file is re-encoded with ImageIO.</p>
+ *
+ * <pre>
+ *   StreamingImageExtractor extractor = new StreamingImageExtractor(new File("target/images"));
+ *   extractor.setFileroot("page3");
+ *   List&lt;File&gt; imageFiles = extractor.extractImages(svgFile, new File("target/page3.svg"), "../");
+ * </pre>
+ *
+ * @author pm286
+ *
+ */
+public class StreamingImageExtractor {
+
+	private static final Logger LOG = Logger.getLogger(StreamingImageExtractor.class);
+
+	private static final String DATA = "data:";
+	private static final String BASE64 = ";base64,";
+	private static final String IMAGE = "image";
+	private static final String HREF = "href";
+	/** longest data:mimeType;base64, prefix accepted */
+	private static final int MAX_PREFIX = 100;
+	private static final int BUFFER_SIZE = 65536;
+	private static final int[] DECODE = new int[128];
+	static {
+		Arrays.fill(DECODE, -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			DECODE[alphabet.charAt(i)] = i;
+		}
+		// URL-safe variants
+		DECODE['-'] = 62;
+		DECODE['_'] = 63;
+	}
+
+	private File imageDirectory;
+	private String fileroot = "image";
+	private String mimeType;
+	private List<File> imageFiles;
+	private List<String> embeddedMimeTypes;
+	private long decodedBytes;
+
+	// state of current pass
+	private PushbackReader reader;
+	private Writer writer;
+	private String filePrefix;
+
+	/**
+	 * @param imageDirectory created if it does not exist
+	 */
+	public StreamingImageExtractor(File imageDirectory) {
+		if (imageDirectory == null) {
+			throw new RuntimeException("null image directory");
+		} else if (imageDirectory.exists() && !imageDirectory.isDirectory()) {
+			throw new RuntimeException("must be a directory: "+imageDirectory);
+		}
+		imageDirectory.mkdirs();
+		this.imageDirectory = imageDirectory;
+	}
+
+	/**
+	 * @param fileroot files are fileroot.1.png, fileroot.2.jpg... (default "image")
+	 */
+	public void setFileroot(String fileroot) {
+		this.fileroot = fileroot;
+	}
+
+	/**
+	 * @param mimeType convert all images to this type (e.g. image/png); default null (keep embedded type)
+	 */
+	public void setMimeType(String mimeType) {
+		if (mimeType != null && SVGImage.getFormatFromMimeType(mimeType) == null) {
+			throw new RuntimeException("Unknown mimeType: "+mimeType);
+		}
+		this.mimeType = mimeType;
+	}
+
+	/** files written by the last extraction, in document order.
+	 *
+	 * @return
+	 */
+	public List<File> getImageFiles() {
+		return imageFiles;
+	}
+
+	/** mime types of the embedded images of the last extraction (before any conversion).
+	 *
+	 * @return
+	 */
+	public List<String> getEmbeddedMimeTypes() {
+		return embeddedMimeTypes;
+	}
+
+	/** total size of decoded image data in the last extraction.
+	 *
+	 * @return bytes
+	 */
+	public long getDecodedBytes() {
+		return decodedBytes;
+	}
+
+	/** extracts images without writing SVG.
+	 *
+	 * @param svgFile
+	 * @return image files in document order
+	 * @throws IOException
+	 */
+	public List<File> extractImages(File svgFile) throws IOException {
+		return extractImages(svgFile, null, null);
+	}
+
+	/** extracts images and writes SVG with data hrefs replaced by file references.
+	 *
+	 * @param svgFile input (UTF-8)
+	 * @param outputSvgFile output (UTF-8); if null no SVG is written
+	 * @param filePrefix prepended to file references (e.g. "../"); may be null
+	 * @return image files in document order
+	 * @throws IOException
+	 */
+	public List<File> extractImages(File svgFile, File outputSvgFile, String filePrefix) throws IOException {
+		Reader input = new InputStreamReader(new FileInputStream(svgFile), "UTF-8");
+		Writer output = null;
+		try {
+			if (outputSvgFile != null) {
+				File parent = outputSvgFile.getAbsoluteFile().getParentFile();
+				if (parent != null) {
+					parent.mkdirs();
+				}
+				output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputSvgFile), "UTF-8"), BUFFER_SIZE);
+			}
+			return extractImages(input, output, filePrefix);
+		} finally {
+			IOUtils.closeQuietly(input);
+			if (output != null) {
+				output.close();
+			}
+		}
+	}
+
+	/** extracts images from SVG on reader.
+	 *
+	 * @param input not closed
+	 * @param output receives copy of SVG with file references; may be null; flushed, not closed
+	 * @param filePrefix prepended to file references; may be null
+	 * @return image files in document order
+	 * @throws IOException
+	 */
+	public List<File> extractImages(Reader input, Writer output, String filePrefix) throws IOException {
+		imageFiles = new ArrayList<File>();
+		embeddedMimeTypes = new ArrayList<String>();
+		decodedBytes = 0;
+		this.reader = new PushbackReader(new BufferedReader(input, BUFFER_SIZE));
+		this.writer = output;
+		this.filePrefix = (filePrefix == null) ? "" : filePrefix;
+		try {
+			int c;
+			while ((c = reader.read()) != -1) {
+				write(c);
+				if (c == '<') {
+					String name = readName();
+					write(name);
+					if (IMAGE.equals(getLocalName(name))) {
+						processImageTag();
+					}
+				}
+			}
+			if (writer != null) {
+				writer.flush();
+			}
+		} finally {
+			reader = null;
+			writer = null;
+		}
+		LOG.debug("extracted "+imageFiles.size()+" images ("+decodedBytes+" bytes)");
+		return imageFiles;
+	}
+
+	private void processImageTag() throws IOException {
+		while (true) {
+			int c = reader.read();
+			if (c == -1) {
+				throw new RuntimeException("unterminated <image");
+			}
+			if (Character.isWhitespace(c) || c == '/') {
+				write(c);
+			} else if (c == '>') {
+				write(c);
+				return;
+			} else {
+				reader.unread(c);
+				String attName = readName();
+				write(attName);
+				int quote = copyToQuote();
+				if (HREF.equals(getLocalName(attName))) {
+					processHref(quote);
+				} else {
+					copyValue(quote);
+				}
+			}
+		}
+	}
+
+	/** copies '=' and whitespace up to and including the opening quote.
+	 *
+	 * @return quote character
+	 */
+	private int copyToQuote() throws IOException {
+		while (true) {
+			int c = reader.read();
+			if (c == -1) {
+				throw new RuntimeException("unterminated attribute");
+			}
+			write(c);
+			if (c == '"' || c == '\'') {
+				return c;
+			} else if (c != '=' && !Character.isWhitespace(c)) {
+				throw new RuntimeException("bad attribute syntax at: "+(char) c);
+			}
+		}
+	}
+
+	private void copyValue(int quote) throws IOException {
+		int c;
+		while ((c = reader.read()) != quote) {
+			if (c == -1) {
+				throw new RuntimeException("unterminated attribute value");
+			}
+			write(c);
+		}
+		write(c);
+	}
+
+	private void processHref(int quote) throws IOException {
+		StringBuilder prefix = new StringBuilder();
+		int c = -1;
+		// check the length before reading so no character is lost when the limit is reached
+		while (prefix.length() < MAX_PREFIX) {
+			c = reader.read();
+			if (c == -1) {
+				throw new RuntimeException("unterminated href");
+			} else if (c == quote || c == ',') {
+				break;
+			}
+			prefix.append((char) c);
+		}
+		if (c == ',') {
+			prefix.append((char) c);
+		}
+		String prefixS = prefix.toString();
+		if (c == ',' && prefixS.startsWith(DATA) && prefixS.endsWith(BASE64)) {
+			String embeddedMimeType = prefixS.substring(DATA.length(), prefixS.length() - BASE64.length());
+			File file = decodeToFile(quote, embeddedMimeType);
+			// because this will be relative URL
+			write(filePrefix + file.toString().replaceAll("\\\\", "/"));
+			write(quote);
+		} else {
+			write(prefixS);
+			if (c == quote) {
+				write(c);
+			} else {
+				copyValue(quote);
+			}
+		}
+	}
+
+	private File decodeToFile(int quote, String embeddedMimeType) throws IOException {
+		int index = imageFiles.size() + 1;
+		File file = new File(imageDirectory, fileroot+"."+index+"."+getSuffix(embeddedMimeType));
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		try {
+			decodedBytes += decodeBase64(quote, os);
+		} finally {
+			os.close();
+		}
+		if (mimeType != null && !mimeType.equals(embeddedMimeType)) {
+			file = convert(file, index);
+		}
+		imageFiles.add(file);
+		embeddedMimeTypes.add(embeddedMimeType);
+		return file;
+	}
+
+	/** decodes base64 up to the closing quote.
+	 *
+	 * whitespace (and anything outside the alphabet, such as character references for newlines) is skipped;
+	 * padding is implied by the number of characters.
+	 *
+	 * @return number of bytes written
+	 */
+	private long decodeBase64(int quote, OutputStream os) throws IOException {
+		long count = 0;
+		int buffer = 0;
+		int sextets = 0;
+		int c;
+		while ((c = reader.read()) != quote) {
+			if (c == -1) {
+				throw new RuntimeException("unterminated base64 data");
+			}
+			if (c == '&') {
+				skipCharacterReference();
+				continue;
+			}
+			int value = (c < 128) ? DECODE[c] : -1;
+			if (value < 0) {
+				continue;
+			}
+			buffer = (buffer << 6) | value;
+			sextets++;
+			if (sextets == 4) {
+				os.write(buffer >> 16);
+				os.write(buffer >> 8);
+				os.write(buffer);
+				count += 3;
+				buffer = 0;
+				sextets = 0;
+			}
+		}
+		if (sextets == 2) {
+			os.write(buffer >> 4);
+			count += 1;
+		} else if (sextets == 3) {
+			os.write(buffer >> 10);
+			os.write(buffer >> 2);
+			count += 2;
+		} else if (sextets == 1) {
+			LOG.warn("truncated base64 data");
+		}
+		return count;
+	}
+
+	private void skipCharacterReference() throws IOException {
+		int c;
+		while ((c = reader.read()) != ';') {
+			if (c == -1) {
+				throw new RuntimeException("unterminated character reference");
+			}
+		}
+	}
+
+	private File convert(File file, int index) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			LOG.warn("cannot convert "+file+" to "+mimeType);
+			return file;
+		}
+		File newFile = new File(imageDirectory, fileroot+"."+index+"."+getSuffix(mimeType));
+		SVGImage.writeBufferedImage(image, mimeType, newFile);
+		if (!newFile.equals(file)) {
+			file.delete();
+		}
+		return newFile;
+	}
+
+	static String getSuffix(String mimeType) {
+		String format = SVGImage.getFormatFromMimeType(mimeType);
+		if (format == null) {
+			// e.g. image/jpeg
+			format = mimeType.substring(mimeType.indexOf('/') + 1);
+		}
+		return format.toLowerCase();
+	}
+
+	/** name of element or attribute (up to whitespace, '=', '/' or '>').
+	 *
+	 * the terminating character is pushed back.
+	 */
+	private String readName() throws IOException {
+		StringBuilder name = new StringBuilder();
+		int c;
+		while ((c = reader.read()) != -1) {
+			if (Character.isWhitespace(c) || c == '=' || c == '/' || c == '>' || c == '<') {
+				reader.unread(c);
+				break;
+			}
+			name.append((char) c);
+		}
+		return name.toString();
+	}
+
+	private static String getLocalName(String name) {
+		return name.substring(name.indexOf(':') + 1);
+	}
+
+	private void write(int c) throws IOException {
+		if (writer != null) {
+			writer.write(c);
+		}
+	}
+
+	private void write(String s) throws IOException {
+		if (writer != null) {
+			writer.write(s);
+		}
+	}
+}
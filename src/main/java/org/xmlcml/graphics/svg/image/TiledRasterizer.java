@@ -0,0 +1,433 @@
+package org.xmlcml.graphics.svg.image;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import nu.xom.Elements;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.GraphicsElement;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGImage;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGSVG;
+import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.util.DaemonThreadFactory;
+import org.xmlcml.graphics.svg.util.RTree;
+
+/** renders an SVG tree to a BufferedImage in tiles on several threads.
+ *
+ * The tree is walked once (on the calling thread) to build a display list: each shape
+ * (path, line, rect, circle, ellipse, polyline, polygon) becomes a device-space java.awt.Shape
+ * (the cached SVGShape.getTransformedAWTShape()) with its colours and stroke. The display list
+ * is indexed by device bounding box (RTree) and the image is split into tiles; each tile is drawn
+ * into its own image on a worker thread with only the items that intersect it (in document order),
+ * and the tiles are then copied into the result.
+ * <p>
+ * SVGElement.draw() keeps drawing state in the elements, so the same element cannot be drawn on two
+ * threads. Elements that are not shapes (text, image...) are therefore drawn with their own draw()
+ * under a single lock; their tiles are found from their (approximate) bounding boxes.
+ * <p>
+ * As GraphicsElement.draw(), shapes are filled only if they have a fill and stroked only if they
+ * have a stroke (default stroke-width 0.3); opacity is ignored.
+ *
+ * <pre>
+ *   TiledRasterizer rasterizer = new TiledRasterizer();
+ *   rasterizer.setScale(0.5);
+ *   BufferedImage thumbnail = rasterizer.render(svgPage);
+ * </pre>
+ *
+ * @author pm286
+ *
+ */
+public class TiledRasterizer {
+
+	private static final Logger LOG = Logger.getLogger(TiledRasterizer.class);
+
+	public static final int DEFAULT_TILE_SIZE = 256;
+	private static final double DEFAULT_STROKE_WIDTH = 0.3;
+	private static final String NONE = "none";
+	/** elements draw themselves with per-element state */
+	private static final Object FALLBACK_LOCK = new Object();
+
+	private int tileSize;
+	private int threadCount;
+	private double scale;
+	private Color backgroundColor;
+	private boolean antialiasing;
+	private int itemCount;
+	private int fallbackCount;
+	private long renderMillis;
+
+	public TiledRasterizer() {
+		tileSize = DEFAULT_TILE_SIZE;
+		threadCount = Runtime.getRuntime().availableProcessors();
+		scale = 1.0;
+		backgroundColor = Color.WHITE;
+		antialiasing = true;
+	}
+
+	/**
+	 * @param tileSize width and height of tiles in pixels (default 256)
+	 */
+	public void setTileSize(int tileSize) {
+		if (tileSize < 1) {
+			throw new RuntimeException("tileSize must be positive: "+tileSize);
+		}
+		this.tileSize = tileSize;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * @param threadCount number of worker threads (default number of processors)
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1) {
+			throw new RuntimeException("threadCount must be positive: "+threadCount);
+		}
+		this.threadCount = threadCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * @param scale pixels per user unit (default 1.0)
+	 */
+	public void setScale(double scale) {
+		if (!(scale > 0.0)) {
+			throw new RuntimeException("scale must be positive: "+scale);
+		}
+		this.scale = scale;
+	}
+
+	public double getScale() {
+		return scale;
+	}
+
+	/**
+	 * @param backgroundColor (default WHITE); null leaves the image transparent
+	 */
+	public void setBackgroundColor(Color backgroundColor) {
+		this.backgroundColor = backgroundColor;
+	}
+
+	public Color getBackgroundColor() {
+		return backgroundColor;
+	}
+
+	public void setAntialiasing(boolean antialiasing) {
+		this.antialiasing = antialiasing;
+	}
+
+	public boolean isAntialiasing() {
+		return antialiasing;
+	}
+
+	/** number of shapes in the display list of the last render.
+	 *
+	 * @return
+	 */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	/** number of elements drawn by their own draw() in the last render.
+	 *
+	 * @return
+	 */
+	public int getFallbackCount() {
+		return fallbackCount;
+	}
+
+	/** elapsed time of the last render.
+	 *
+	 * @return
+	 */
+	public long getRenderMillis() {
+		return renderMillis;
+	}
+
+	/** renders element with the image sized to cover its bounding box from the origin.
+	 *
+	 * as HiddenGraphics the origin of the image is the origin of the user coordinates.
+	 *
+	 * @param element
+	 * @return image (at least 1x1)
+	 */
+	public BufferedImage render(SVGElement element) {
+		Real2Range bbox = element.getBoundingBox();
+		int width = 1;
+		int height = 1;
+		if (bbox != null && bbox.getXRange() != null && bbox.getYRange() != null) {
+			width = (int) Math.ceil(bbox.getXRange().getMax() * scale);
+			height = (int) Math.ceil(bbox.getYRange().getMax() * scale);
+		}
+		return render(element, width, height);
+	}
+
+	/** renders element into a new image.
+	 *
+	 * @param element
+	 * @param width in pixels
+	 * @param height in pixels
+	 * @return image of type TYPE_INT_ARGB (at least 1x1)
+	 */
+	public BufferedImage render(SVGElement element, int width, int height) {
+		BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+		render(element, image);
+		return image;
+	}
+
+	/** renders element into image (replacing its contents).
+	 *
+	 * @param element
+	 * @param image
+	 */
+	public void render(SVGElement element, BufferedImage image) {
+		long start = System.currentTimeMillis();
+		List<DisplayItem> displayList = new ArrayList<DisplayItem>();
+		itemCount = 0;
+		fallbackCount = 0;
+		addItems(element, AffineTransform.getScaleInstance(scale, scale), displayList);
+		List<Real2Range> bboxList = new ArrayList<Real2Range>(displayList.size());
+		for (DisplayItem item : displayList) {
+			bboxList.add(item.bbox);
+		}
+		RTree<DisplayItem> index = new RTree<DisplayItem>();
+		index.load(displayList, bboxList);
+		List<Tile> tiles = renderTiles(index, image.getWidth(), image.getHeight());
+		Graphics2D g2d = image.createGraphics();
+		try {
+			g2d.setComposite(AlphaComposite.Src);
+			for (Tile tile : tiles) {
+				g2d.drawImage(tile.image, tile.x, tile.y, null);
+			}
+		} finally {
+			g2d.dispose();
+		}
+		renderMillis = System.currentTimeMillis() - start;
+		LOG.debug("rendered "+itemCount+" shapes and "+fallbackCount+" other elements in "+tiles.size()+
+				" tiles on "+threadCount+" threads in "+renderMillis+" ms");
+	}
+
+	private List<Tile> renderTiles(final RTree<DisplayItem> index, int width, int height) {
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory("rasterizer"));
+		List<Tile> tiles = new ArrayList<Tile>();
+		try {
+			List<Future<Tile>> futures = new ArrayList<Future<Tile>>();
+			for (int y = 0; y < height; y += tileSize) {
+				for (int x = 0; x < width; x += tileSize) {
+					final Tile tile = new Tile(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+					futures.add(executor.submit(new Callable<Tile>() {
+						public Tile call() {
+							renderTile(tile, index);
+							return tile;
+						}
+					}));
+				}
+			}
+			for (Future<Tile> future : futures) {
+				tiles.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("rendering interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("cannot render tile", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return tiles;
+	}
+
+	private void renderTile(Tile tile, RTree<DisplayItem> index) {
+		tile.image = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2d = tile.image.createGraphics();
+		try {
+			if (backgroundColor != null) {
+				g2d.setBackground(backgroundColor);
+				g2d.clearRect(0, 0, tile.width, tile.height);
+			}
+			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					(antialiasing ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF));
+			g2d.translate(-tile.x, -tile.y);
+			AffineTransform deviceTransform = g2d.getTransform();
+			Real2Range tileBox = new Real2Range(
+					new RealRange(tile.x, tile.x + tile.width), new RealRange(tile.y, tile.y + tile.height));
+			for (DisplayItem item : index.findIntersecting(tileBox)) {
+				if (item.element != null) {
+					synchronized (FALLBACK_LOCK) {
+						g2d.scale(scale, scale);
+						item.element.draw(g2d);
+						g2d.setTransform(deviceTransform);
+					}
+				} else {
+					// fill before stroke as SVG
+					if (item.fillColor != null) {
+						g2d.setColor(item.fillColor);
+						g2d.fill(item.shape);
+					}
+					if (item.strokeColor != null) {
+						g2d.setColor(item.strokeColor);
+						g2d.setStroke(item.stroke);
+						g2d.draw(item.shape);
+					}
+				}
+			}
+		} finally {
+			g2d.dispose();
+		}
+	}
+
+	private void addItems(SVGElement element, AffineTransform parentTransform, List<DisplayItem> displayList) {
+		AffineTransform transform = parentTransform;
+		if (element.getAttribute("transform") != null) {
+			transform = new AffineTransform(parentTransform);
+			transform.concatenate(element.getTransform().getAffineTransform());
+		}
+		if (element instanceof SVGShape && !(element instanceof SVGImage)) {
+			Shape shape = ((SVGShape) element).getTransformedAWTShape(transform);
+			if (shape == null) {
+				LOG.trace("skipped incomplete shape: "+element.getLocalName());
+			} else {
+				addShapeItem((SVGShape) element, shape, transform, displayList);
+			}
+		} else if (element instanceof SVGG || element instanceof SVGSVG) {
+			Elements childElements = element.getChildElements();
+			for (int i = 0; i < childElements.size(); i++) {
+				if (childElements.get(i) instanceof SVGElement) {
+					addItems((SVGElement) childElements.get(i), transform, displayList);
+				}
+			}
+		} else {
+			addFallbackItem(element, parentTransform, displayList);
+		}
+	}
+
+	private void addShapeItem(SVGShape element, Shape shape, AffineTransform transform, List<DisplayItem> displayList) {
+		DisplayItem item = new DisplayItem();
+		item.shape = shape;
+		item.fillColor = (element instanceof SVGLine) ? null : createColor(element.getFill());
+		item.strokeColor = createColor(element.getStroke());
+		double strokeWidth = 0.0;
+		if (item.strokeColor != null) {
+			Double width = element.getStrokeWidth();
+			strokeWidth = ((width == null) ? DEFAULT_STROKE_WIDTH : width) * Math.sqrt(Math.abs(transform.getDeterminant()));
+			item.stroke = new BasicStroke((float) strokeWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+		}
+		if (item.fillColor == null && item.strokeColor == null) {
+			return;
+		}
+		Rectangle2D bounds = shape.getBounds2D();
+		if (Double.isNaN(bounds.getMinX()) || Double.isNaN(bounds.getMinY())) {
+			// missing coordinates
+			return;
+		}
+		// miter joins can extend beyond half the stroke width
+		double margin = strokeWidth * 2.0 + 1.0;
+		item.bbox = new Real2Range(new RealRange(bounds.getMinX() - margin, bounds.getMaxX() + margin),
+				new RealRange(bounds.getMinY() - margin, bounds.getMaxY() + margin));
+		displayList.add(item);
+		itemCount++;
+	}
+
+	private void addFallbackItem(SVGElement element, AffineTransform transform, List<DisplayItem> displayList) {
+		Real2Range bbox = element.getBoundingBox();
+		if (bbox == null || bbox.getXRange() == null || bbox.getYRange() == null) {
+			return;
+		}
+		Rectangle2D userBounds = new Rectangle2D.Double(bbox.getXMin(), bbox.getYMin(),
+				bbox.getXRange().getRange(), bbox.getYRange().getRange());
+		Rectangle2D bounds = transform.createTransformedShape(userBounds).getBounds2D();
+		// bounding boxes of text are estimates
+		double margin = Math.max(bounds.getWidth(), bounds.getHeight()) + 1.0;
+		DisplayItem item = new DisplayItem();
+		item.element = element;
+		item.bbox = new Real2Range(new RealRange(bounds.getMinX() - margin, bounds.getMaxX() + margin),
+				new RealRange(bounds.getMinY() - margin, bounds.getMaxY() + margin));
+		displayList.add(item);
+		fallbackCount++;
+	}
+
+	/** converts SVG colour.
+	 *
+	 * @param colorS "none", #rgb, #rrggbb or a name known to GraphicsElement
+	 * @return opaque colour or null if none or unknown
+	 */
+	static Color createColor(String colorS) {
+		Color color = null;
+		if (colorS == null || NONE.equalsIgnoreCase(colorS)) {
+			color = null;
+		} else if (colorS.startsWith("#")) {
+			String hex = colorS.substring(1);
+			try {
+				if (hex.length() == 6) {
+					color = new Color(Integer.parseInt(hex, 16));
+				} else if (hex.length() == 3) {
+					int red = Integer.parseInt(hex.substring(0, 1), 16);
+					int green = Integer.parseInt(hex.substring(1, 2), 16);
+					int blue = Integer.parseInt(hex.substring(2, 3), 16);
+					color = new Color(red * 17, green * 17, blue * 17);
+				}
+			} catch (NumberFormatException e) {
+				// unknown
+			}
+		} else {
+			Color java2DColor = GraphicsElement.getJava2DColor(colorS);
+			// unknown colours are returned transparent
+			color = (java2DColor.getAlpha() == 0) ? null : java2DColor;
+		}
+		if (color == null && colorS != null && !NONE.equalsIgnoreCase(colorS)) {
+			LOG.trace("Cannot parse color: "+colorS);
+		}
+		return color;
+	}
+
+	/** shape in device coordinates or element drawn by itself. */
+	private static class DisplayItem {
+		private Shape shape;
+		private Color fillColor;
+		private Color strokeColor;
+		private Stroke stroke;
+		private SVGElement element;
+		private Real2Range bbox;
+	}
+
+	private static class Tile {
+		private int x;
+		private int y;
+		private int width;
+		private int height;
+		private BufferedImage image;
+
+		Tile(int x, int y, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.linestuff.ComplexLine.LineOrientation;
+import org.xmlcml.graphics.svg.linestuff.LineMerger.MergeMethod;
+
+/** finds runs of collinear horizontal or vertical lines which can be merged.
+ * <p>
+ * Lines are sorted by their fixed coordinate (y for horizontal, x for vertical) and grouped into
+ * bands of width tolerance; each band is then swept along the other axis. This finds all runs in
+ * a single O(n log n) pass rather than by repeated pairwise comparison.
+ * </p>
+ * <p>
+ * MergeMethod.OVERLAP: lines join a run if they overlap it or leave a gap of at most tolerance.
+ * MergeMethod.TOUCHING_LINES: lines join a run only if one end is within tolerance of the
+ * far end of the run (lines that overlap without touching end-to-end are not merged).
+ * </p>
+ * <p>
+ * Lines that are neither horizontal nor vertical, and zero-length lines, are never merged.
+ * Direction (start/end order) of lines is ignored.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class AxialLineSweeper {
+
+	private final static Logger LOG = Logger.getLogger(AxialLineSweeper.class);
+
+	/** a line with its coordinates along and across the axis.
+	 */
+	private static class AxialLine {
+		SVGLine line;
+		int index;
+		double lateral;
+		double min;
+		double max;
+
+		AxialLine(SVGLine line, int index, LineOrientation orientation) {
+			this.line = line;
+			this.index = index;
+			Real2 xy0 = line.getXY(0);
+			Real2 xy1 = line.getXY(1);
+			boolean horizontal = LineOrientation.HORIZONTAL.equals(orientation);
+			double coord0 = horizontal ? xy0.getX() : xy0.getY();
+			double coord1 = horizontal ? xy1.getX() : xy1.getY();
+			lateral = horizontal ? (xy0.getY() + xy1.getY()) / 2.0 : (xy0.getX() + xy1.getX()) / 2.0;
+			min = Math.min(coord0, coord1);
+			max = Math.max(coord0, coord1);
+		}
+	}
+
+	private static class Run {
+		List<AxialLine> lines = new ArrayList<AxialLine>();
+		double max = Double.NEGATIVE_INFINITY;
+
+		void add(AxialLine axialLine) {
+			lines.add(axialLine);
+			max = Math.max(max, axialLine.max);
+		}
+	}
+
+	private final static Comparator<AxialLine> LATERAL_COMPARATOR = new Comparator<AxialLine>() {
+		public int compare(AxialLine line0, AxialLine line1) {
+			int compare = Double.compare(line0.lateral, line1.lateral);
+			return (compare != 0) ? compare : line0.index - line1.index;
+		}
+	};
+
+	private final static Comparator<AxialLine> MIN_COMPARATOR = new Comparator<AxialLine>() {
+		public int compare(AxialLine line0, AxialLine line1) {
+			int compare = Double.compare(line0.min, line1.min);
+			return (compare != 0) ? compare : line0.index - line1.index;
+		}
+	};
+
+	private final static Comparator<AxialLine> INDEX_COMPARATOR = new Comparator<AxialLine>() {
+		public int compare(AxialLine line0, AxialLine line1) {
+			return line0.index - line1.index;
+		}
+	};
+
+	private final static Comparator<Run> FIRST_INDEX_COMPARATOR = new Comparator<Run>() {
+		public int compare(Run run0, Run run1) {
+			return run0.lines.get(0).index - run1.lines.get(0).index;
+		}
+	};
+
+	private final static Comparator<List<SVGLine>> RUN_COMPARATOR = new Comparator<List<SVGLine>>() {
+		public int compare(List<SVGLine> run0, List<SVGLine> run1) {
+			// singletons first
+			return (run0.size() == 1 ? 0 : 1) - (run1.size() == 1 ? 0 : 1);
+		}
+	};
+
+	private double eps;
+	private double tolerance;
+	private MergeMethod method;
+
+	/**
+	 * @param eps for deciding whether lines are horizontal, vertical or zero-length
+	 * @param tolerance maximum difference in fixed coordinates and in end coordinates of merged lines
+	 * @param method
+	 */
+	public AxialLineSweeper(double eps, double tolerance, MergeMethod method) {
+		this.eps = eps;
+		this.tolerance = tolerance;
+		this.method = method;
+	}
+
+	/** partitions lines into runs of mergeable lines.
+	 *
+	 * every line occurs in exactly one run. Lines within a run are in input order.
+	 * Unmerged lines (runs of size 1) come first in input order, followed by runs of
+	 * more than one line ordered by their first line.
+	 *
+	 * @param lineList not altered
+	 * @return
+	 */
+	public List<List<SVGLine>> createRuns(List<SVGLine> lineList) {
+		List<Run> runList = new ArrayList<Run>();
+		List<AxialLine> horizontalList = new ArrayList<AxialLine>();
+		List<AxialLine> verticalList = new ArrayList<AxialLine>();
+		for (int i = 0; i < lineList.size(); i++) {
+			SVGLine line = lineList.get(i);
+			LineOrientation orientation = line.isZero(eps) ? null : ComplexLine.getLineOrientation(line, eps);
+			AxialLine axialLine = (orientation == null) ? null : new AxialLine(line, i, orientation);
+			if (axialLine == null) {
+				Run run = new Run();
+				run.add(new AxialLine(line, i, LineOrientation.HORIZONTAL));
+				runList.add(run);
+			} else if (LineOrientation.HORIZONTAL.equals(orientation)) {
+				horizontalList.add(axialLine);
+			} else {
+				verticalList.add(axialLine);
+			}
+		}
+		sweep(horizontalList, runList);
+		sweep(verticalList, runList);
+		return createSortedRuns(runList);
+	}
+
+	private void sweep(List<AxialLine> axialLineList, List<Run> runList) {
+		Collections.sort(axialLineList, LATERAL_COMPARATOR);
+		int start = 0;
+		while (start < axialLineList.size()) {
+			double bandLateral = axialLineList.get(start).lateral;
+			int end = start + 1;
+			while (end < axialLineList.size() && axialLineList.get(end).lateral - bandLateral <= tolerance) {
+				end++;
+			}
+			List<AxialLine> band = new ArrayList<AxialLine>(axialLineList.subList(start, end));
+			Collections.sort(band, MIN_COMPARATOR);
+			if (MergeMethod.TOUCHING_LINES.equals(method)) {
+				sweepTouching(band, runList);
+			} else {
+				sweepOverlapping(band, runList);
+			}
+			start = end;
+		}
+	}
+
+	private void sweepOverlapping(List<AxialLine> band, List<Run> runList) {
+		Run run = null;
+		for (AxialLine axialLine : band) {
+			if (run == null || axialLine.min > run.max + tolerance) {
+				run = new Run();
+				runList.add(run);
+			}
+			run.add(axialLine);
+		}
+	}
+
+	/** open runs are indexed by their far end; a line extends the run ending nearest its start.
+	 */
+	private void sweepTouching(List<AxialLine> band, List<Run> runList) {
+		NavigableMap<Double, List<Run>> runsByMax = new TreeMap<Double, List<Run>>();
+		for (AxialLine axialLine : band) {
+			Run run = removeTouchingRun(runsByMax, axialLine.min);
+			if (run == null) {
+				run = new Run();
+				runList.add(run);
+			}
+			run.add(axialLine);
+			List<Run> runs = runsByMax.get(run.max);
+			if (runs == null) {
+				runs = new ArrayList<Run>();
+				runsByMax.put(run.max, runs);
+			}
+			runs.add(run);
+		}
+	}
+
+	private Run removeTouchingRun(NavigableMap<Double, List<Run>> runsByMax, double min) {
+		Map.Entry<Double, List<Run>> nearest = null;
+		for (Map.Entry<Double, List<Run>> entry :
+				runsByMax.subMap(min - tolerance, true, min + tolerance, true).entrySet()) {
+			if (nearest == null || Math.abs(entry.getKey() - min) < Math.abs(nearest.getKey() - min)) {
+				nearest = entry;
+			}
+		}
+		Run run = null;
+		if (nearest != null) {
+			List<Run> runs = nearest.getValue();
+			run = runs.remove(0);
+			if (runs.isEmpty()) {
+				runsByMax.remove(nearest.getKey());
+			}
+		}
+		return run;
+	}
+
+	private List<List<SVGLine>> createSortedRuns(List<Run> runList) {
+		List<List<SVGLine>> lineRunList = new ArrayList<List<SVGLine>>();
+		for (Run run : runList) {
+			Collections.sort(run.lines, INDEX_COMPARATOR);
+		}
+		Collections.sort(runList, FIRST_INDEX_COMPARATOR);
+		for (Run run : runList) {
+			List<SVGLine> lineRun = new ArrayList<SVGLine>();
+			for (AxialLine axialLine : run.lines) {
+				lineRun.add(axialLine.line);
+			}
+			lineRunList.add(lineRun);
+		}
+		// stable, so input order is kept within singletons and within merged runs
+		Collections.sort(lineRunList, RUN_COMPARATOR);
+		LOG.trace("runs: "+lineRunList.size());
+		return lineRunList;
+	}
+}
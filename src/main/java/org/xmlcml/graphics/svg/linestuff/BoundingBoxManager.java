@@ -3,6 +3,7 @@ package org.xmlcml.graphics.svg.linestuff;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.linestuff.ComplexLine.LineOrientation;
+import org.xmlcml.graphics.svg.util.RTree;
 
 
 
@@ -90,6 +92,7 @@ public class BoundingBoxManager {
 	}
 	
 	private List<Real2Range> bboxList;
+	private RTree<Real2Range> bboxIndex;
 	private Real2Range totalBox = null;
 	private List<SVGElement> elementList;
 
@@ -155,11 +158,15 @@ public class BoundingBoxManager {
 	
 	public void setBBoxList(List<Real2Range> bboxList) {
 		this.bboxList = bboxList;
+		this.bboxIndex = null;
 	}
 	
 	public void add(Real2Range r2r) {
 		ensureBoundingBoxList();
 		bboxList.add(r2r);
+		if (bboxIndex != null && !bboxIndex.contains(r2r)) {
+			bboxIndex.insert(r2r, r2r);
+		}
 	}
 	
 	private void ensureBoundingBoxList() {
@@ -171,6 +178,52 @@ public class BoundingBoxManager {
 	public List<Real2Range> getBBoxList() {
 		return bboxList;
 	}
+
+	/** spatial index of the boxes, built on first use.
+	 * 
+	 * rebuilt if setBBoxList() is called; boxes must not be altered after indexing.
+	 * 
+	 * @return
+	 */
+	public RTree<Real2Range> getBBoxIndex() {
+		if (bboxIndex == null) {
+			ensureBoundingBoxList();
+			bboxIndex = new RTree<Real2Range>();
+			List<Real2Range> uniqueList = createUniqueBoxList();
+			bboxIndex.load(uniqueList, uniqueList);
+		}
+		return bboxIndex;
+	}
+
+	/** boxes (in list order) which intersect or touch box.
+	 * 
+	 * @param box
+	 * @return
+	 */
+	public List<Real2Range> getBoxesIntersecting(Real2Range box) {
+		return getBBoxIndex().findIntersecting(box);
+	}
+
+	/** boxes (in list order) which lie completely within box.
+	 * 
+	 * @param box
+	 * @return
+	 */
+	public List<Real2Range> getBoxesContainedIn(Real2Range box) {
+		return getBBoxIndex().findContainedIn(box);
+	}
+
+	/** the same box object may be added more than once */
+	private List<Real2Range> createUniqueBoxList() {
+		List<Real2Range> uniqueList = new ArrayList<Real2Range>();
+		Map<Real2Range, Boolean> seen = new IdentityHashMap<Real2Range, Boolean>();
+		for (Real2Range bbox : bboxList) {
+			if (bbox != null && seen.put(bbox, Boolean.TRUE) == null) {
+				uniqueList.add(bbox);
+			}
+		}
+		return uniqueList;
+	}
 	
 	/** main engine for sorting
 	 * 
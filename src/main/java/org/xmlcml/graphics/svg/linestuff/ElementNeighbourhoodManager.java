@@ -1,53 +1,29 @@
 package org.xmlcml.graphics.svg.linestuff;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.SVGLine;
-
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import org.xmlcml.graphics.svg.util.RTree;
 
 public class ElementNeighbourhoodManager {
 
 	private final static Logger LOG = Logger.getLogger(ElementNeighbourhoodManager.class);
 	
 	private Map<SVGElement, ElementNeighbourhood> neighbourhoodByElementMap;
-	private Multimap<Integer, SVGElement> elementsByXMap;
-	private Integer deltaX = 5;
-	private Multimap<Integer, SVGElement> elementsByYMap;
-	private Integer deltaY = 5;
+	private RTree<SVGElement> elementIndex;
 	private List<SVGElement> elementList;
 	private BoundingBoxManager bboxManager;
 	private Real2Range totalBox;
 	private RealRange totalXRange;
 	private RealRange totalYRange;
 	
-	public Integer getDeltaX() {
-		return deltaX;
-	}
-
-	public void setDeltaX(Integer deltaX) {
-		this.deltaX = deltaX;
-	}
-
-	public Integer getDeltaY() {
-		return deltaY;
-	}
-
-	public void setDeltaY(Integer deltaY) {
-		this.deltaY = deltaY;
-	}
-
 //	public List<ElementNeighbourhood> getElementNeighboursList() {
 //		return elementNeighbourhoodList;
 //	}
@@ -56,12 +32,12 @@ public class ElementNeighbourhoodManager {
 		return neighbourhoodByElementMap;
 	}
 
-	public Multimap<Integer, SVGElement> getElementsByXMap() {
-		return elementsByXMap;
-	}
-
-	public Multimap<Integer, SVGElement> getElementsByYMap() {
-		return elementsByYMap;
+	/** spatial index of elements by bounding box.
+	 * 
+	 * @return null if no elements have been indexed
+	 */
+	public RTree<SVGElement> getElementIndex() {
+		return elementIndex;
 	}
 
 	public List<SVGElement> getElementList() {
@@ -91,7 +67,7 @@ public class ElementNeighbourhoodManager {
 	public ElementNeighbourhoodManager(List<? extends SVGElement> elementList) {
 		setElementList(elementList);
 		createAndPopulateBoundingBoxManager();
-		createAndPopulateIntegerIndexes();
+		createAndPopulateElementIndex();
 	}
 
 	private void setElementList(List<? extends SVGElement> elementList) {
@@ -108,102 +84,27 @@ public class ElementNeighbourhoodManager {
 		return bboxManager;
 	}
 	
-	private void createAndPopulateIntegerIndexes() {
-		indexElementsByIntegers();
-	}
-
-	private void indexElementsByIntegers() {
-		ensureElementsByXMap();
-		ensureElementsByYMap();
-		for (SVGElement element : elementList) {
-			Real2Range bbox = element.getBoundingBox();
-			addElementToIntegerIndex(element, bbox.getXRange(), deltaX, elementsByXMap);
-			addElementToIntegerIndex(element, bbox.getYRange(), deltaY, elementsByYMap);
-		}
-	}
-
-	private void addElementToIntegerIndex(SVGElement element, RealRange range, Integer delta, Multimap<Integer, SVGElement> elementsByMap) {
-		List<Integer> ii = mapToIntegers(range, delta);
-		for (Integer i : ii) {
-			elementsByMap.put(i, element);
-		}
-	}
-
-	private void ensureElementsByXMap() {
-		if (elementsByXMap == null) {
-			elementsByXMap = ArrayListMultimap.create();
-		}
-	}
-
-	private void ensureElementsByYMap() {
-		if (elementsByYMap == null) {
-			elementsByYMap = ArrayListMultimap.create();
-		}
-	}
-	
-	private Integer mapXToInteger(double x) {
-		return mapToInteger(x, deltaX);
+	private void createAndPopulateElementIndex() {
+		elementIndex = RTree.createElementTree(elementList);
 	}
 
-	private Integer mapYToInteger(double y) {
-		return mapToInteger(y, deltaY);
-	}
-	
-	private Integer mapToInteger(double d, Integer delta) {
-		return new Integer (((int)d) / delta) * delta;
-	}
-	
-	private List<Integer> mapToIntegers(RealRange range, Integer delta) {
-		List<Integer> integers = new ArrayList<Integer>();
-		Integer low = mapToInteger(range.getMin(), delta);
-		Integer high = mapToInteger(range.getMax(), delta) + delta;
-		for (Integer i = low; i <= high; i+=delta) {
-			integers.add(i);
-		}
-		return integers;
-	}
-
-	private Set<SVGElement> findNeighboursByIntegerGrid(Real2Range r2r) {
-		if (elementsByXMap == null || elementsByYMap == null) {
+	/** candidates are elements whose boxes intersect the extended box of elem.
+	 * 
+	 * @param elem
+	 * @param eps
+	 * @return
+	 */
+	private List<SVGElement> getFirstPassNeighbours(SVGElement elem, double eps) {
+		if (elementIndex == null) {
 			throw new RuntimeException("coordinates have not been indexed");
 		}
-		List<Integer> xint = mapToIntegers(r2r.getXRange(), deltaX);
-		Set<SVGElement> xelements = getElementSet(xint, elementsByXMap);
-		List<Integer> yint = mapToIntegers(r2r.getYRange(), deltaY);
-		Set<SVGElement> yelements = getElementSet(yint, elementsByYMap);
-		return intersect(xelements, yelements);
-	}
-
-	private Set<SVGElement> getFirstPassNeighbours(SVGElement elem) {
-		Real2Range bbox = elem.getBoundingBox();
-		Set<SVGElement> firstPass = findNeighboursByIntegerGrid(bbox);
+		List<SVGElement> firstPass = elementIndex.findIntersecting(BoundingBoxManager.createExtendedBox(elem, eps));
 		firstPass.remove(elem);
 		return firstPass;
 	}
 
-	private Set<SVGElement> intersect(Set<SVGElement> elems1, Set<SVGElement> elems2) {
-		Set<SVGElement> intersectSet = new HashSet<SVGElement>();
-		for (SVGElement elem : elems1) {
-			if (elems2.contains(elem)) {
-				intersectSet.add(elem);
-			}
-		}
-		return intersectSet;
-	}
-
-	private Set<SVGElement> getElementSet(List<Integer> ints, Multimap<Integer, SVGElement> multimap) {
-		Set<SVGElement> elementSet = new HashSet<SVGElement>();
-		for (Integer i : ints) {
-			Collection<SVGElement> elements = multimap.get(i);
-			for (SVGElement element : elements) {
-				elementSet.add(element);
-			}
-		}
-		return elementSet;
-	}
-
 	private ElementNeighbourhood getTouchingNeighbours(SVGElement elem, double eps) {
-		Set<SVGElement> fpNeighbours = getFirstPassNeighbours(elem);
+		List<SVGElement> fpNeighbours = getFirstPassNeighbours(elem, eps);
 		ElementNeighbourhood elementNeighbours = new ElementNeighbourhood(elem);
 		for (SVGElement fpn : fpNeighbours) {
 			if (elementNeighbours.isTouching(fpn, eps)) {
@@ -269,31 +170,12 @@ public class ElementNeighbourhoodManager {
 		
 		// remove neighbourhood of element
 		neighbourhoodByElementMap.remove(element);
-		removeElement(elementsByXMap, element);
-		removeElement(elementsByYMap, element);
+		if (elementIndex != null) {
+			elementIndex.delete(element);
+		}
 		elementList.remove(element);
 	}
 
-	/** this is very inefficient, but... 
-	 * there are probably only a 100 keys
-	 * 
-	 * @param elementsByCoordMap
-	 * @param element
-	 */
-	private void removeElement(Multimap<Integer, SVGElement> elementsByCoordMap, SVGElement element) {
-		Set<Integer> keys = elementsByCoordMap.keySet();
-		//because we cannot remove while in loop
-		List<Integer> ii = new ArrayList<Integer>();
-		for (Integer i : keys) {
-			ii.add(i);
-		}
-		for (Integer i : ii) {
-			if (elementsByCoordMap.remove(i, element)) {
-				LOG.trace("removed: "+element.getId());
-			}
-		}
-	}
-	
 	void replaceElementsByElement(SVGElement newElement, List<SVGElement> oldElements) {
 		LOG.trace("new Element "+newElement.getId() + "replaces...");
 		List<SVGElement> oldNeighbourList = new ArrayList<SVGElement>();
@@ -327,6 +209,8 @@ public class ElementNeighbourhoodManager {
 		neighbourhoodByElementMap.put(newElement, neighbourhood);
 		ensureElementList();
 		elementList.add(newElement);
+		ensureElementIndex();
+		elementIndex.insert(newElement, newElement.getBoundingBox());
 		LOG.trace("after add: "+elementList.size());
 	}
 	
@@ -336,6 +220,12 @@ public class ElementNeighbourhoodManager {
 		}
 	}
 
+	private void ensureElementIndex() {
+		if (elementIndex == null) {
+			elementIndex = new RTree<SVGElement>();
+		}
+	}
+
 	private void addElement(SVGElement newElement) {
 		addElement(newElement, new ArrayList<SVGElement>());
 	}
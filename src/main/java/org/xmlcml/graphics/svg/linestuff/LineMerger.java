@@ -1,6 +1,6 @@
 package org.xmlcml.graphics.svg.linestuff;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -134,51 +134,84 @@ public class LineMerger extends ElementMerger {
 		if (inter != null) {
 			Real2Range bbox00 = line0.getBoundingBox();
 			Real2Range bbox10 = line1.getBoundingBox();
-			Real2Range bbox01 = bbox00.plusEquals(bbox10);
+			Real2Range bbox01 = bbox00.plus(bbox10);
 			newLine = new SVGLine(bbox01.getCorners()[0], bbox01.getCorners()[1]);
 		}
 		return newLine;
 	}
 	
+	/** merges all mergeable horizontal and vertical lines.
+	 * 
+	 * uses a sweep over lines sorted by coordinate (AxialLineSweeper) so each line is examined
+	 * once. Merged lines take the id of the first of their constituent lines (in list order)
+	 * with an "x" for each line merged in.
+	 * OVERLAP creates a new line spanning the boxes; TOUCHING_LINES copies the first line and
+	 * extends its ends.
+	 * 
+	 * @param linesxx not altered
+	 * @param eps
+	 * @param method
+	 * @return unmerged lines (in original order) followed by merged lines
+	 */
 	public static List<SVGLine> mergeLines(List<SVGLine> linesxx, double eps, MergeMethod method) {
 		LOG.trace("lines "+linesxx.size());
-		ElementNeighbourhoodManager enm = new ElementNeighbourhoodManager(linesxx);
-		List<SVGElement> elems;
-		while (true) {
-			enm.createTouchingNeighbours(eps);
-			elems = enm.getElementList();
-			LOG.trace("elems "+elems.size());
-			SVGElement newElem = null;
-			SVGElement oldElem = null;
-			SVGElement oldElem1 = null;
-			for (int i = 0; i < elems.size(); i++) {
-				oldElem1 = elems.get(i);
-				LineMerger lineMerger = LineMerger.createLineMerger((SVGLine)oldElem1, eps, method);
-				ElementNeighbourhood neighbourhood = enm.getNeighbourhood(oldElem1);
-				if (neighbourhood == null) {
-					continue;
-				}
-				List<SVGElement> neighbours = neighbourhood.getNeighbourList();
-				for (SVGElement neighbour : neighbours) {
-					if (neighbour instanceof SVGLine) {
-						oldElem = (SVGLine) neighbour;
-						newElem = lineMerger.createNewElement(oldElem);
-						if (newElem != null) {
-							LOG.trace(((SVGLine)oldElem1).getEuclidLine()+" + "+((SVGLine)oldElem).getEuclidLine()+" => "+((SVGLine)newElem).getEuclidLine());
-							break;
-						}
-					}
+		// OVERLAP compares boxes extended by eps
+		double tolerance = MergeMethod.TOUCHING_LINES.equals(method) ? eps : 2.0 * eps;
+		AxialLineSweeper sweeper = new AxialLineSweeper(eps, tolerance, method);
+		List<SVGLine> lines = new ArrayList<SVGLine>();
+		for (List<SVGLine> run : sweeper.createRuns(linesxx)) {
+			lines.add(run.size() == 1 ? run.get(0) : createMergedLine(run, eps, method));
+		}
+		return lines;
+	}
+
+	private static SVGLine createMergedLine(List<SVGLine> run, double eps, MergeMethod method) {
+		SVGLine line0 = run.get(0);
+		SVGLine newLine = null;
+		if (MergeMethod.TOUCHING_LINES.equals(method)) {
+			newLine = createTouchingLine(run, eps);
+		} else {
+			Real2Range bbox = line0.getBoundingBox();
+			for (int i = 1; i < run.size(); i++) {
+				bbox = bbox.plus(run.get(i).getBoundingBox());
+			}
+			newLine = new SVGLine(bbox.getCorners()[0], bbox.getCorners()[1]);
+		}
+		StringBuilder id = new StringBuilder(String.valueOf(line0.getId()));
+		for (int i = 1; i < run.size(); i++) {
+			id.append("x");
+		}
+		newLine.setId(id.toString());
+		LOG.trace(run.size()+" lines => "+newLine.getEuclidLine());
+		return newLine;
+	}
+
+	/** copy of first line with its ends moved to the ends of the run. 
+	 */
+	private static SVGLine createTouchingLine(List<SVGLine> run, double eps) {
+		SVGLine line0 = run.get(0);
+		boolean horizontal = LineOrientation.HORIZONTAL.equals(ComplexLine.getLineOrientation(line0, eps));
+		Real2 minPoint = null;
+		Real2 maxPoint = null;
+		for (SVGLine line : run) {
+			for (int i = 0; i < 2; i++) {
+				Real2 point = line.getXY(i);
+				if (minPoint == null || getCoord(point, horizontal) < getCoord(minPoint, horizontal)) {
+					minPoint = point;
 				}
-				if (newElem != null) {
-					enm.replaceElementsByElement(newElem, Arrays.asList(new SVGElement[] {oldElem, oldElem1}));
-					break;
+				if (maxPoint == null || getCoord(point, horizontal) > getCoord(maxPoint, horizontal)) {
+					maxPoint = point;
 				}
-			} // end of loop through elements
-			if (newElem == null) {
-				break;
 			}
-		} // end of infinite loop
-		List<SVGLine> lines = SVGLine.extractLines(enm.getElementList());
-		return lines;
+		}
+		SVGLine newLine = new SVGLine(line0);
+		boolean increasing = getCoord(line0.getXY(0), horizontal) <= getCoord(line0.getXY(1), horizontal);
+		newLine.setXY(increasing ? minPoint : maxPoint, 0);
+		newLine.setXY(increasing ? maxPoint : minPoint, 1);
+		return newLine;
+	}
+
+	private static double getCoord(Real2 point, boolean horizontal) {
+		return horizontal ? point.getX() : point.getY();
 	}
 }
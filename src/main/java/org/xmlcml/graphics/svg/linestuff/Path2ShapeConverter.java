@@ -1,8 +1,13 @@
 package org.xmlcml.graphics.svg.linestuff;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -12,6 +17,8 @@ import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealArray;
+import org.xmlcml.euclid.Transform2;
+import org.xmlcml.euclid.Vector2;
 import org.xmlcml.graphics.svg.SVGCircle;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.SVGEllipse;
@@ -42,6 +49,13 @@ import nu.xom.ParentNode;
  * Uses a variety of heuristics to split and combine primitives. See the SVG wiki for more details.
  * <p>
  * Customisable through setters.
+ * <p>
+ * Each path is converted independently of the others, so conversion can be run on a fork-join pool
+ * (setParallel(true)). Ids and the order of the output are the same as for serial conversion.
+ * <p>
+ * Publisher SVG repeats the same geometry (ticks, plot symbols, glyphs) at many positions. With
+ * setUseShapeCache(true) each path is moved to the origin and the classification is cached by
+ * signature and normalized d; repeats are copies of the cached shape moved back.
  * 
  * @author pm286
  */
@@ -72,11 +86,16 @@ public class Path2ShapeConverter {
 	private static final double DEFAULT_MAX_PATH_WIDTH = 1.5;
 	private static final int DEFAULT_LINES_IN_POLYLINE = 8;
 	private static final int DEFAULT_DECIMAL_PLACES = 3;
+	// paths converted by a single fork-join task
+	private static final int PATHS_PER_TASK = 16;
+	/** number of distinct normalized paths whose shapes are kept */
+	public static final int MAX_CACHED_SHAPES = 10000;
 	
 	private static final String SVG = "svg";
 	private static final Angle ANGLE_EPS = new Angle(0.01);
 
 	private int decimalPlaces = DEFAULT_DECIMAL_PLACES;
+	private boolean formatShapes = true;
 	private int minLinesInPolyline = DEFAULT_LINES_IN_POLYLINE;
 	private boolean removeDuplicatePaths = true;
 	private boolean removeRedundantMoveCommands = true;
@@ -100,6 +119,19 @@ public class Path2ShapeConverter {
 
 	private boolean makeRelativePathsAbsolute = true;
 
+	private boolean parallel = false;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private boolean useShapeCache = false;
+	// shapes created from paths normalized to the origin; least recently used are discarded
+	private Map<String, SVGShape> shapeByNormalizedPath = Collections.synchronizedMap(
+		new LinkedHashMap<String, SVGShape>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String, SVGShape> eldest) {
+				return size() > MAX_CACHED_SHAPES;
+			}
+		});
+
 	public Path2ShapeConverter() {
 		
 	}
@@ -127,6 +159,7 @@ public class Path2ShapeConverter {
 	 */
 	public void setMaxPathWidth(double maxPathWidth) {
 		this.maxPathWidth = maxPathWidth;
+		clearShapeCache();
 	}
 
 	/** 
@@ -136,6 +169,7 @@ public class Path2ShapeConverter {
 	 */	
 	public void setMaxAngle(Angle maxAngle) {
 		this.maxAngle = maxAngle;
+		clearShapeCache();
 	}
 	
 	/** 
@@ -196,10 +230,15 @@ public class Path2ShapeConverter {
 			}
 		}
 		
+		List<SVGPath> flatPathList = new ArrayList<SVGPath>();
+		for (List<SVGPath> pathList : pathListList) {
+			flatPathList.addAll(pathList);
+		}
+		SVGShape[] shapes = convertPathsToShapeArray(flatPathList);
 		for (List<SVGPath> pathList : pathListList) {
 			List<SVGShape> shapeList = new ArrayList<SVGShape>();
 			for (SVGPath path : pathList) {
-				SVGShape shape = convertPathToShape(path);
+				SVGShape shape = shapes[id];
 				// unconverted path, add as raw
 				if (shape == null) {
 					shape = path;
@@ -220,6 +259,68 @@ public class Path2ShapeConverter {
 		return shapeListList;
 	}
 
+	/** converts each path with convertPathToShape().
+	 * 
+	 * runs on a fork-join pool if parallel is set and there is more than one task's worth of paths.
+	 * 
+	 * @param pathList
+	 * @return shapes (or null) in order of paths
+	 */
+	private SVGShape[] convertPathsToShapeArray(List<SVGPath> pathList) {
+		SVGShape[] shapes = new SVGShape[pathList.size()];
+		if (parallel && pathList.size() > PATHS_PER_TASK) {
+			// copyAttributes() makes style explicit on the input; do it here, once, on this thread
+			for (SVGPath path : pathList) {
+				path.setUseStyleAttribute(false);
+			}
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(new ConvertPathsTask(pathList, shapes, 0, shapes.length));
+			} finally {
+				pool.shutdown();
+			}
+		} else {
+			for (int i = 0; i < shapes.length; i++) {
+				shapes[i] = convertPathToShape(pathList.get(i));
+			}
+		}
+		return shapes;
+	}
+
+	/** converts a range of paths, splitting it until it is small enough.
+	 * 
+	 * each task writes only its own slots of shapes.
+	 */
+	private class ConvertPathsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private List<SVGPath> pathList;
+		private SVGShape[] shapes;
+		private int start;
+		private int end;
+
+		ConvertPathsTask(List<SVGPath> pathList, SVGShape[] shapes, int start, int end) {
+			this.pathList = pathList;
+			this.shapes = shapes;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PATHS_PER_TASK) {
+				for (int i = start; i < end; i++) {
+					shapes[i] = convertPathToShape(pathList.get(i));
+				}
+			} else {
+				int mid = (start + end) / 2;
+				invokeAll(
+						new ConvertPathsTask(pathList, shapes, start, mid),
+						new ConvertPathsTask(pathList, shapes, mid, end));
+			}
+		}
+	}
+
 	private void makeRelativePathsAbsolute(List<SVGPath> pathList) {
 		if (pathList == null) {
 			LOG.warn(" ****** Empty path list");
@@ -295,6 +396,79 @@ public class Path2ShapeConverter {
 		if (path == null) {
 			return null;
 		}
+		SVGShape shape = useShapeCache ? createShapeUsingCache(path) : createShape(path);
+		if (shape != null) {
+			// lines created from thin rects may have a different stroke-width to the original
+			Double strokeWidth = null;
+			if (shape instanceof SVGLine) {
+				strokeWidth = ((SVGLine) shape).getStrokeWidth();
+			}
+			copyAttributes(path, shape);
+			if (strokeWidth != null) {
+				shape.setStrokeWidth(strokeWidth);
+			}
+			if (formatShapes) {
+				shape.format(decimalPlaces);
+			}
+		}
+		return shape;
+	}
+
+	/** looks up the shape of the path moved to the origin and moves a copy back.
+	 * 
+	 * the first path with a given signature and normalized d is classified and its shape cached.
+	 * Shapes which cannot simply be translated (e.g. triangles) are not replayed.
+	 * 
+	 * @param path
+	 * @return shape without style or formatting
+	 */
+	private SVGShape createShapeUsingCache(SVGPath path) {
+		String d = path.getDString();
+		Real2Range bbox = (d == null) ? null : path.getBoundingBox();
+		if (bbox == null) {
+			return createShape(path);
+		}
+		SVGPath normalizedPath = new SVGPath(d);
+		normalizedPath.normalizeOrigin();
+		String key = path.getSignature()+" "+normalizedPath.getDString();
+		SVGShape cachedShape = shapeByNormalizedPath.get(key);
+		if (cachedShape == null) {
+			// races only cause duplicate classification
+			cachedShape = createShape(normalizedPath);
+			shapeByNormalizedPath.put(key, cachedShape);
+		}
+		if (!isTranslatable(cachedShape)) {
+			return createShape(path);
+		}
+		if (SVGPath.class.equals(cachedShape.getClass())) {
+			// not converted
+			return new SVGPath(path);
+		}
+		SVGShape shape = (SVGShape) cachedShape.copy();
+		if (cachedShape instanceof SVGPoly) {
+			((SVGPoly) shape).setClosed(((SVGPoly) cachedShape).isClosed());
+		}
+		shape.applyTransform(new Transform2(new Vector2(new Real2(bbox.getXMin(), bbox.getYMin()))));
+		return shape;
+	}
+
+	private static boolean isTranslatable(SVGShape shape) {
+		Class<?> clazz = (shape == null) ? null : shape.getClass();
+		return SVGPath.class.equals(clazz) ||
+				SVGLine.class.equals(clazz) ||
+				SVGRect.class.equals(clazz) ||
+				SVGCircle.class.equals(clazz) ||
+				SVGEllipse.class.equals(clazz) ||
+				SVGPolyline.class.equals(clazz) ||
+				SVGPolygon.class.equals(clazz);
+	}
+
+	/** runs the classification cascade.
+	 * 
+	 * @param path
+	 * @return shape without style or formatting
+	 */
+	private SVGShape createShape(SVGPath path) {
 		SVGShape shape = null;
 		SVGShape polygon = null;
 		SVGShape triangle = null;
@@ -342,18 +516,6 @@ public class Path2ShapeConverter {
 		if (shape instanceof SVGPath) {
 			shape = applyHeuristics((SVGPath)shape);
 		}
-		if (shape != null) {
-			// lines created from thin rects may have a different stroke-width to the original
-			Double strokeWidth = null;
-			if (shape instanceof SVGLine) {
-				strokeWidth = ((SVGLine) shape).getStrokeWidth();
-			}
-			copyAttributes(path, shape);
-			if (strokeWidth != null) {
-				shape.setStrokeWidth(strokeWidth);
-			}
-			shape.format(decimalPlaces);
-		}
 		return shape;
 	}
 
@@ -413,6 +575,22 @@ public class Path2ShapeConverter {
 		decimalPlaces = places;
 	}
 	
+	/** 
+	 * Whether shapes are formatted to decimalPlaces as they are created.
+	 * 
+	 * <p>If false the shapes keep full precision;
+	 * round when writing instead (SVGWriter.setDecimalPlaces()).</p>
+	 * 
+	 * @param formatShapes default true
+	 */
+	public void setFormatShapes(boolean formatShapes) {
+		this.formatShapes = formatShapes;
+	}
+	
+	public boolean isFormatShapes() {
+		return formatShapes;
+	}
+	
 	private SVGLine createLineFromMLLLLOrMLCCLCC(SVGPath path) {
 		SVGLine line = null;
 		if (path != null) {
@@ -483,6 +661,7 @@ public class Path2ShapeConverter {
 
 	public void setRectEpsilon(double rectEps) {
 		this.rectEpsilon = rectEps;
+		clearShapeCache();
 		
 		
 	}
@@ -1173,8 +1352,60 @@ public class Path2ShapeConverter {
 	 */
 	public void setMaxRectThickness(double maxRectThickness) {
 		this.maxRectThickness = maxRectThickness;
+		clearShapeCache();
 	}
 	
+	/**
+	 * @param parallel convert paths on a fork-join pool (default false)
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * @param parallelism number of threads used if parallel (default number of processors)
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new RuntimeException("parallelism must be positive: "+parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @param useShapeCache classify repeated (translated) geometry once (default false);
+	 * coordinates of replayed shapes may differ from direct conversion in the last decimal place
+	 */
+	public void setUseShapeCache(boolean useShapeCache) {
+		this.useShapeCache = useShapeCache;
+	}
+
+	public boolean isUseShapeCache() {
+		return useShapeCache;
+	}
+
+	/** discards cached shapes; called when parameters used in classification change.
+	 * 
+	 */
+	public void clearShapeCache() {
+		shapeByNormalizedPath.clear();
+	}
+
+	/**
+	 * @return number of distinct normalized paths cached
+	 */
+	public int getShapeCacheSize() {
+		return shapeByNormalizedPath.size();
+	}
+
 	public void setSplitPolyLines(boolean split) {
 		this.splitPolylines = split;
 	}
@@ -0,0 +1,164 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGPoly;
+import org.xmlcml.graphics.svg.SVGPolyline;
+
+/** joins polylines into chains where the last point of one equals the first point of another.
+ *
+ * The first points of all polylines are indexed on a grid of size eps, so the successor of each
+ * polyline is found by probing the 3x3 cells around its last point; chains are then followed in a
+ * single pass. Expected time is linear in the number of polylines, whatever their order in the list.
+ * <p>
+ * Directions are kept (polylines are not reversed). Where several polylines start at the same point
+ * the earliest in the list is taken. Points are equal as in SVGPolyline.createMergedLine()
+ * (Real2.isEqualTo(point, eps)). Closed loops are joined starting at their earliest member.
+ *
+ * @author pm286
+ *
+ */
+public class PolylineJoiner {
+
+	private static final Logger LOG = Logger.getLogger(PolylineJoiner.class);
+
+	private double eps;
+
+	public PolylineJoiner(double eps) {
+		if (!(eps > 0.0)) {
+			throw new RuntimeException("eps must be positive: "+eps);
+		}
+		this.eps = eps;
+	}
+
+	/** finds chains of polylines joined end to start.
+	 *
+	 * @param polyList
+	 * @return chains (each in joining order) ordered by their earliest member in polyList
+	 */
+	public <T extends SVGPoly> List<List<T>> createChains(List<T> polyList) {
+		int size = polyList.size();
+		Map<Long, List<Integer>> firstIndexesByCell = new HashMap<Long, List<Integer>>();
+		for (int i = 0; i < size; i++) {
+			Real2 first = getFirst(polyList.get(i));
+			if (first != null) {
+				Long key = createKey(cell(first.getX()), cell(first.getY()));
+				List<Integer> indexes = firstIndexesByCell.get(key);
+				if (indexes == null) {
+					indexes = new ArrayList<Integer>(1);
+					firstIndexesByCell.put(key, indexes);
+				}
+				indexes.add(i);
+			}
+		}
+		int[] next = new int[size];
+		boolean[] hasPrevious = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			next[i] = findNext(polyList, i, firstIndexesByCell, hasPrevious);
+			if (next[i] != -1) {
+				hasPrevious[next[i]] = true;
+			}
+		}
+		TreeMap<Integer, List<T>> chainByEarliestIndex = new TreeMap<Integer, List<T>>();
+		boolean[] used = new boolean[size];
+		// chains have heads; what remains are loops
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < size; i++) {
+				if (!used[i] && (pass == 1 || !hasPrevious[i])) {
+					List<T> chain = new ArrayList<T>();
+					int earliest = i;
+					for (int j = i; j != -1 && !used[j]; j = next[j]) {
+						used[j] = true;
+						chain.add(polyList.get(j));
+						earliest = Math.min(earliest, j);
+					}
+					chainByEarliestIndex.put(earliest, chain);
+				}
+			}
+		}
+		LOG.trace("joined "+size+" polylines into "+chainByEarliestIndex.size());
+		return new ArrayList<List<T>>(chainByEarliestIndex.values());
+	}
+
+	/** joins polylines end to start.
+	 *
+	 * @param polylineList not altered
+	 * @return unjoined polylines unchanged and new joined polylines, in order of their earliest member
+	 */
+	public List<SVGPolyline> joinPolylines(List<SVGPolyline> polylineList) {
+		List<SVGPolyline> joinedList = new ArrayList<SVGPolyline>();
+		for (List<SVGPolyline> chain : createChains(polylineList)) {
+			joinedList.add(chain.size() == 1 ? chain.get(0) : createJoinedPolyline(chain));
+		}
+		return joinedList;
+	}
+
+	/** appends the points of each poly (except the common first point) to the first.
+	 *
+	 * Copy semantics (as SVGPolyline.createMergedLine()); attributes are those of the first.
+	 *
+	 * @param chain
+	 * @return new polyline
+	 */
+	public static SVGPolyline createJoinedPolyline(List<? extends SVGPoly> chain) {
+		SVGPolyline newPoly = new SVGPolyline(chain.get(0));
+		Real2Array points = newPoly.getReal2Array();
+		for (int k = 1; k < chain.size(); k++) {
+			Real2Array points1 = chain.get(k).getReal2Array();
+			for (int i = 1; i < points1.size(); i++) {
+				points.add(new Real2(points1.get(i)));
+			}
+		}
+		newPoly.setReal2Array(points);
+		return newPoly;
+	}
+
+	private <T extends SVGPoly> int findNext(List<T> polyList, int i, Map<Long, List<Integer>> firstIndexesByCell, boolean[] hasPrevious) {
+		Real2 last = getLast(polyList.get(i));
+		int next = -1;
+		if (last != null) {
+			long ix = cell(last.getX());
+			long iy = cell(last.getY());
+			for (long jx = ix - 1; jx <= ix + 1; jx++) {
+				for (long jy = iy - 1; jy <= iy + 1; jy++) {
+					List<Integer> indexes = firstIndexesByCell.get(createKey(jx, jy));
+					if (indexes != null) {
+						for (Integer j : indexes) {
+							if (j != i && !hasPrevious[j] && (next == -1 || j < next) &&
+									getFirst(polyList.get(j)).isEqualTo(last, eps)) {
+								next = j;
+							}
+						}
+					}
+				}
+			}
+		}
+		return next;
+	}
+
+	private long cell(double coordinate) {
+		return (long) Math.floor(coordinate / eps);
+	}
+
+	// collisions only give extra candidates, which are checked
+	private static Long createKey(long ix, long iy) {
+		return (ix << 32) ^ (iy & 0xffffffffL);
+	}
+
+	private static Real2 getFirst(SVGPoly poly) {
+		Real2Array points = (poly == null) ? null : poly.getReal2Array();
+		return (points == null || points.size() == 0) ? null : points.get(0);
+	}
+
+	private static Real2 getLast(SVGPoly poly) {
+		Real2Array points = (poly == null) ? null : poly.getReal2Array();
+		return (points == null || points.size() == 0) ? null : points.get(points.size() - 1);
+	}
+}
@@ -17,6 +17,7 @@ import org.xmlcml.graphics.svg.SVGRect;
 import org.xmlcml.graphics.svg.SVGShape;
 import org.xmlcml.graphics.svg.SVGText;
 import org.xmlcml.graphics.svg.linestuff.Path2ShapeConverter;
+import org.xmlcml.graphics.svg.util.GeometricDeduplicator;
 
 
 public class SVGDiagram extends SVGG {
@@ -42,6 +43,9 @@ public class SVGDiagram extends SVGG {
 	protected List<SVGPolyline> polylineList;
 	protected List<SVGRoundedBox> roundedBoxList;
 	protected SVGElement rawDiagram;
+	// near-duplicates (within eps) of shapes already in the lists
+	private GeometricDeduplicator<SVGShape> shapeDeduplicator;
+	private GeometricDeduplicator<SVGRoundedBox> roundedBoxDeduplicator;
 
 	public SVGDiagram() {
 		super();
@@ -55,6 +59,8 @@ public class SVGDiagram extends SVGG {
 		rectList = new ArrayList<SVGRect>();
 		pathList = new ArrayList<SVGPath>();
 		roundedBoxList = new ArrayList<SVGRoundedBox>();
+		shapeDeduplicator = new GeometricDeduplicator<SVGShape>(eps);
+		roundedBoxDeduplicator = new GeometricDeduplicator<SVGRoundedBox>(eps);
 		
 		newG = new SVGG();
 		for (List<SVGShape> shapeList : shapeListList) {
@@ -94,7 +100,7 @@ public class SVGDiagram extends SVGG {
 				}
 			}
 		}
-		polylineList = SVGPolyline.quadraticMergePolylines(polylineList, eps);
+		polylineList = SVGPolyline.mergePolylinesAtEndPoints(polylineList, eps);
 		lineList = SVGLine.normalizeAndMergeAxialLines(lineList, eps);
 		LOG.trace("roundedBoxList: "+roundedBoxList.size());
 		LOG.trace("paths: "+pathList.size());
@@ -105,95 +111,41 @@ public class SVGDiagram extends SVGG {
 	}
 
 	private void addNewPath(SVGPath path) {
-		if (!containsPath(pathList, path, eps)) {
+		if (shapeDeduplicator.add(path, GeometricDeduplicator.createCoordinates(path))) {
 			pathList.add(path);
 		}
 	}
 
-	private boolean containsPath(List<SVGPath> pathList, SVGPath path0, double delta) {
-		for (SVGPath path : pathList) {
-			if (path.hasEqualCoordinates(path0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewRoundedBox(SVGRoundedBox roundedBox) {
-		if (!containsRoundedBox(roundedBoxList, roundedBox, eps)) {
+		if (roundedBoxDeduplicator.add(roundedBox, GeometricDeduplicator.createCoordinates(roundedBox.getPath()))) {
 			roundedBoxList.add(roundedBox);
 		}
 	}
 
-	private boolean containsRoundedBox(List<SVGRoundedBox> roundedBoxList, SVGRoundedBox roundedBox0, double delta) {
-		for (SVGRoundedBox roundedBox : roundedBoxList) {
-			if (roundedBox.getPath().hasEqualCoordinates(roundedBox0.getPath(), delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewTriangle(SVGTriangle triangle) {
-		if (!containsTriangle(triangleList, triangle, eps)) {
+		if (shapeDeduplicator.add(triangle, GeometricDeduplicator.createCoordinates(triangle))) {
 			triangleList.add(triangle);
 		}
 	}
 
-	private boolean containsTriangle(List<SVGTriangle> triangleList, SVGTriangle triangle0, double delta) {
-		for (SVGTriangle triangle : triangleList) {
-			if (triangle.hasEqualCoordinates(triangle0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewPolyline(SVGPolyline polyline) {
-		if (!containsPolyline(polylineList, polyline, eps)) {
+		if (shapeDeduplicator.add(polyline, GeometricDeduplicator.createCoordinates(polyline))) {
 			polylineList.add(polyline);
 		}
 	}
 
-	private boolean containsPolyline(List<SVGPolyline> polylineList, SVGPolyline polyline0, double delta) {
-		for (SVGPolyline polyline : polylineList) {
-			if (polyline.hasEqualCoordinates(polyline0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewLine(SVGLine line) {
-		if (!containsLine(lineList, line, eps)) {
+		if (shapeDeduplicator.add(line, GeometricDeduplicator.createCoordinates(line))) {
 			lineList.add(line);
 		}
 	}
 
-	private boolean containsLine(List<SVGLine> lineList, SVGLine line0, double delta) {
-		for (SVGLine line : lineList) {
-			if (line.hasEqualCoordinates(line0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewRect(SVGRect rect) {
-		if (!containsRect(rectList, rect, eps)) {
+		if (shapeDeduplicator.add(rect, GeometricDeduplicator.createCoordinates(rect))) {
 			rectList.add(rect);
 		}
 	}
 
-	private boolean containsRect(List<SVGRect> rectList, SVGRect rect0, double delta) {
-		for (SVGRect rect : rectList) {
-			if (rect.isEqual(rect0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	protected void createTextBoxes() {
 		textBoxList = new ArrayList<SVGTextBox>();
 		for (SVGRect rect : rectList) {
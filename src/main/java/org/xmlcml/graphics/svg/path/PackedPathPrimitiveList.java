@@ -0,0 +1,459 @@
+package org.xmlcml.graphics.svg.path;
+
+import java.awt.geom.GeneralPath;
+import java.util.Arrays;
+
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGPathPrimitive;
+
+/**
+ * Compact (structure-of-arrays) form of the primitives of an SVGPath.
+ * <p>
+ * One opcode byte per primitive and all coordinates in a single double[] (x0, y0, x1, y1...).
+ * PathPrimitiveList holds one object per primitive, each with Real2/Real2Array objects; for
+ * pages with hundreds of thousands of segments this form is an order of magnitude smaller.
+ * <p>
+ * Coordinates are absolute (relative commands, H, V, S, T have been resolved by SVGPathParser).
+ * A ClosePrimitive stores the point it closes to (the start of the subpath) as one coordinate pair.
+ * <p>
+ * Primitives are read with a Cursor, which does not allocate per primitive:
+ * <pre>
+ *   PackedPathPrimitiveList.Cursor cursor = packed.cursor();
+ *   while (cursor.next()) {
+ *       if (cursor.getOpcode() == PackedPathPrimitiveList.CUBIC) {
+ *           double x = cursor.getX(2);
+ *           ...
+ * </pre>
+ *
+ * @author pm286
+ */
+public class PackedPathPrimitiveList {
+
+	public static final byte MOVE  = 0;
+	public static final byte LINE  = 1;
+	public static final byte CUBIC = 2;
+	public static final byte QUAD  = 3;
+	public static final byte CLOSE = 4;
+
+	/** coordinate pairs for each opcode */
+	private static final int[] POINT_COUNT = {1, 1, 3, 2, 1};
+	private static final char[] TAGS = {
+		SVGPathPrimitive.MOVE,
+		SVGPathPrimitive.LINE,
+		SVGPathPrimitive.CUBIC,
+		SVGPathPrimitive.QUAD,
+		SVGPathPrimitive.CLOSE,
+	};
+	private static final int DEFAULT_CAPACITY = 8;
+
+	private byte[] opcodes;
+	private int size;
+	private double[] coords;
+	private int coordCount;
+
+	public PackedPathPrimitiveList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity expected number of primitives
+	 */
+	public PackedPathPrimitiveList(int capacity) {
+		capacity = Math.max(1, capacity);
+		opcodes = new byte[capacity];
+		coords = new double[2 * capacity];
+	}
+
+	/** creates packed form of existing primitives.
+	 *
+	 * @param primitiveList
+	 * @return
+	 */
+	public static PackedPathPrimitiveList createPackedList(PathPrimitiveList primitiveList) {
+		PackedPathPrimitiveList packed = new PackedPathPrimitiveList(primitiveList.size());
+		for (SVGPathPrimitive primitive : primitiveList) {
+			byte opcode = getOpcode(primitive);
+			Real2Array coordArray = primitive.getCoordArray();
+			int npoints = coordArray == null ? 0 : coordArray.size();
+			if (npoints != POINT_COUNT[opcode]) {
+				throw new RuntimeException("Cannot pack "+primitive.getTag()+" with "+npoints+" coordinates");
+			}
+			packed.ensureCapacity(2 * npoints);
+			packed.opcodes[packed.size++] = opcode;
+			for (int i = 0; i < npoints; i++) {
+				Real2 xy = coordArray.get(i);
+				packed.coords[packed.coordCount++] = xy.getX();
+				packed.coords[packed.coordCount++] = xy.getY();
+			}
+		}
+		return packed;
+	}
+
+	private static byte getOpcode(SVGPathPrimitive primitive) {
+		if (primitive instanceof MovePrimitive) {
+			return MOVE;
+		} else if (primitive instanceof LinePrimitive) {
+			return LINE;
+		} else if (primitive instanceof CubicPrimitive) {
+			return CUBIC;
+		} else if (primitive instanceof QuadPrimitive) {
+			return QUAD;
+		} else if (primitive instanceof ClosePrimitive) {
+			return CLOSE;
+		}
+		throw new RuntimeException("Cannot pack primitive: "+primitive.getClass());
+	}
+
+	public void addMove(double x, double y) {
+		addPoint(MOVE, x, y);
+	}
+
+	public void addLine(double x, double y) {
+		addPoint(LINE, x, y);
+	}
+
+	/**
+	 * @param x y point the subpath closes to
+	 */
+	public void addClose(double x, double y) {
+		addPoint(CLOSE, x, y);
+	}
+
+	public void addCubic(double x1, double y1, double x2, double y2, double x, double y) {
+		ensureCapacity(6);
+		opcodes[size++] = CUBIC;
+		coords[coordCount++] = x1;
+		coords[coordCount++] = y1;
+		coords[coordCount++] = x2;
+		coords[coordCount++] = y2;
+		coords[coordCount++] = x;
+		coords[coordCount++] = y;
+	}
+
+	public void addQuad(double x1, double y1, double x, double y) {
+		ensureCapacity(4);
+		opcodes[size++] = QUAD;
+		coords[coordCount++] = x1;
+		coords[coordCount++] = y1;
+		coords[coordCount++] = x;
+		coords[coordCount++] = y;
+	}
+
+	private void addPoint(byte opcode, double x, double y) {
+		ensureCapacity(2);
+		opcodes[size++] = opcode;
+		coords[coordCount++] = x;
+		coords[coordCount++] = y;
+	}
+
+	private void ensureCapacity(int extraCoords) {
+		if (size == opcodes.length) {
+			opcodes = Arrays.copyOf(opcodes, 2 * opcodes.length);
+		}
+		if (coordCount + extraCoords > coords.length) {
+			coords = Arrays.copyOf(coords, Math.max(2 * coords.length, coordCount + extraCoords));
+		}
+	}
+
+	/** removes all primitives but keeps the arrays for reuse.
+	 */
+	public void clear() {
+		size = 0;
+		coordCount = 0;
+	}
+
+	/** copy with arrays trimmed to size.
+	 *
+	 * @return
+	 */
+	public PackedPathPrimitiveList createTrimmedCopy() {
+		PackedPathPrimitiveList copy = new PackedPathPrimitiveList(size);
+		System.arraycopy(opcodes, 0, copy.opcodes, 0, size);
+		copy.size = size;
+		copy.coords = Arrays.copyOf(coords, coordCount);
+		copy.coordCount = coordCount;
+		return copy;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public byte getOpcode(int i) {
+		return opcodes[i];
+	}
+
+	/** tag as in SVGPathPrimitive (M, L, C, Q, Z).
+	 *
+	 * @param i
+	 * @return
+	 */
+	public char getTag(int i) {
+		return TAGS[opcodes[i]];
+	}
+
+	/** number of coordinate pairs used by opcode.
+	 *
+	 * @param opcode
+	 * @return
+	 */
+	public static int getPointCount(byte opcode) {
+		return POINT_COUNT[opcode];
+	}
+
+	/** total number of coordinate pairs.
+	 *
+	 * @return
+	 */
+	public int getPointCount() {
+		return coordCount / 2;
+	}
+
+	/** x coordinate of point in flat coordinate array.
+	 *
+	 * @param point index over all points (not primitives)
+	 * @return
+	 */
+	public double getX(int point) {
+		return coords[2 * point];
+	}
+
+	public double getY(int point) {
+		return coords[2 * point + 1];
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/** signature as PathPrimitiveList.createSignature().
+	 *
+	 * @return e.g. "MLLLZ"
+	 */
+	public String createSignature() {
+		StringBuilder sig = new StringBuilder(size);
+		for (int i = 0; i < size; i++) {
+			sig.append(TAGS[opcodes[i]]);
+		}
+		return sig.toString();
+	}
+
+	/** does the last point coincide with the first (as SVGPath.ensurePrimitives()).
+	 *
+	 * @param eps
+	 * @return false if fewer than 2 primitives
+	 */
+	public boolean isClosed(double eps) {
+		if (size < 2) {
+			return false;
+		}
+		int last = coordCount - 2;
+		double dx = coords[last] - coords[0];
+		double dy = coords[last + 1] - coords[1];
+		return Math.sqrt(dx * dx + dy * dy) < eps;
+	}
+
+	/** range of all coordinates (including control points).
+	 *
+	 * as the curve lies within the hull of its control points this always encloses the path.
+	 *
+	 * @return null if no coordinates
+	 */
+	public Real2Range getBoundingBox() {
+		if (coordCount == 0) {
+			return null;
+		}
+		double xmin = Double.POSITIVE_INFINITY;
+		double xmax = Double.NEGATIVE_INFINITY;
+		double ymin = Double.POSITIVE_INFINITY;
+		double ymax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < coordCount; i += 2) {
+			double x = coords[i];
+			double y = coords[i + 1];
+			xmin = Math.min(xmin, x);
+			xmax = Math.max(xmax, x);
+			ymin = Math.min(ymin, y);
+			ymax = Math.max(ymax, y);
+		}
+		return new Real2Range(new RealRange(xmin, xmax), new RealRange(ymin, ymax));
+	}
+
+	/** range of the first coordinate of each primitive.
+	 *
+	 * the same points as SVGPath.getCoords() (end points of M, L, Z and first control point of C, Q).
+	 *
+	 * @return null if no primitives
+	 */
+	public Real2Range getFirstPointBoundingBox() {
+		if (size == 0) {
+			return null;
+		}
+		double xmin = Double.POSITIVE_INFINITY;
+		double xmax = Double.NEGATIVE_INFINITY;
+		double ymin = Double.POSITIVE_INFINITY;
+		double ymax = Double.NEGATIVE_INFINITY;
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			double x = coords[offset];
+			double y = coords[offset + 1];
+			xmin = Math.min(xmin, x);
+			xmax = Math.max(xmax, x);
+			ymin = Math.min(ymin, y);
+			ymax = Math.max(ymax, y);
+			offset += 2 * POINT_COUNT[opcodes[i]];
+		}
+		return new Real2Range(new RealRange(xmin, xmax), new RealRange(ymin, ymax));
+	}
+
+	/** first coordinate of each primitive as in SVGPath.getCoords().
+	 *
+	 * @return
+	 */
+	public Real2Array createFirstPointArray() {
+		Real2Array r2a = new Real2Array();
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			r2a.add(new Real2(coords[offset], coords[offset + 1]));
+			offset += 2 * POINT_COUNT[opcodes[i]];
+		}
+		return r2a;
+	}
+
+	/** expands to one object per primitive.
+	 *
+	 * @return
+	 */
+	public PathPrimitiveList createPathPrimitiveList() {
+		PathPrimitiveList primitiveList = new PathPrimitiveList();
+		Cursor cursor = cursor();
+		while (cursor.next()) {
+			SVGPathPrimitive primitive = null;
+			byte opcode = cursor.getOpcode();
+			if (opcode == MOVE) {
+				primitive = new MovePrimitive(cursor.getPoint(0));
+			} else if (opcode == LINE) {
+				primitive = new LinePrimitive(cursor.getPoint(0));
+			} else if (opcode == CUBIC) {
+				primitive = new CubicPrimitive(cursor.getPoints());
+			} else if (opcode == QUAD) {
+				primitive = new QuadPrimitive(cursor.getPoints());
+			} else {
+				primitive = new ClosePrimitive(cursor.getPoint(0));
+			}
+			primitiveList.add(primitive);
+		}
+		return primitiveList;
+	}
+
+	/** creates Java2D path directly from the arrays (as SVGPathPrimitive.operateOn()).
+	 *
+	 * @return new path
+	 */
+	public GeneralPath createGeneralPath() {
+		GeneralPath path = new GeneralPath(GeneralPath.WIND_NON_ZERO, Math.max(size, 1));
+		Cursor cursor = cursor();
+		while (cursor.next()) {
+			byte opcode = cursor.getOpcode();
+			if (opcode == MOVE) {
+				path.moveTo(cursor.getX(0), cursor.getY(0));
+			} else if (opcode == LINE) {
+				path.lineTo(cursor.getX(0), cursor.getY(0));
+			} else if (opcode == CUBIC) {
+				path.curveTo(cursor.getX(0), cursor.getY(0), cursor.getX(1), cursor.getY(1), cursor.getX(2), cursor.getY(2));
+			} else if (opcode == QUAD) {
+				path.quadTo(cursor.getX(0), cursor.getY(0), cursor.getX(1), cursor.getY(1));
+			} else {
+				path.closePath();
+			}
+		}
+		return path;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		Cursor cursor = cursor();
+		while (cursor.next()) {
+			sb.append(cursor.getTag());
+			for (int i = 0; i < cursor.getPointCount(); i++) {
+				sb.append(cursor.getX(i)+" "+cursor.getY(i)+" ");
+			}
+		}
+		return sb.toString();
+	}
+
+	/** forward iterator over primitives.
+	 *
+	 * next() must be called before the first primitive is read.
+	 */
+	public class Cursor {
+
+		private int index = -1;
+		private int offset = 0;
+
+		private Cursor() {
+		}
+
+		/** advances to next primitive.
+		 *
+		 * @return false if no more primitives
+		 */
+		public boolean next() {
+			if (index >= 0) {
+				offset += 2 * POINT_COUNT[opcodes[index]];
+			}
+			index++;
+			return index < size;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public byte getOpcode() {
+			return opcodes[index];
+		}
+
+		public char getTag() {
+			return TAGS[opcodes[index]];
+		}
+
+		public int getPointCount() {
+			return POINT_COUNT[opcodes[index]];
+		}
+
+		/**
+		 * @param point index within this primitive (0 to getPointCount()-1)
+		 * @return
+		 */
+		public double getX(int point) {
+			return coords[offset + 2 * point];
+		}
+
+		public double getY(int point) {
+			return coords[offset + 2 * point + 1];
+		}
+
+		public double getLastX() {
+			return getX(getPointCount() - 1);
+		}
+
+		public double getLastY() {
+			return getY(getPointCount() - 1);
+		}
+
+		public Real2 getPoint(int point) {
+			return new Real2(getX(point), getY(point));
+		}
+
+		public Real2Array getPoints() {
+			Real2Array r2a = new Real2Array();
+			for (int i = 0; i < getPointCount(); i++) {
+				r2a.add(getPoint(i));
+			}
+			return r2a;
+		}
+	}
+}
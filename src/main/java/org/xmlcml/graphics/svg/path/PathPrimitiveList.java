@@ -28,7 +28,7 @@ public class PathPrimitiveList implements Iterable<SVGPathPrimitive> {
 	public void add(SVGPathPrimitive primitive) {
 		ensurePathPrimitiveList();
 		primitiveList.add(primitive);
-		setFirstPoints();
+		setFirstPointOfLast();
 	}
 
 	public void add(PathPrimitiveList primitiveList) {
@@ -65,6 +65,27 @@ public class PathPrimitiveList implements Iterable<SVGPathPrimitive> {
 		}
 	}
 	
+	/**
+	 * as setFirstPoints() but only for the last primitive (and primitive(0) if closed).
+	 * 
+	 * earlier primitives are unchanged by an append, so adding n primitives is O(n) not O(n^2)
+	 */
+	private void setFirstPointOfLast() {
+		int nprim = primitiveList.size();
+		if (nprim > 1) {
+			primitiveList.get(nprim - 1).setFirstPoint(primitiveList.get(nprim - 2).getLastCoord());
+		}
+		if (primitiveList.get(nprim - 1) instanceof ClosePrimitive) {
+			if (nprim > 1) {
+				primitiveList.get(0).setFirstPoint(primitiveList.get(nprim-2).getLastCoord());
+			}
+		} else if (isClosed()) {
+			if (nprim > 1) {
+				primitiveList.get(0).setFirstPoint(primitiveList.get(nprim-1).getLastCoord());
+			}
+		}
+	}
+	
 	public Iterator<SVGPathPrimitive> iterator() {
 		ensurePathPrimitiveList();
 		return primitiveList.iterator();
@@ -1,76 +1,119 @@
 package org.xmlcml.graphics.svg.path;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Real2;
-import org.xmlcml.euclid.Real2Array;
-import org.xmlcml.euclid.RealArray;
 import org.xmlcml.graphics.svg.SVGPathPrimitive;
 
+/** parses the d attribute of an SVG path into a PackedPathPrimitiveList or PathPrimitiveList.
+ * 
+ * The d string is scanned character by character; numbers are read directly into
+ * a primitive buffer without creating intermediate token Strings or boxed Doubles.
+ * Primitives are written to a packed list (no objects per primitive); the PathPrimitiveList
+ * is created from that only when asked for.
+ * 
+ * A parser may be reused for any number of d strings (state is reset on each call)
+ * but is not thread-safe; use one parser per thread.
+ * 
+ * @author pm286
+ *
+ */
 public class SVGPathParser {
 	private static final Logger LOG = Logger.getLogger(SVGPathParser.class);
 	static {
 		LOG.setLevel(Level.DEBUG);
 	}
 
-	/** THESE STATICS ARE CODE SMELLS */
-	private /*static*/ Real2 firstPoint;
-	private /*static*/ Real2 currentPoint;
+	/** largest number of arguments in a primitive (arc) */
+	private static final int MAX_ARGS = 7;
+	/** mantissas with more significant digits are parsed by Double.parseDouble */
+	private static final int MAX_FAST_DIGITS = 15;
+	private static final int MAX_LONG_DIGITS = 18;
+	/** exactly representable powers of ten */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+	};
+
+	private static final byte NO_OPCODE = -1;
+
+	private boolean hasFirstPoint;
+	private double firstX;
+	private double firstY;
+	private boolean hasCurrentPoint;
+	private double currentX;
+	private double currentY;
 	
-	private PathPrimitiveList primitiveList;
-	private List<String> tokenList;
+	/** reused between parses */
+	private final PackedPathPrimitiveList packed = new PackedPathPrimitiveList();
 	private String d;
-	private SVGPathPrimitive lastPrimitive;
+	private int pos;
+	private int length;
+	private final double[] buffer = new double[MAX_ARGS];
+	private byte lastOpcode;
 	
+	/** parses d into primitive objects.
+	 * 
+	 * @param d
+	 * @return empty list if d is null
+	 */
 	public PathPrimitiveList parseDString(String d) {
-		LOG.trace(">d>"+d);
-		this.d = d;
-		primitiveList = new PathPrimitiveList();
+		parse(d);
+		PathPrimitiveList primitiveList = packed.createPathPrimitiveList();
+		packed.clear();
+		return primitiveList;
+	}
+
+	/** parses d into compact form.
+	 * 
+	 * @param d
+	 * @return list trimmed to size; empty if d is null
+	 */
+	public PackedPathPrimitiveList parseDStringToPacked(String d) {
+		parse(d);
+		PackedPathPrimitiveList packedList = packed.createTrimmedCopy();
+		packed.clear();
+		return packedList;
+	}
+
+	private void parse(String d) {
+		packed.clear();
 		if (d == null) {
-			return primitiveList;
+			return;
 		}
-		tokenList = extractTokenList(d);
-		int itok = 0;
-		firstPoint = null;
-		currentPoint = null;
-		char t = (char)0;
-		while (itok <tokenList.size()) {
-			String token = tokenList.get(itok);
-			t = token.charAt(0);
-			LOG.trace(">t>"+t);
-			itok++;
+		this.d = d;
+		pos = 0;
+		length = d.length();
+		hasFirstPoint = false;
+		hasCurrentPoint = false;
+		currentX = 0.0;
+		currentY = 0.0;
+		lastOpcode = NO_OPCODE;
+		while (hasMoreCommands()) {
+			int commandPos = pos;
+			char t = d.charAt(pos++);
 			
 			if (false) {
 			} else if (isMove(t)) {
-				itok = addMovePrimitives(itok, t);
+				addMovePrimitives(t);
 			} else if (isLine(t)) {
-				itok = addLinePrimitives(itok, t);
+				addLinePrimitives(t);
 			} else if (isHorizontal(t) || isVertical(t)) {
-				itok = addHorizontalVerticalPrimitives(itok, t);
+				addHorizontalVerticalPrimitives(t);
 			} else if (isCubic(t)) {
-				itok = addCubicPrimitives(itok, t);
+				addCubicPrimitives(t);
 			} else if (isQuadratic(t)) {
-				itok = addQuadraticPrimitives(itok, t);
+				addQuadraticPrimitives(t);
 			} else if (isArc(t)) {
-				itok = addArcPrimitives(itok, t);
+				addArcPrimitives(t);
 			} else if (isClose(t)) {
-				itok = addClosePrimitive(itok, t);
+				addClosePrimitive(t);
 			} else {
-				System.out.println();
-				for (int i = Math.max(itok - 10, 0); i < itok; i++) {
-					System.out.print(tokenList.get(i)+" ");
-				}
-				System.out.print(" ["+tokenList.get(itok)+"] ");
-				for (int i = itok + 1; i < Math.min(tokenList.size(), itok + 10); i++) {
-					System.out.print(tokenList.get(i)+" ");
-				}
-				throw new RuntimeException("unknown or unsupported primitive "+t+" in token "+itok+"("+token+") in "+d);
+				throw new RuntimeException("unknown or unsupported primitive "+t+" at "+commandPos+" ("+context(commandPos)+") in "+d);
 			}
 		}
-		return primitiveList;
+		// do not retain references between parses
+		this.d = null;
 	}
 
 	/**
@@ -83,26 +126,21 @@ a (relative)	elliptical arc	(rx ry x-axis-rotation large-arc-flag sweep-flag x y
     by the other parameters. large-arc-flag and sweep-flag contribute to the automatic calculations
      and help determine how the arc is drawn.
      
-     * @param itok
 	 * @param t
-	 * @return
 	 */
-	private int addArcPrimitives(int itok, char t) {
+	private void addArcPrimitives(char t) {
 		checkExistingFirstXY(t);
-		while (isCoordinate(tokenList, itok)) {
-			double[] dd = readDoubles(tokenList, 7, itok);
-			itok += 7;
+		while (hasNumber()) {
+			double[] dd = readDoubles(7);
 			LOG.error("ARC not implemented in SVGPathParser; line drawn instead");
-			Real2 r2 = new Real2(dd[5], dd[6]);
+			double x = dd[5];
+			double y = dd[6];
 			if (isRelative(t)) {
-				r2 = r2.plus(currentPoint);
+				x += currentX;
+				y += currentY;
 			}
-			SVGPathPrimitive pp = new LinePrimitive(r2);
-			primitiveList.add(pp);
-			lastPrimitive = pp;
-			currentPoint = r2;
+			addLine(x, y);
 		}
-		return itok;
 	}
 
 	/**
@@ -123,37 +161,33 @@ t (relative)	Shorthand/smooth quadratic Bézier curveto	(x y)+
     t (lowercase) indicates that relative coordinates will follow. 
     At the end of the command, the new current point becomes the final (x,y) coordinate pair used in the polybézier.
     
-     * @param itok
 	 * @param t
-	 * @return
 	 */
-	private int addQuadraticPrimitives(int itok, char t) {
+	private void addQuadraticPrimitives(char t) {
 		checkExistingFirstXY(t);
-		while (isCoordinate(tokenList, itok)) {
-			int ntok = isSmoothQuadratic(t) ? 2 : 4;
-			Real2Array r2a = readReal2Array(tokenList, ntok, itok);
-			itok += ntok;
-			if (isRelative(t)) {
-				r2a = r2a.plusEquals(currentPoint);
-			}
-			if (isSmoothQuadratic(t)) {
-				Real2 firstControlXY = currentPoint;
-				if (isQuadratic(lastPrimitive)) {
-					Real2 lastControlXY = lastPrimitive.getCoordArray().get(1); // check this
-					Real2 vector = lastControlXY.subtract(currentPoint);
-					firstControlXY = currentPoint.subtract(vector);
+		boolean smooth = isSmoothQuadratic(t);
+		while (hasNumber()) {
+			double[] dd = readDoubles(smooth ? 2 : 4);
+			double x1;
+			double y1;
+			int i = 0;
+			if (smooth) {
+				x1 = currentX;
+				y1 = currentY;
+				if (lastOpcode == PackedPathPrimitiveList.QUAD) {
+					int last = packed.getPointCount() - 1; // check this
+					x1 = 2 * currentX - packed.getX(last);
+					y1 = 2 * currentY - packed.getY(last);
 				}
-				Real2Array temp = new Real2Array();
-				temp.add(firstControlXY);
-				temp.add(r2a);
-				r2a = temp;
+			} else {
+				x1 = offsetX(t, dd[i++]);
+				y1 = offsetY(t, dd[i++]);
 			}
-			SVGPathPrimitive pp = new QuadPrimitive(r2a);
-			primitiveList.add(pp);
-			lastPrimitive = pp;
-			currentPoint = r2a.get(1);
+			double x = offsetX(t, dd[i++]);
+			double y = offsetY(t, dd[i++]);
+			packed.addQuad(x1, y1, x, y);
+			setCurrentPoint(PackedPathPrimitiveList.QUAD, x, y);
 		}
-		return itok;
 	}
 
 	/**
@@ -178,47 +212,41 @@ s (relative)	shorthand/smooth curveto	(x2 y2 x y)+
     Multiple sets of coordinates may be specified to draw a polybézier. 
     At the end of the command, the new current point becomes the final (x,y) coordinate pair used in the polybézier.
 
-	 * @param itok
 	 * @param t
-	 * @return
 	 */
-	private int addCubicPrimitives(int itok, char t) {
+	private void addCubicPrimitives(char t) {
 		checkExistingFirstXY(t);
-		while (isCoordinate(tokenList, itok)) {
-			int ntok = isSmoothCubic(t) ? 4 : 6;
-			Real2Array r2a = readReal2Array(tokenList, ntok, itok);
-			itok += ntok;
-			if (isRelative(t)) {
-				r2a = r2a.plusEquals(currentPoint);
-			}
-			if (isSmoothCubic(t)) {
-				Real2 firstControlXY = currentPoint;
-				if (isCubic(lastPrimitive)) {
-					Real2 lastControlXY = lastPrimitive.getCoordArray().get(2); // check this
-					Real2 vector = lastControlXY.subtract(currentPoint);
-					firstControlXY = currentPoint.subtract(vector);
+		boolean smooth = isSmoothCubic(t);
+		while (hasNumber()) {
+			double[] dd = readDoubles(smooth ? 4 : 6);
+			double x1;
+			double y1;
+			int i = 0;
+			if (smooth) {
+				x1 = currentX;
+				y1 = currentY;
+				if (lastOpcode == PackedPathPrimitiveList.CUBIC) {
+					int last = packed.getPointCount() - 1; // check this
+					x1 = 2 * currentX - packed.getX(last);
+					y1 = 2 * currentY - packed.getY(last);
 				}
-				Real2Array temp = new Real2Array();
-				temp.add(firstControlXY);
-				temp.add(r2a);
-				r2a = temp;
+			} else {
+				x1 = offsetX(t, dd[i++]);
+				y1 = offsetY(t, dd[i++]);
 			}
-			SVGPathPrimitive pp = new CubicPrimitive(r2a);
-			primitiveList.add(pp);
-			lastPrimitive = pp;
-			currentPoint = r2a.get(2);
+			double x2 = offsetX(t, dd[i++]);
+			double y2 = offsetY(t, dd[i++]);
+			double x = offsetX(t, dd[i++]);
+			double y = offsetY(t, dd[i++]);
+			packed.addCubic(x1, y1, x2, y2, x, y);
+			setCurrentPoint(PackedPathPrimitiveList.CUBIC, x, y);
 		}
-		return itok;
 	}
 
 	public static boolean isCubic(SVGPathPrimitive primitive) {
 		return primitive.getClass().equals(CubicPrimitive.class);
 	}
 
-	private boolean isQuadratic(SVGPathPrimitive primitive) {
-		return primitive.getClass().equals(QuadPrimitive.class);
-	}
-
 	/**
 Command	Name	Parameters	Description
 Z or
@@ -226,14 +254,13 @@ z	closepath	(none)
 Close the current subpath by drawing a straight line from the current point to current subpath's initial point. 
 Since the Z and z commands take no parameters, they have an identical effect.	 * @param t
 	 */
-	private int addClosePrimitive(int itok, char t) {
+	private void addClosePrimitive(char t) {
 		checkExistingFirstXY(t);
-		firstPoint = firstPoint.format(3);
-		currentPoint = firstPoint;
-		SVGPathPrimitive pp = new ClosePrimitive(currentPoint);
-		primitiveList.add(pp);
-		lastPrimitive = pp;
-		return itok;
+		Real2 firstPoint = new Real2(firstX, firstY).format(3);
+		firstX = firstPoint.getX();
+		firstY = firstPoint.getY();
+		packed.addClose(firstX, firstY);
+		setCurrentPoint(PackedPathPrimitiveList.CLOSE, firstX, firstY);
 	}
 
 	/**
@@ -253,37 +280,18 @@ v (relative)	vertical lineto	y+
     Multiple y values can be provided (although usually this doesn't make sense). 
     At the end of the command, the new current point becomes (cpx, y) for the final value of y.	 
     
-     * @param itok
 	 * @param t
-	 * @return
 	 */
-	private int addHorizontalVerticalPrimitives(int itok, char t) {
+	private void addHorizontalVerticalPrimitives(char t) {
 		checkExistingFirstXY(t);
-		while (isCoordinate(tokenList, itok)) {
-			double[] dd = readDoubles(tokenList, 1, itok);
-			itok += 1;
-			Real2 r2 = null;
-			double lastX = currentPoint.getX();
-			double lastY = currentPoint.getY();
-			if (isRelative(t)) {
-				if (isHorizontal(t)) {
-					r2 = new Real2(lastX + dd[0], lastY);
-				} else {
-					r2 = new Real2(lastX, lastY + dd[0]);
-				}
+		while (hasNumber()) {
+			double[] dd = readDoubles(1);
+			if (isHorizontal(t)) {
+				addLine(offsetX(t, dd[0]), currentY);
 			} else {
-				if (isHorizontal(t)) {
-					r2 = new Real2(dd[0], currentPoint.getY());
-				} else {
-					r2 = new Real2(lastX, dd[0]);
-				}
-			} 
-			SVGPathPrimitive pp = new LinePrimitive(r2);
-			primitiveList.add(pp);
-			lastPrimitive = pp;
-			currentPoint = r2;
+				addLine(currentX, offsetY(t, dd[0]));
+			}
 		}
-		return itok;
 	}
 
 	/**
@@ -298,29 +306,24 @@ H (absolute)
 h (relative)	horizontal lineto	x+	Draws a horizontal line from the current point (cpx, cpy) to (x, cpy). H (uppercase) indicates that absolute coordinates will follow; h (lowercase) indicates that relative coordinates will follow. Multiple x values can be provided (although usually this doesn't make sense). At the end of the command, the new current point becomes (x, cpy) for the final value of x.
 V (absolute)
 v (relative)	vertical lineto	y+	Draws a vertical line from the current point (cpx, cpy) to (cpx, y). V (uppercase) indicates that absolute coordinates will follow; v (lowercase) indicates that relative coordinates will follow. Multiple y values can be provided (although usually this doesn't make sense). At the end of the command, the new current point becomes (cpx, y) for the final value of y.
-	 * @param itok
 	 * @param t
-	 * @return
 	 */
-	private int addLinePrimitives(int itok, char t) {
-		while (isCoordinate(tokenList, itok)) {
-			double[] dd = readDoubles(tokenList, 2, itok);
-			Real2 r2 = new Real2(dd[0], dd[1]);
-			itok += 2;
+	private void addLinePrimitives(char t) {
+		while (hasNumber()) {
+			double[] dd = readDoubles(2);
 			if (isRelative(t)) {
 				checkExistingFirstXY(t);
-				r2 = r2.plus(currentPoint);
 			}
-			SVGPathPrimitive pp = new LinePrimitive(r2);
-			primitiveList.add(pp);
-			lastPrimitive = pp;
-			currentPoint = r2;
+			addLine(offsetX(t, dd[0]), offsetY(t, dd[1]));
 		}
-		LOG.trace(">l>"+primitiveList);
-		return itok;
 	}
 
-	private int addMovePrimitives(int itok, char t) {
+	private void addLine(double x, double y) {
+		packed.addLine(x, y);
+		setCurrentPoint(PackedPathPrimitiveList.LINE, x, y);
+	}
+
+	private void addMovePrimitives(char t) {
 		/*
 M (absolute)
 m (relative)	
@@ -333,23 +336,40 @@ then it is treated as a pair of absolute coordinates. In this case, subsequent p
 treated as relative even though the initial moveto is interpreted as an absolute moveto.
  */
 		int count = 0;
-		while (isCoordinate(tokenList, itok)) {
-			double[] dd = readDoubles(tokenList, 2, itok);
-			itok += 2;
-			Real2 r2 = new Real2(dd[0], dd[1]);
-			if (currentPoint != null && isRelative(t)) {
-				r2 = r2.plus(currentPoint);
+		while (hasNumber()) {
+			double[] dd = readDoubles(2);
+			double x = dd[0];
+			double y = dd[1];
+			if (hasCurrentPoint && isRelative(t)) {
+				x += currentX;
+				y += currentY;
 			}
 			if (count == 0) {
-				firstPoint= r2;
+				hasFirstPoint = true;
+				firstX = x;
+				firstY = y;
+				packed.addMove(x, y);
+				setCurrentPoint(PackedPathPrimitiveList.MOVE, x, y);
+			} else {
+				addLine(x, y);
 			}
-			SVGPathPrimitive pp = (count == 0) ? new MovePrimitive(r2) : new LinePrimitive(r2);
-			primitiveList.add(pp);
-			lastPrimitive = pp;
-			currentPoint = r2;
 			count++;
 		}
-		return itok;
+	}
+
+	private void setCurrentPoint(byte opcode, double x, double y) {
+		hasCurrentPoint = true;
+		currentX = x;
+		currentY = y;
+		lastOpcode = opcode;
+	}
+
+	private double offsetX(char t, double x) {
+		return isRelative(t) ? x + currentX : x;
+	}
+
+	private double offsetY(char t, double y) {
+		return isRelative(t) ? y + currentY : y;
 	}
 
 	private static boolean isArc(char t) {
@@ -405,82 +425,174 @@ treated as relative even though the initial moveto is interpreted as an absolute
 	}
 
 	private void checkExistingFirstXY(char t) {
-		if (firstPoint == null) {
+		if (!hasFirstPoint) {
 			LOG.error("M/m or absolute must be first in path; found "+t+" in "+d);
 		}
 	}
 
-	private static boolean isCoordinate(List<String> tokenList, int itok) {
-		return itok < tokenList.size() && !Character.isAlphabetic(tokenList.get(itok).charAt(0));
+	private static boolean isCommand(char c) {
+		return "MmZzLlHhVvCcSsQqTtAa".indexOf(c) != -1;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
 	}
 
-	private static Real2Array readReal2Array(List<String> tokenList, int ntoread, int itok) {
-		double[] dd = readDoubles(tokenList, ntoread, itok);
-		return Real2Array.createFromPairs(new RealArray(dd));
+	private static boolean isSeparator(char c) {
+		return c == ',' || Character.isWhitespace(c);
 	}
 
-	private static double[] readDoubles(List<String> tokenList, int ntoread, int itok) {
-		if (itok + ntoread > tokenList.size()) {
-			throw new RuntimeException("Ran out of tokens at "+itok+" wanted "+ntoread);
+	private void skipSeparators() {
+		while (pos < length && isSeparator(d.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	/** skips separators and checks whether a command letter follows.
+	 * 
+	 * @return false at end of string
+	 * @throws RuntimeException if a character other than a command is found
+	 */
+	private boolean hasMoreCommands() {
+		skipSeparators();
+		if (pos >= length) {
+			return false;
 		}
-		double[] dd = new double[ntoread];
+		char c = d.charAt(pos);
+		if (!isCommand(c)) {
+			throw new RuntimeException("Unknown character in dString: "+c+" at "+pos+" ("+context(pos)+") path: "+d);
+		}
+		return true;
+	}
+
+	/** skips separators and checks whether a number follows.
+	 * 
+	 * @return true if next character can start a number
+	 */
+	private boolean hasNumber() {
+		skipSeparators();
+		if (pos >= length) {
+			return false;
+		}
+		char c = d.charAt(pos);
+		return isDigit(c) || c == '-' || c == '+' || c == '.';
+	}
+
+	/** reads numbers into the reusable buffer.
+	 * 
+	 * @param ntoread
+	 * @return buffer (valid until the next call)
+	 */
+	private double[] readDoubles(int ntoread) {
 		for (int i = 0; i < ntoread; i++) {
-			Double d = null;
-			String token = null;
-			try {
-				token = tokenList.get(itok + i);
-				dd[i] = Double.valueOf(token);
-			} catch (Exception e) {
-				throw new RuntimeException("Cannot parse as double ("+token+") at : "+itok+i);
+			if (!hasNumber()) {
+				throw new RuntimeException("Ran out of numbers at "+pos+" ("+context(pos)+") wanted "+ntoread+" in "+d);
 			}
+			buffer[i] = readNumber();
 		}
-		return dd;
-	}
-
-	private static List<String> extractTokenList(String d) {
-		List<String> tokenList = new ArrayList<String>();
-		int numberStart = -1;
-		for (int i = 0; i < d.length(); i++) {
-			char c = d.charAt(i);
-			if (Character.isWhitespace(c) ||c == ',') {
-				String token = getCurrentNumber(d, tokenList, numberStart, i);
-				addToken(tokenList, token);
-				numberStart = -1;
-			} else if (Character.isDigit(c) || c == '+' || c == '-' || c == '.') {
-				if (numberStart == -1) {
-					numberStart = i;
-				}
-			} else if ("EeDd".indexOf(c) != -1) {  // floats
-				LOG.trace("processed E-notation");
-			} else if ("mMcClLqQhHvHZz".indexOf(c) != -1) {
-				String token = getCurrentNumber(d, tokenList, numberStart, i);
-				addToken(tokenList, token);
-				token = String.valueOf(c);
-				addToken(tokenList, token);
-				numberStart = -1;
+		return buffer;
+	}
+
+	/** reads an SVG number at the current position.
+	 * 
+	 * number: [+-]? (digits [. digits?] | . digits) ([eE] [+-]? digits)?
+	 * 
+	 * Adjacent numbers need not be separated ("1-2" and ".5.5" are each two numbers).
+	 * Mantissas of up to 15 significant digits with exponents within +-22 are converted exactly
+	 * (one correctly rounded multiply or divide), giving the same value as Double.parseDouble;
+	 * others fall back to Double.parseDouble.
+	 * 
+	 * @return value
+	 */
+	private double readNumber() {
+		int start = pos;
+		boolean negative = false;
+		char c = d.charAt(pos);
+		if (c == '+' || c == '-') {
+			negative = (c == '-');
+			pos++;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		boolean truncated = false;
+		while (pos < length && isDigit(c = d.charAt(pos))) {
+			hasDigits = true;
+			if (significantDigits < MAX_LONG_DIGITS) {
+				mantissa = 10 * mantissa + (c - '0');
+				significantDigits += (mantissa == 0) ? 0 : 1;
 			} else {
-				throw new RuntimeException("Unknown character in dString: "+c+" path: "+d);
+				exponent++;
+				truncated = true;
 			}
+			pos++;
+		}
+		if (pos < length && d.charAt(pos) == '.') {
+			pos++;
+			while (pos < length && isDigit(c = d.charAt(pos))) {
+				hasDigits = true;
+				if (significantDigits < MAX_LONG_DIGITS) {
+					mantissa = 10 * mantissa + (c - '0');
+					significantDigits += (mantissa == 0) ? 0 : 1;
+					exponent--;
+				} else {
+					truncated = true;
+				}
+				pos++;
+			}
+		}
+		if (!hasDigits) {
+			throw new RuntimeException("Cannot parse as double at : "+start+" ("+context(start)+") in "+d);
 		}
-		String token = getCurrentNumber(d, tokenList, numberStart, d.length());
-		addToken(tokenList, token);
-		LOG.trace(tokenList);
-		return tokenList;
+		exponent += readExponent();
+		double value;
+		if (!truncated && significantDigits <= MAX_FAST_DIGITS &&
+				exponent >= -(POWERS_OF_TEN.length - 1) && exponent <= POWERS_OF_TEN.length - 1) {
+			value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+			value = negative ? -value : value;
+		} else {
+			// rare (e.g. 17-digit output of Double.toString())
+			value = Double.parseDouble(d.substring(start, pos));
+		}
+		return value;
 	}
 
-	private static void addToken(List<String> tokenList, String token) {
-		if (token != null) {
-			tokenList.add(token);
+	/** reads optional exponent; leaves position unchanged if 'e' is not followed by digits.
+	 * 
+	 * @return exponent or 0
+	 */
+	private int readExponent() {
+		int exponent = 0;
+		if (pos < length && (d.charAt(pos) == 'e' || d.charAt(pos) == 'E')) {
+			int save = pos;
+			pos++;
+			boolean negative = false;
+			if (pos < length && (d.charAt(pos) == '+' || d.charAt(pos) == '-')) {
+				negative = d.charAt(pos) == '-';
+				pos++;
+			}
+			if (pos < length && isDigit(d.charAt(pos))) {
+				while (pos < length && isDigit(d.charAt(pos))) {
+					// clamp absurd exponents; they will fall back to Double.parseDouble
+					exponent = Math.min(10 * exponent + (d.charAt(pos) - '0'), 100000);
+					pos++;
+				}
+				exponent = negative ? -exponent : exponent;
+			} else {
+				pos = save;
+			}
 		}
+		return exponent;
 	}
 
-	private static String getCurrentNumber(
-			String d, List<String> tokenList, int numberStart, int i) {
-		String token = null;
-		if (numberStart != -1) {
-			token = d.substring(numberStart, i);
-		}
-		return  token;
+	/** short excerpt of d around position for error messages.
+	 * 
+	 * @param p
+	 * @return
+	 */
+	private String context(int p) {
+		return d.substring(Math.max(0, p - 20), Math.min(length, p + 20));
 	}
 
 }
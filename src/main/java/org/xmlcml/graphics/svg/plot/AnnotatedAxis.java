@@ -167,7 +167,7 @@ public class AnnotatedAxis {
 			LOG.error("null axisTickBox :"+this);
 		} else if (axisTickBox.getTickLines() != null && axisTickBox.getTickLines().size() > 0) {
 			Real2Range bbox = singleLine.getBoundingBox();
-			range = (lineDirection.isHorizontal()) ? bbox.getXRange() : bbox.getYRange();
+			range = new RealRange((lineDirection.isHorizontal()) ? bbox.getXRange() : bbox.getYRange());
 			range.format(decimalPlaces());
 			// assume sorted - we'll need to add sort later
 			Real2Range tick2Range = SVGLine.getReal2Range(axisTickBox.getTickLines());
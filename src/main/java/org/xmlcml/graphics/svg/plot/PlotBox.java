@@ -91,6 +91,104 @@ public class PlotBox {
 			this.title = title;
 		}
 	}
+	/** stages of readAndCreateCSVPlot() in order; used by PlotPipeline.
+	 * 
+	 * each returns a count of what it made, for profiling.
+	 */
+	public enum Stage implements PlotStage {
+		/** SVGStore; counts horizontal and vertical lines */
+		READ_GRAPHICS {
+			public int process(PlotBox plotBox) {
+				plotBox.readGraphicsElements();
+				return size(plotBox.svgStore.getHorizontalLines()) + size(plotBox.svgStore.getVerticalLines());
+			}
+		},
+		/** counts axes with tick boxes */
+		MAKE_TICK_BOXES {
+			public int process(PlotBox plotBox) {
+				plotBox.makeAxialTickBoxesAndPopulateContents();
+				int count = 0;
+				for (AnnotatedAxis axis : plotBox.axisArray) {
+					count += axis.getAxisTickBox() == null ? 0 : 1;
+				}
+				return count;
+			}
+		},
+		/** counts axes with ranges */
+		MAKE_RANGES {
+			public int process(PlotBox plotBox) {
+				plotBox.makeRangesForAxes();
+				int count = 0;
+				for (AnnotatedAxis axis : plotBox.axisArray) {
+					count += axis.getRange() == null ? 0 : 1;
+				}
+				return count;
+			}
+		},
+		/** counts axes with scale texts */
+		MAKE_SCALES {
+			public int process(PlotBox plotBox) {
+				plotBox.extractScaleTextsAndMakeScales();
+				int count = 0;
+				for (AnnotatedAxis axis : plotBox.axisArray) {
+					count += axis.getValueTextBox() == null ? 0 : 1;
+				}
+				return count;
+			}
+		},
+		/** counts axes */
+		MAKE_TITLES {
+			public int process(PlotBox plotBox) {
+				plotBox.extractTitleTextsAndMakeTitles();
+				return plotBox.axisArray.length;
+			}
+		},
+		/** counts screen points */
+		EXTRACT_POINTS {
+			public int process(PlotBox plotBox) {
+				plotBox.extractDataScreenPoints();
+				return size(plotBox.screenXYs);
+			}
+		},
+		/** counts scaled points (0 if axes could not be scaled) */
+		SCALE_POINTS {
+			public int process(PlotBox plotBox) {
+				plotBox.scaleDataPointsToValues();
+				return size(plotBox.scaledXYs);
+			}
+		},
+		/** counts CSV rows */
+		CREATE_CSV {
+			public int process(PlotBox plotBox) {
+				plotBox.createCSVContent();
+				return size(plotBox.scaledXYs);
+			}
+		},
+		/** writes to svgOutFile if set; counts files */
+		WRITE_SVG {
+			public int process(PlotBox plotBox) {
+				plotBox.writeProcessedSVG(plotBox.svgOutFile);
+				return plotBox.svgOutFile == null ? 0 : 1;
+			}
+		},
+		/** writes to csvOutFile if set; counts files */
+		WRITE_CSV {
+			public int process(PlotBox plotBox) {
+				plotBox.writeCSV(plotBox.csvOutFile);
+				return plotBox.csvOutFile == null ? 0 : 1;
+			}
+		},
+		;
+		public String getName() {
+			return name();
+		}
+		private static int size(List<?> list) {
+			return list == null ? 0 : list.size();
+		}
+		private static int size(Real2Array array) {
+			return array == null ? 0 : array.size();
+		}
+	}
 
 	static final String MINOR_CHAR = "i";
 	static final String MAJOR_CHAR = "I";
@@ -109,6 +207,8 @@ public class PlotBox {
 	private File csvOutFile;
 	private SVGStore svgStore;
 	private String fileRoot;
+	private SVGElement inputSVGElement;
+	private boolean copyInput = true;
 		
 
 	public SVGStore getSVGStore() {
@@ -174,19 +274,24 @@ public class PlotBox {
 		}
 	}
 
+	/** runs all stages (PlotPipeline.createDefaultPipeline()).
+	 * 
+	 * use a PlotPipeline to omit stages, avoid file output or time the stages.
+	 * 
+	 * @param svgElement
+	 */
 	public void readAndCreateCSVPlot(SVGElement svgElement) {
+		PlotPipeline.createDefaultPipeline().run(this, svgElement);
+	}
+
+	private void readGraphicsElements() {
+		if (inputSVGElement == null) {
+			throw new RuntimeException("Null svgElement");
+		}
 		svgStore = new SVGStore(this);
 		svgStore.setFileRoot(fileRoot);
-		svgStore.readGraphicsElements(svgElement);
-		makeAxialTickBoxesAndPopulateContents();
-		makeRangesForAxes();
-		extractScaleTextsAndMakeScales();
-		extractTitleTextsAndMakeTitles();
-		extractDataScreenPoints();
-		scaleDataPointsToValues();
-		createCSVContent();
-		writeProcessedSVG(svgOutFile);
-		writeCSV(csvOutFile);
+		svgStore.setCopyInput(copyInput);
+		svgStore.readGraphicsElements(inputSVGElement);
 	}
 
 
@@ -391,11 +496,15 @@ public class PlotBox {
 	
 	// static methods
 	
+	/** writes the store and axes; coordinates are rounded to ndecimal as they are written.
+	 * 
+	 * @param file
+	 */
 	public void writeProcessedSVG(File file) {
 		if (file != null) {
 			SVGElement processedSVGElement = svgStore.createSVGElement();
 			processedSVGElement.appendChild(copyAnnotatedAxes());
-			SVGSVG.wrapAndWriteAsSVG(processedSVGElement, file);
+			SVGSVG.wrapAndWriteAsSVG(processedSVGElement, file, 800.0, 700.0, ndecimal);
 		}
 	}
 	
@@ -419,5 +528,49 @@ public class PlotBox {
 		this.csvOutFile = csvOutFile;
 	}
 
+	/** data points in screen coordinates (after EXTRACT_POINTS).
+	 * 
+	 * @return
+	 */
+	public Real2Array getScreenXYs() {
+		return screenXYs;
+	}
+
+	/** data points in user coordinates (after SCALE_POINTS); null if the axes could not be scaled.
+	 * 
+	 * @return
+	 */
+	public Real2Array getScaledXYs() {
+		return scaledXYs;
+	}
+
+	public String getFileRoot() {
+		return fileRoot;
+	}
+
+	public void setFileRoot(String fileRoot) {
+		this.fileRoot = fileRoot;
+	}
+
+	/** input to READ_GRAPHICS; normally set by PlotPipeline.
+	 * 
+	 * @param svgElement
+	 */
+	public void setInputSVGElement(SVGElement svgElement) {
+		this.inputSVGElement = svgElement;
+	}
+
+	/** passed to SVGStore.setCopyInput().
+	 * 
+	 * @param copyInput default true; false if the input element is not used elsewhere
+	 */
+	public void setCopyInput(boolean copyInput) {
+		this.copyInput = copyInput;
+	}
+
+	public boolean isCopyInput() {
+		return copyInput;
+	}
+
 
 }
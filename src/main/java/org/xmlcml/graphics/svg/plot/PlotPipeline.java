@@ -0,0 +1,257 @@
+package org.xmlcml.graphics.svg.plot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGUtil;
+
+/** runs a configurable sequence of PlotStages over plots and records where the time goes.
+ *
+ * <p>The default pipeline is the sequence of PlotBox.readAndCreateCSVPlot(). Stages can be
+ * removed (e.g. the file writes, see createInMemoryPipeline()) or replaced. Time and item
+ * counts are accumulated per stage over all runs, so one pipeline can profile a whole batch.</p>
+ *
+ * <pre>
+ *   PlotPipeline pipeline = PlotPipeline.createInMemoryPipeline();
+ *   for (File file : files) {
+ *     PlotBox plotBox = pipeline.run(file);
+ *     String csv = plotBox.getCSV();
+ *   }
+ *   LOG.debug(pipeline.getReport());
+ * </pre>
+ *
+ * <p>A PlotBox which has been through some stages can be taken further with run(plotBox),
+ * for example after changing axis settings, without re-reading the graphics.</p>
+ *
+ * Not thread-safe; use one pipeline per thread and merge reports if needed.
+ *
+ * @author pm286
+ *
+ */
+public class PlotPipeline {
+
+	private static final Logger LOG = Logger.getLogger(PlotPipeline.class);
+
+	private List<PlotStage> stageList;
+	private Map<String, Long> stageNanos;
+	private Map<String, Long> stageCounts;
+	private int runCount;
+	private int failedRunCount;
+
+	/** empty pipeline; add stages with addStage().
+	 */
+	public PlotPipeline() {
+		stageList = new ArrayList<PlotStage>();
+		resetCounts();
+	}
+
+	/** all stages of PlotBox.readAndCreateCSVPlot() including writing SVG and CSV
+	 * (if the PlotBox has output files).
+	 *
+	 * @return
+	 */
+	public static PlotPipeline createDefaultPipeline() {
+		PlotPipeline pipeline = new PlotPipeline();
+		pipeline.addStages(Arrays.<PlotStage>asList(PlotBox.Stage.values()));
+		return pipeline;
+	}
+
+	/** default pipeline without WRITE_SVG and WRITE_CSV; results are read from the PlotBox
+	 * (getCSV(), getScaledXYs()).
+	 *
+	 * @return
+	 */
+	public static PlotPipeline createInMemoryPipeline() {
+		PlotPipeline pipeline = createDefaultPipeline();
+		pipeline.removeStage(PlotBox.Stage.WRITE_SVG);
+		pipeline.removeStage(PlotBox.Stage.WRITE_CSV);
+		return pipeline;
+	}
+
+	public PlotPipeline addStage(PlotStage stage) {
+		if (stage == null) {
+			throw new RuntimeException("Null stage");
+		}
+		for (PlotStage stage0 : stageList) {
+			if (stage0.getName().equals(stage.getName())) {
+				throw new RuntimeException("Duplicate stage name: "+stage.getName());
+			}
+		}
+		stageList.add(stage);
+		return this;
+	}
+
+	public PlotPipeline addStages(List<? extends PlotStage> stages) {
+		for (PlotStage stage : stages) {
+			addStage(stage);
+		}
+		return this;
+	}
+
+	/**
+	 * @param stage
+	 * @return true if stage was in pipeline
+	 */
+	public boolean removeStage(PlotStage stage) {
+		return stageList.remove(stage);
+	}
+
+	/** stages in order; may be modified.
+	 *
+	 * @return
+	 */
+	public List<PlotStage> getStages() {
+		return stageList;
+	}
+
+	/** reads and processes a plot file.
+	 *
+	 * the parsed element is not used elsewhere so is not copied by SVGStore.
+	 *
+	 * @param file
+	 * @return new PlotBox with results
+	 */
+	public PlotBox run(File file) {
+		if (file == null) {
+			throw new RuntimeException("Null input file");
+		}
+		SVGElement svgElement = null;
+		InputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			svgElement = SVGUtil.parseToSVGElement(inputStream);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read "+file, e);
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+		PlotBox plotBox = new PlotBox();
+		plotBox.setFileRoot(FilenameUtils.getName(file.toString()));
+		plotBox.setCopyInput(false);
+		run(plotBox, svgElement);
+		return plotBox;
+	}
+
+	/**
+	 * @param svgElement (copied before modification)
+	 * @return new PlotBox with results
+	 */
+	public PlotBox run(SVGElement svgElement) {
+		PlotBox plotBox = new PlotBox();
+		run(plotBox, svgElement);
+		return plotBox;
+	}
+
+	/** processes svgElement with a configured plotBox (output files, ndecimal, etc.).
+	 *
+	 * @param plotBox
+	 * @param svgElement
+	 */
+	public void run(PlotBox plotBox, SVGElement svgElement) {
+		if (svgElement == null) {
+			throw new RuntimeException("Null svgElement");
+		}
+		plotBox.setInputSVGElement(svgElement);
+		run(plotBox);
+	}
+
+	/** runs all stages on plotBox (which holds the input and the results of any earlier stages).
+	 *
+	 * if a stage fails the run is counted as failed and the exception rethrown.
+	 * @param plotBox
+	 */
+	public void run(PlotBox plotBox) {
+		runCount++;
+		for (PlotStage stage : stageList) {
+			String name = stage.getName();
+			long start = System.nanoTime();
+			int count = 0;
+			try {
+				count = stage.process(plotBox);
+			} catch (RuntimeException e) {
+				failedRunCount++;
+				LOG.debug("failed in stage "+name+": "+e);
+				throw e;
+			} finally {
+				addTo(stageNanos, name, System.nanoTime() - start);
+				addTo(stageCounts, name, count);
+			}
+		}
+	}
+
+	private static void addTo(Map<String, Long> map, String name, long value) {
+		Long total = map.get(name);
+		map.put(name, (total == null ? 0L : total) + value);
+	}
+
+	/** total time in each stage over all runs.
+	 *
+	 * @return stage names in order of first execution
+	 */
+	public Map<String, Long> getStageMillis() {
+		Map<String, Long> stageMillis = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, Long> entry : stageNanos.entrySet()) {
+			stageMillis.put(entry.getKey(), entry.getValue() / 1000000L);
+		}
+		return stageMillis;
+	}
+
+	public Map<String, Long> getStageNanos() {
+		return stageNanos;
+	}
+
+	/** total items returned by each stage over all runs (e.g. points extracted).
+	 *
+	 * @return
+	 */
+	public Map<String, Long> getStageCounts() {
+		return stageCounts;
+	}
+
+	public int getRunCount() {
+		return runCount;
+	}
+
+	public int getFailedRunCount() {
+		return failedRunCount;
+	}
+
+	/** one line per stage: total ms, mean ms per run, percentage of total, item count.
+	 *
+	 * @return
+	 */
+	public String getReport() {
+		long totalNanos = 0;
+		for (Long nanos : stageNanos.values()) {
+			totalNanos += nanos;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(runCount+" runs ("+failedRunCount+" failed) in "+(totalNanos / 1000000L)+" ms\n");
+		for (Map.Entry<String, Long> entry : stageNanos.entrySet()) {
+			String name = entry.getKey();
+			long nanos = entry.getValue();
+			sb.append(String.format("%-20s %8d ms %10.3f ms/run %5.1f%% %10d items\n", name, nanos / 1000000L,
+				runCount == 0 ? 0.0 : nanos / 1.0e6 / runCount,
+				totalNanos == 0 ? 0.0 : 100.0 * nanos / totalNanos, stageCounts.get(name)));
+		}
+		return sb.toString();
+	}
+
+	public void resetCounts() {
+		stageNanos = new LinkedHashMap<String, Long>();
+		stageCounts = new LinkedHashMap<String, Long>();
+		runCount = 0;
+		failedRunCount = 0;
+	}
+}
@@ -0,0 +1,25 @@
+package org.xmlcml.graphics.svg.plot;
+
+/** one step of a PlotPipeline.
+ *
+ * The standard steps are in PlotBox.Stage; custom stages can be added, replaced or omitted.
+ * Stages communicate through the PlotBox they are given.
+ *
+ * @author pm286
+ *
+ */
+public interface PlotStage {
+
+	/** name used for timing and counts; must be unique in a pipeline.
+	 *
+	 * @return
+	 */
+	String getName();
+
+	/** runs the stage.
+	 *
+	 * @param plotBox result of earlier stages
+	 * @return number of items made or found (e.g. lines, points) for the pipeline counts
+	 */
+	int process(PlotBox plotBox);
+}
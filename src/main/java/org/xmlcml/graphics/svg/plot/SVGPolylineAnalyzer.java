@@ -27,9 +27,8 @@ import org.xmlcml.graphics.svg.SVGPoly;
 import org.xmlcml.graphics.svg.SVGPolyline;
 import org.xmlcml.graphics.svg.SVGSVG;
 import org.xmlcml.graphics.svg.SVGUtil;
-import org.xmlcml.graphics.svg.linestuff.BoundingBoxManager;
-import org.xmlcml.graphics.svg.linestuff.BoundingBoxManager.BoxEdge;
 import org.xmlcml.graphics.svg.linestuff.ComplexLine.LineOrientation;
+import org.xmlcml.graphics.svg.linestuff.PolylineJoiner;
 import org.xmlcml.graphics.svg.util.GraphUtil;
 import org.xmlcml.stml.STMLArray;
 
@@ -123,7 +122,6 @@ public class SVGPolylineAnalyzer {
 			} else {
 				unorientedLineList.add(line);
 			}
-			line.format(PLACES);
 		}
 	}
 
@@ -362,7 +360,7 @@ public class SVGPolylineAnalyzer {
 		}
 	}
 	
-	/** sort polylines along X and Y coords and find common points to merge lines
+	/** make polylines monotonic along X (then Y) and join them where last point meets first point
 	 *  replace joined lines by common new line
 	 */
 	public void mergePolylinesAtContiguousEndPoints(double eps) {
@@ -373,52 +371,21 @@ public class SVGPolylineAnalyzer {
 	}
 
 	private void mergePolylinesAtContigousEndPoints(Axis2 axis, double eps) {
-		while (true) {
-			List<SVGElement> polylines0 = SVGUtil.getQuerySVGElements(svgg, ".//svg:polyline");
-			LOG.trace("POL "+polylines0.size());
-			List<SVGElement> polylines = SVGUtil.getQuerySVGElements(svgg, ".//svg:polyline[not(@"+MERGED+")]");
-			if (polylines.size() == 0) {
-				break;
-			}
-			mergePolylinesAtContiguousPoints(axis, eps, polylines);
-		}
-	}
-
-	private void mergePolylinesAtContiguousPoints(Axis2 axis, double eps, List<SVGElement> polylines) {
+		List<SVGElement> polylines = SVGUtil.getQuerySVGElements(svgg, ".//svg:polyline[not(@"+MERGED+")]");
+		LOG.trace("POL "+polylines.size());
 		// will modify all polylines so they are monotonic increasing
-		List<SVGPolyline> polylinesXIncreasing = getNormalizedMonotonicity(polylines, Monotonicity.INCREASING, axis);
-		BoxEdge boxEdge = (Axis2.X.equals(axis)) ? BoxEdge.XMIN : BoxEdge.YMIN;
-		List<SVGElement> sortedPolylines = BoundingBoxManager.getElementsSortedByEdge(polylinesXIncreasing, boxEdge);
-		for (SVGElement pp : sortedPolylines) {
-			SVGPoly p = (SVGPoly) pp;
-			LOG.trace(String.valueOf(p.getFirst())+" ==> "+p.getLast());
-		}
-		SVGPolyline newPolyline = null;
-		Real2 lastXY = null;
-		for (int i = 0; i < sortedPolylines.size(); i++) {
-			SVGPoly polyline = (SVGPoly) sortedPolylines.get(i);
-			if (newPolyline == null) {
-				newPolyline = new SVGPolyline(polyline);
-				polyline.getParent().replaceChild(polyline, newPolyline);
-				newPolyline.addAttribute(new Attribute(MERGED, "true"));
-			} else {
-				Real2 firstXY = polyline.getFirst();
-				double delta = (axis.equals(Axis2.X)) ? 
-						firstXY.getX() - lastXY.getX() : firstXY.getY() - lastXY.getY(); 
-				if (delta > eps) { // no remaining lines in range
-					break;
-				} else if (delta < -eps) {
-					// else skip overlapping lines
-				} else if (firstXY.getDistance(lastXY) < eps) {
-					newPolyline.appendIntoSingleLine(polyline, 1);
-					LOG.trace("SIZE: "+newPolyline.getPointList().size());
-					polyline.detach();
-				}
+		List<SVGPolyline> polylinesIncreasing = getNormalizedMonotonicity(polylines, Monotonicity.INCREASING, axis);
+		List<List<SVGPolyline>> chains = new PolylineJoiner(eps).createChains(polylinesIncreasing);
+		for (List<SVGPolyline> chain : chains) {
+			SVGPolyline polyline = chain.get(0);
+			SVGPolyline newPolyline = PolylineJoiner.createJoinedPolyline(chain);
+			polyline.getParent().replaceChild(polyline, newPolyline);
+			for (int i = 1; i < chain.size(); i++) {
+				chain.get(i).detach();
 			}
-			lastXY = newPolyline.getLast();
+			newPolyline.addAttribute(new Attribute(MERGED, "true"));
+			LOG.trace("new points "+newPolyline.getPointList().size());
 		}
-		LOG.trace("new points "+newPolyline.getPointList().size());
-//		newPolyline.debug("NEW POLY");
 	}
 
 
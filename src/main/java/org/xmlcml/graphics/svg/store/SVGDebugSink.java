@@ -0,0 +1,108 @@
+package org.xmlcml.graphics.svg.store;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGSVG;
+
+/** destination for debug SVG written while processing (e.g. by SVGStore and the extractors).
+ *
+ * OFF (the default in SVGStore) discards everything; callers should check isActive() before
+ * building debug output so that no copies are made. MEMORY keeps the wrapped SVG keyed by the
+ * file it would have been written to. DISK writes files as SVGSVG.wrapAndWriteAsSVG().
+ *
+ * @author pm286
+ *
+ */
+public class SVGDebugSink {
+
+	private static final Logger LOG = Logger.getLogger(SVGDebugSink.class);
+
+	public enum DebugMode {
+		OFF,
+		MEMORY,
+		DISK,
+	}
+
+	private DebugMode mode;
+	private Map<File, SVGSVG> svgByFile;
+
+	public SVGDebugSink() {
+		this(DebugMode.OFF);
+	}
+
+	public SVGDebugSink(DebugMode mode) {
+		this.mode = (mode == null) ? DebugMode.OFF : mode;
+		this.svgByFile = Collections.synchronizedMap(new LinkedHashMap<File, SVGSVG>());
+	}
+
+	public DebugMode getMode() {
+		return mode;
+	}
+
+	/** true unless OFF.
+	 *
+	 * @return
+	 */
+	public boolean isActive() {
+		return !DebugMode.OFF.equals(mode);
+	}
+
+	/** writes list of elements (copied) wrapped in a g.
+	 *
+	 * @param elementList may be null
+	 * @param file
+	 */
+	public void write(List<? extends SVGElement> elementList, File file) {
+		if (isActive()) {
+			SVGG g = new SVGG();
+			if (elementList != null) {
+				for (SVGElement element : elementList) {
+					g.appendChild(element.copy());
+				}
+			}
+			writeElement(g, file);
+		}
+	}
+
+	/** writes element.
+	 *
+	 * in DISK mode the element is detached and wrapped (as SVGSVG.wrapAndWriteAsSVG());
+	 * in MEMORY mode a copy is kept.
+	 *
+	 * @param element
+	 * @param file
+	 */
+	public void write(SVGElement element, File file) {
+		if (isActive() && element != null) {
+			writeElement(DebugMode.MEMORY.equals(mode) ? (SVGElement) element.copy() : element, file);
+		}
+	}
+
+	private void writeElement(SVGElement element, File file) {
+		if (DebugMode.DISK.equals(mode)) {
+			SVGSVG.wrapAndWriteAsSVG(element, file);
+		} else {
+			svgByFile.put(file, SVGSVG.wrapAsSVG(element));
+		}
+		LOG.trace("debug: "+file);
+	}
+
+	/** debug SVG kept in MEMORY mode.
+	 *
+	 * @return files (not written) and their SVG, in order of writing
+	 */
+	public Map<File, SVGSVG> getSVGByFile() {
+		return svgByFile;
+	}
+
+	public void clear() {
+		svgByFile.clear();
+	}
+}
@@ -5,7 +5,9 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Level;
@@ -24,7 +26,6 @@ import org.xmlcml.graphics.svg.SVGLineList;
 import org.xmlcml.graphics.svg.SVGPath;
 import org.xmlcml.graphics.svg.SVGPolyline;
 import org.xmlcml.graphics.svg.SVGRect;
-import org.xmlcml.graphics.svg.SVGSVG;
 import org.xmlcml.graphics.svg.SVGText;
 import org.xmlcml.graphics.svg.SVGTitle;
 import org.xmlcml.graphics.svg.SVGUtil;
@@ -77,6 +78,10 @@ public class SVGStore {
 	private Real2Range textBox;
 	private Real2Range totalBox;
 
+	private boolean copyInput = true;
+	private SVGDebugSink debugSink = new SVGDebugSink();
+	private Map<String, Long> stageMillis;
+
 
 	/** this may change as we decide what types of object interact with store
 	 * 
@@ -102,21 +107,40 @@ public class SVGStore {
 		readGraphicsElements(svgElement);
 	}
 
+	/** runs the extraction pipeline.
+	 * 
+	 * the elapsed time of each stage is recorded (see getStageMillis())
+	 * 
+	 * @param svgElement copied unless setCopyInput(false)
+	 */
 	public void readGraphicsElements(SVGElement svgElement) {
 		if (svgElement != null) {
+			stageMillis = new LinkedHashMap<String, Long>();
+			long time = System.currentTimeMillis();
 			this.extractSVGComponents(svgElement);
+			time = recordStage("components", time);
 			this.createHorizontalAndVerticalLines();
+			time = recordStage("lines", time);
 			this.createHorizontalAndVerticalTexts();
+			time = recordStage("texts", time);
 			this.makeLongHorizontalAndVerticalEdges();
+			time = recordStage("edges", time);
 			this.makeFullLineBoxAndRanges();
+			recordStage("fullLineBox", time);
 		} else {
 			throw new RuntimeException("Null svgElement");
 		}
 	}
 
+	private long recordStage(String stage, long start) {
+		long time = System.currentTimeMillis();
+		stageMillis.put(stage, time - start);
+		return time;
+	}
+
 	private void extractSVGComponents(SVGElement svgElem) {
 		LOG.debug("********* made SVG components *********");
-		svgElement = (SVGElement) svgElem.copy();
+		svgElement = copyInput ? (SVGElement) svgElem.copy() : svgElem;
 		SVGG g;
 		SVGG gg = new SVGG();
 		
@@ -130,28 +154,32 @@ public class SVGStore {
 		this.pathExtractor = new PathExtractor(this);
 		this.pathExtractor.extractPaths(this.svgElement);
 		pathBox = pathExtractor.getBoundingBox();
-		g = this.pathExtractor.debug(pathDebug+this.fileRoot+".debug.svg");
-		g.appendChild(new SVGTitle("path"));
+		if (debugSink.isActive()) {
+			g = this.pathExtractor.debug(pathDebug+this.fileRoot+".debug.svg");
+			g.appendChild(new SVGTitle("path"));
 	//		gg.appendChild(g.copy());
-		
+		}
 	
 		this.textExtractor = new TextExtractor(this);
 		this.textExtractor.extractTexts(this.svgElement);
 		textBox = textExtractor.getBoundingBox();
-		g = this.textExtractor.debug(textDebug + this.fileRoot+".debug.svg");
-		g.appendChild(new SVGTitle("text"));
-		gg.appendChild(g.copy());
+		if (debugSink.isActive()) {
+			g = this.textExtractor.debug(textDebug + this.fileRoot+".debug.svg");
+			g.appendChild(new SVGTitle("text"));
+			gg.appendChild(g.copy());
+		}
 		
 		totalBox = textBox == null ? pathBox : textBox.plus(pathBox);
 	
 		this.shapeExtractor = new ShapeExtractor(this);
 		List<SVGPath> currentPathList = this.pathExtractor.getCurrentPathList();
 		this.shapeExtractor.extractShapes(currentPathList, svgElement);
-		g = this.shapeExtractor.debug(shapeDebug + fileRoot+".debug.svg");
-		g.appendChild(new SVGTitle("shape"));
-		gg.appendChild(g.copy());
-		
-		SVGSVG.wrapAndWriteAsSVG(gg, new File(plotDebug + fileRoot+".debug.svg"));
+		if (debugSink.isActive()) {
+			g = this.shapeExtractor.debug(shapeDebug + fileRoot+".debug.svg");
+			g.appendChild(new SVGTitle("shape"));
+			gg.appendChild(g.copy());
+			debugSink.write(gg, new File(plotDebug + fileRoot+".debug.svg"));
+		}
 	}
 
 	/** some plots have publisher cruft outside the limits, especially negative Y.
@@ -185,9 +213,9 @@ public class SVGStore {
 
 	public void createHorizontalAndVerticalLines() {
 		LOG.debug("********* make Horizontal/Vertical lines *********");
-		SVGSVG.wrapAndWriteAsSVG(horizontalLines, new File(debugRoot+fileRoot+".horiz0.svg"));
-		SVGSVG.wrapAndWriteAsSVG(verticalLines, new File(debugRoot+fileRoot+".vert0.svg"));
-		SVGSVG.wrapAndWriteAsSVG(svgElement, new File(debugRoot+fileRoot+".debug0.svg"));
+		debugSink.write(horizontalLines, new File(debugRoot+fileRoot+".horiz0.svg"));
+		debugSink.write(verticalLines, new File(debugRoot+fileRoot+".vert0.svg"));
+		debugSink.write(svgElement, new File(debugRoot+fileRoot+".debug0.svg"));
 		this.horizontalLines = SVGLine.findHorizontalOrVerticalLines(this.shapeExtractor.getLineList(), LineDirection.HORIZONTAL, AnnotatedAxis.EPS);
 		this.verticalLines = SVGLine.findHorizontalOrVerticalLines(this.shapeExtractor.getLineList(), LineDirection.VERTICAL, AnnotatedAxis.EPS);
 		List<SVGPolyline> polylineList = this.shapeExtractor.getPolylineList();
@@ -195,18 +223,20 @@ public class SVGStore {
 		for (int i = axialLShapes.size() - 1; i >= 0; i--) {
 			removeLShapesAndReplaceByLines(polylineList, axialLShapes.get(i));
 		}
-		SVGSVG.wrapAndWriteAsSVG(horizontalLines, new File(debugRoot+fileRoot+".horiz.svg"));
-		SVGSVG.wrapAndWriteAsSVG(verticalLines, new File(debugRoot+fileRoot+".vert.svg"));
-		List<SVGLine> allLines = new ArrayList<SVGLine>();
-		allLines.addAll(horizontalLines);
-		allLines.addAll(verticalLines);
-		SVGSVG.wrapAndWriteAsSVG(allLines, new File(debugRoot+fileRoot+".lines.svg"));
+		if (debugSink.isActive()) {
+			debugSink.write(horizontalLines, new File(debugRoot+fileRoot+".horiz.svg"));
+			debugSink.write(verticalLines, new File(debugRoot+fileRoot+".vert.svg"));
+			List<SVGLine> allLines = new ArrayList<SVGLine>();
+			allLines.addAll(horizontalLines);
+			allLines.addAll(verticalLines);
+			debugSink.write(allLines, new File(debugRoot+fileRoot+".lines.svg"));
+		}
 	}
 
 
 	private void removeLShapesAndReplaceByLines(List<SVGPolyline> polylineList, SVGPolyline axialLShape) {
 		LOG.debug("replacing LShapes by splitLines");
-		SVGSVG.wrapAndWriteAsSVG(polylineList, new File(debugRoot+fileRoot+".debug1.svg"));
+		debugSink.write(polylineList, new File(debugRoot+fileRoot+".debug1.svg"));
 		SVGLine vLine = axialLShape.getLineList().get(0);
 		svgElement.appendChild(vLine);
 		this.verticalLines.add(vLine);
@@ -215,7 +245,7 @@ public class SVGStore {
 		this.horizontalLines.add(hLine);
 		polylineList.remove(axialLShape);
 		axialLShape.detach();
-		SVGSVG.wrapAndWriteAsSVG(polylineList, new File(debugRoot+fileRoot+".debug2.svg"));
+		debugSink.write(polylineList, new File(debugRoot+fileRoot+".debug2.svg"));
 	}
 
 	public void createHorizontalAndVerticalTexts() {
@@ -239,8 +269,8 @@ public class SVGStore {
 			LOG.debug("LINES "+lineList);
 			this.longHorizontalEdgeLines = this.getSortedLinesCloseToEdge(this.horizontalLines, LineDirection.HORIZONTAL, lineBbox);
 			this.longVerticalEdgeLines = this.getSortedLinesCloseToEdge(this.verticalLines, LineDirection.VERTICAL, lineBbox);
-			SVGSVG.wrapAndWriteAsSVG(longHorizontalEdgeLines.getLineList(), new File(debugRoot+fileRoot+".horizEdges.svg"));
-			SVGSVG.wrapAndWriteAsSVG(longVerticalEdgeLines.getLineList(), new File(debugRoot+fileRoot+".vertEdges.svg"));
+			debugSink.write(longHorizontalEdgeLines.getLineList(), new File(debugRoot+fileRoot+".horizEdges.svg"));
+			debugSink.write(longVerticalEdgeLines.getLineList(), new File(debugRoot+fileRoot+".vertEdges.svg"));
 		}
 		return;
 	}
@@ -381,6 +411,43 @@ public class SVGStore {
 		return fileRoot;
 	}
 
+	/** copy the element passed to readGraphicsElements() before removing defs, empty texts, etc.
+	 * 
+	 * @param copyInput default true; set false if the caller does not reuse the element
+	 * (e.g. it was read only for this store), avoiding a deep copy of the page.
+	 */
+	public void setCopyInput(boolean copyInput) {
+		this.copyInput = copyInput;
+	}
+
+	public boolean isCopyInput() {
+		return copyInput;
+	}
+
+	/** where debug SVG is written.
+	 * 
+	 * @param debugMode OFF (default), MEMORY or DISK (files under target/)
+	 */
+	public void setDebugMode(SVGDebugSink.DebugMode debugMode) {
+		this.debugSink = new SVGDebugSink(debugMode);
+	}
+
+	public void setDebugSink(SVGDebugSink debugSink) {
+		this.debugSink = (debugSink == null) ? new SVGDebugSink() : debugSink;
+	}
+
+	public SVGDebugSink getDebugSink() {
+		return debugSink;
+	}
+
+	/** elapsed time of each stage of the last readGraphicsElements().
+	 * 
+	 * @return stage names (components, lines, texts, edges, fullLineBox) in order; null if not yet read
+	 */
+	public Map<String, Long> getStageMillis() {
+		return stageMillis;
+	}
+
 
 	public RealRange createRange(SVGLineList lines, Direction direction) {
 		RealRange hRange = null;
@@ -0,0 +1,186 @@
+package org.xmlcml.graphics.svg.store;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGStreamReader;
+import org.xmlcml.graphics.svg.util.DaemonThreadFactory;
+
+/** runs the SVGStore pipeline over many pages in parallel.
+ *
+ * Each page is read (single pass, SVGStreamReader) and processed by its own SVGStore
+ * (path, text and shape extraction, horizontal/vertical lines and texts, edges, full line box)
+ * on a fixed pool of worker threads. Pages are independent, so throughput scales with threads.
+ * <p>
+ * Results are returned in the order of the input files, with timings; a page that fails
+ * is reported in its result and does not stop the batch.
+ * <p>
+ * For large batches use setKeepStores(false) so that only the summary of each page is kept.
+ *
+ * <pre>
+ *   SVGStoreBatch batch = new SVGStoreBatch();
+ *   batch.setThreadCount(8);
+ *   batch.setKeepStores(false);
+ *   for (SVGStorePageResult result : batch.process(pageDir)) {
+ *       ...
+ *   }
+ * </pre>
+ *
+ * @author pm286
+ *
+ */
+public class SVGStoreBatch {
+
+	private static final Logger LOG = Logger.getLogger(SVGStoreBatch.class);
+
+	public static final String SVG_SUFFIX = "svg";
+
+	private static final FileFilter SVG_FILTER = new FileFilter() {
+		public boolean accept(File file) {
+			return file.isFile() && SVG_SUFFIX.equalsIgnoreCase(FilenameUtils.getExtension(file.getName()));
+		}
+	};
+
+	private int threadCount;
+	private boolean keepStores;
+	private SVGDebugSink.DebugMode debugMode;
+	private SVGStreamReader streamReader;
+	private long totalMillis;
+
+	public SVGStoreBatch() {
+		threadCount = Runtime.getRuntime().availableProcessors();
+		keepStores = true;
+		debugMode = SVGDebugSink.DebugMode.OFF;
+		streamReader = new SVGStreamReader();
+	}
+
+	/**
+	 * @param threadCount number of worker threads (default number of processors)
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1) {
+			throw new RuntimeException("threadCount must be positive: "+threadCount);
+		}
+		this.threadCount = threadCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * @param keepStores if false results hold only counts and timings (default true)
+	 */
+	public void setKeepStores(boolean keepStores) {
+		this.keepStores = keepStores;
+	}
+
+	public boolean isKeepStores() {
+		return keepStores;
+	}
+
+	/**
+	 * @param debugMode debug output of each store (default OFF)
+	 */
+	public void setDebugMode(SVGDebugSink.DebugMode debugMode) {
+		this.debugMode = debugMode;
+	}
+
+	public SVGDebugSink.DebugMode getDebugMode() {
+		return debugMode;
+	}
+
+	/** elapsed time of the last call to process().
+	 *
+	 * @return
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	/** processes all *.svg files in directory (in name order).
+	 *
+	 * @param dir
+	 * @return results in file order
+	 */
+	public List<SVGStorePageResult> process(File dir) {
+		if (dir == null || !dir.isDirectory()) {
+			throw new RuntimeException("not a directory: "+dir);
+		}
+		File[] files = dir.listFiles(SVG_FILTER);
+		Arrays.sort(files);
+		return process(Arrays.asList(files));
+	}
+
+	/** processes pages.
+	 *
+	 * @param files
+	 * @return results in order of files
+	 */
+	public List<SVGStorePageResult> process(List<File> files) {
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory("svgstore"));
+		List<SVGStorePageResult> results = new ArrayList<SVGStorePageResult>(files.size());
+		try {
+			List<Future<SVGStorePageResult>> futures = new ArrayList<Future<SVGStorePageResult>>(files.size());
+			for (final File file : files) {
+				futures.add(executor.submit(new Callable<SVGStorePageResult>() {
+					public SVGStorePageResult call() {
+						return processPage(file);
+					}
+				}));
+			}
+			for (Future<SVGStorePageResult> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("batch interrupted", e);
+		} catch (ExecutionException e) {
+			// processPage catches RuntimeExceptions so this is an Error
+			throw new RuntimeException("batch failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		totalMillis = System.currentTimeMillis() - start;
+		LOG.debug("processed "+files.size()+" pages on "+threadCount+" threads in "+totalMillis+" ms");
+		return results;
+	}
+
+	/** reads and processes a single page on the current thread.
+	 *
+	 * @param file
+	 * @return result (with exception if processing failed)
+	 */
+	public SVGStorePageResult processPage(File file) {
+		SVGStorePageResult result = new SVGStorePageResult(file);
+		long start = System.currentTimeMillis();
+		try {
+			SVGElement svgElement = streamReader.read(file);
+			result.setReadMillis(System.currentTimeMillis() - start);
+			SVGStore store = new SVGStore();
+			store.setFileRoot(FilenameUtils.getBaseName(file.getName()));
+			// element was read for this store only
+			store.setCopyInput(false);
+			store.setDebugMode(debugMode);
+			store.readGraphicsElements(svgElement);
+			result.setStore(store, keepStores);
+		} catch (RuntimeException e) {
+			LOG.error("cannot process "+file+": "+e);
+			result.setException(e);
+		}
+		result.setTotalMillis(System.currentTimeMillis() - start);
+		return result;
+	}
+}
@@ -0,0 +1,134 @@
+package org.xmlcml.graphics.svg.store;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/** result of processing one page in an SVGStoreBatch.
+ *
+ * holds the store (unless the batch discards stores), timings and any failure.
+ *
+ * @author pm286
+ *
+ */
+public class SVGStorePageResult {
+
+	private File file;
+	private SVGStore store;
+	private RuntimeException exception;
+	private long readMillis;
+	private long totalMillis;
+	private Map<String, Long> stageMillis;
+	private int horizontalLineCount;
+	private int verticalLineCount;
+	private int horizontalTextCount;
+	private int verticalTextCount;
+	private boolean hasFullLineBox;
+
+	SVGStorePageResult(File file) {
+		this.file = file;
+	}
+
+	void setStore(SVGStore store, boolean keepStore) {
+		this.stageMillis = store.getStageMillis();
+		this.horizontalLineCount = size(store.getHorizontalLines());
+		this.verticalLineCount = size(store.getVerticalLines());
+		this.horizontalTextCount = size(store.getHorizontalTexts());
+		this.verticalTextCount = size(store.getVerticalTexts());
+		this.hasFullLineBox = store.getFullLineBox() != null;
+		this.store = keepStore ? store : null;
+	}
+
+	private static int size(List<?> list) {
+		return list == null ? 0 : list.size();
+	}
+
+	void setException(RuntimeException exception) {
+		this.exception = exception;
+	}
+
+	void setReadMillis(long readMillis) {
+		this.readMillis = readMillis;
+	}
+
+	void setTotalMillis(long totalMillis) {
+		this.totalMillis = totalMillis;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return null if processing failed or the batch does not keep stores
+	 */
+	public SVGStore getStore() {
+		return store;
+	}
+
+	public boolean isOK() {
+		return exception == null;
+	}
+
+	/**
+	 * @return null if page was processed
+	 */
+	public RuntimeException getException() {
+		return exception;
+	}
+
+	/** time to read and parse the file.
+	 *
+	 * @return
+	 */
+	public long getReadMillis() {
+		return readMillis;
+	}
+
+	/** time to read and process the page.
+	 *
+	 * @return
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	/** time of each stage of the pipeline (see SVGStore.getStageMillis()).
+	 *
+	 * @return null if page was not processed
+	 */
+	public Map<String, Long> getStageMillis() {
+		return stageMillis;
+	}
+
+	public int getHorizontalLineCount() {
+		return horizontalLineCount;
+	}
+
+	public int getVerticalLineCount() {
+		return verticalLineCount;
+	}
+
+	public int getHorizontalTextCount() {
+		return horizontalTextCount;
+	}
+
+	public int getVerticalTextCount() {
+		return verticalTextCount;
+	}
+
+	public boolean hasFullLineBox() {
+		return hasFullLineBox;
+	}
+
+	public String toString() {
+		String s = file.getName()+": ";
+		if (exception != null) {
+			s += "FAILED "+exception.getMessage();
+		} else {
+			s += "lines "+horizontalLineCount+"/"+verticalLineCount+"; texts "+horizontalTextCount+"/"+verticalTextCount+
+					"; fullLineBox "+hasFullLineBox+"; "+totalMillis+" ms "+stageMillis;
+		}
+		return s;
+	}
+}
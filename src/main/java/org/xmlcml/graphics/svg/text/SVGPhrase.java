@@ -129,6 +129,17 @@ public class SVGPhrase extends SVGG {
 		return phrase;
 	}
 
+	/** creates phrases from characters in any order, horizontal or ROT90.
+	 * 
+	 * uses TextAssembler with default settings.
+	 * 
+	 * @param textList
+	 * @return horizontal phrases then ROT90 phrases, each in reading order
+	 */
+	public static List<SVGPhrase> createPhrasesFromUnorderedCharacters(List<SVGText> textList) {
+		return new TextAssembler().assemble(textList);
+	}
+
 	private static SVGPhrase extractHorizontalPhrase(List<SVGText> textList) {
 		SVGPhrase phrase;
 		phrase = new SVGPhrase();
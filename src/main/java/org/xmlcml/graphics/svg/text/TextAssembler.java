@@ -0,0 +1,302 @@
+package org.xmlcml.graphics.svg.text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Angle;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.SVGText;
+
+/** assembles single characters into words and phrases in any input order.
+ *
+ * <p>SVGPhrase.createPhraseFromCharacters() and SVGWord.canAppend() need characters already
+ * in reading order on a single line. Here each character is indexed in a grid keyed by
+ * direction, font size and baseline cell (baselineFactor * fontSize high); the cells are read in order
+ * to form lines, then each line is sorted along its reading direction and split into words
+ * (gap &gt; characterGapFactor * fontSize) and phrases (gap &gt; wordGapFactor * fontSize).
+ * Horizontal and ROT90 (upward reading) texts are handled in the same pass. The sorts make it O(n log n).</p>
+ *
+ * <p>Defaults follow SVGWord (0.3 and 0.1 of the font size). Characters with other rotations or
+ * without font size are not assembled and are available from getUnassembledTexts().</p>
+ *
+ * @author pm286
+ *
+ */
+public class TextAssembler {
+
+	private static final Logger LOG = Logger.getLogger(TextAssembler.class);
+
+	public static final double DEFAULT_BASELINE_FACTOR = 0.3;
+	public static final double DEFAULT_CHARACTER_GAP_FACTOR = 0.1;
+	public static final double DEFAULT_WORD_GAP_FACTOR = 1.5;
+
+	private static final double FONT_SIZE_SCALE = 10.0;
+	private static final double ANGLE_EPS = 0.01;
+
+	/** character with its coordinates in the reading frame.
+	 *
+	 * for ROT90 the baseline is x and the text reads up the page (start = -yMax).
+	 */
+	private static class Glyph {
+		SVGText text;
+		boolean rot90;
+		double fontSize;
+		double baseline;
+		double start;
+		double end;
+	}
+
+	/** direction and font size; cells of the grid are baselines within it.
+	 */
+	private static class GridKey implements Comparable<GridKey> {
+		boolean rot90;
+		int fontSize;
+
+		GridKey(boolean rot90, int fontSize) {
+			this.rot90 = rot90;
+			this.fontSize = fontSize;
+		}
+
+		public int compareTo(GridKey key) {
+			if (rot90 != key.rot90) {
+				return rot90 ? 1 : -1;
+			}
+			return fontSize - key.fontSize;
+		}
+	}
+
+	private final static Comparator<Glyph> BASELINE_COMPARATOR = new Comparator<Glyph>() {
+		public int compare(Glyph g0, Glyph g1) {
+			return Double.compare(g0.baseline, g1.baseline);
+		}
+	};
+
+	private final static Comparator<Glyph> START_COMPARATOR = new Comparator<Glyph>() {
+		public int compare(Glyph g0, Glyph g1) {
+			return Double.compare(g0.start, g1.start);
+		}
+	};
+
+	/** lines in reading order: horizontal before ROT90, then baseline, then start.
+	 */
+	private final static Comparator<List<Glyph>> LINE_COMPARATOR = new Comparator<List<Glyph>>() {
+		public int compare(List<Glyph> line0, List<Glyph> line1) {
+			Glyph g0 = line0.get(0);
+			Glyph g1 = line1.get(0);
+			if (g0.rot90 != g1.rot90) {
+				return g0.rot90 ? 1 : -1;
+			}
+			int compare = Double.compare(g0.baseline, g1.baseline);
+			return compare != 0 ? compare : Double.compare(g0.start, g1.start);
+		}
+	};
+
+	private double baselineFactor = DEFAULT_BASELINE_FACTOR;
+	private double characterGapFactor = DEFAULT_CHARACTER_GAP_FACTOR;
+	private double wordGapFactor = DEFAULT_WORD_GAP_FACTOR;
+
+	private List<SVGPhrase> horizontalPhraseList;
+	private List<SVGPhrase> rot90PhraseList;
+	private List<SVGText> unassembledTextList;
+	private int lineCount;
+
+	public TextAssembler() {
+	}
+
+	/**
+	 * @param baselineFactor max baseline difference in a line as fraction of font size (default 0.3)
+	 */
+	public void setBaselineFactor(double baselineFactor) {
+		this.baselineFactor = baselineFactor;
+	}
+
+	public double getBaselineFactor() {
+		return baselineFactor;
+	}
+
+	/**
+	 * @param characterGapFactor max gap between characters in a word as fraction of font size (default 0.1)
+	 */
+	public void setCharacterGapFactor(double characterGapFactor) {
+		this.characterGapFactor = characterGapFactor;
+	}
+
+	public double getCharacterGapFactor() {
+		return characterGapFactor;
+	}
+
+	/**
+	 * @param wordGapFactor max gap between words in a phrase as fraction of font size (default 1.5)
+	 */
+	public void setWordGapFactor(double wordGapFactor) {
+		this.wordGapFactor = wordGapFactor;
+	}
+
+	public double getWordGapFactor() {
+		return wordGapFactor;
+	}
+
+	/** assembles characters into phrases.
+	 *
+	 * @param textList characters in any order
+	 * @return horizontal phrases then ROT90 phrases, each in reading order
+	 */
+	public List<SVGPhrase> assemble(List<SVGText> textList) {
+		horizontalPhraseList = new ArrayList<SVGPhrase>();
+		rot90PhraseList = new ArrayList<SVGPhrase>();
+		unassembledTextList = new ArrayList<SVGText>();
+		Map<GridKey, TreeMap<Long, List<Glyph>>> grid = createGrid(textList);
+		List<List<Glyph>> lineList = createLines(grid);
+		lineCount = lineList.size();
+		Collections.sort(lineList, LINE_COMPARATOR);
+		for (List<Glyph> line : lineList) {
+			Collections.sort(line, START_COMPARATOR);
+			addPhrases(line);
+		}
+		LOG.trace(textList.size()+" characters; "+lineCount+" lines; "+
+			horizontalPhraseList.size()+"/"+rot90PhraseList.size()+" phrases");
+		List<SVGPhrase> phraseList = new ArrayList<SVGPhrase>(horizontalPhraseList);
+		phraseList.addAll(rot90PhraseList);
+		return phraseList;
+	}
+
+	public List<SVGPhrase> getHorizontalPhrases() {
+		return horizontalPhraseList;
+	}
+
+	public List<SVGPhrase> getRot90Phrases() {
+		return rot90PhraseList;
+	}
+
+	/** characters with other rotations, no font size or no bounding box.
+	 *
+	 * @return
+	 */
+	public List<SVGText> getUnassembledTexts() {
+		return unassembledTextList;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	private Map<GridKey, TreeMap<Long, List<Glyph>>> createGrid(List<SVGText> textList) {
+		Map<GridKey, TreeMap<Long, List<Glyph>>> grid = new TreeMap<GridKey, TreeMap<Long, List<Glyph>>>();
+		for (SVGText text : textList) {
+			Glyph glyph = createGlyph(text);
+			if (glyph == null) {
+				unassembledTextList.add(text);
+				continue;
+			}
+			int fontSizeIndex = Math.max(1, (int) Math.round(glyph.fontSize * FONT_SIZE_SCALE));
+			GridKey key = new GridKey(glyph.rot90, fontSizeIndex);
+			TreeMap<Long, List<Glyph>> cells = grid.get(key);
+			if (cells == null) {
+				cells = new TreeMap<Long, List<Glyph>>();
+				grid.put(key, cells);
+			}
+			double cellSize = baselineFactor * fontSizeIndex / FONT_SIZE_SCALE;
+			Long cellIndex = (long) Math.floor(glyph.baseline / cellSize);
+			List<Glyph> cell = cells.get(cellIndex);
+			if (cell == null) {
+				cell = new ArrayList<Glyph>();
+				cells.put(cellIndex, cell);
+			}
+			cell.add(glyph);
+		}
+		return grid;
+	}
+
+	private Glyph createGlyph(SVGText text) {
+		Double fontSize = text.getFontSize();
+		String value = text.getText();
+		if (fontSize == null || fontSize <= 0.0 || value == null || value.length() == 0) {
+			return null;
+		}
+		Angle angle = text.getAngleOfRotation();
+		if (angle == null) {
+			return null;
+		}
+		Glyph glyph = new Glyph();
+		if (angle.isEqualTo(0.0, ANGLE_EPS)) {
+			glyph.rot90 = false;
+		} else if (text.isRot90()) {
+			glyph.rot90 = true;
+		} else {
+			return null;
+		}
+		Real2 xy = text.getXY();
+		Real2Range bbox = text.getBoundingBox();
+		if (xy == null || bbox == null) {
+			return null;
+		}
+		glyph.text = text;
+		glyph.fontSize = fontSize;
+		if (glyph.rot90) {
+			glyph.baseline = xy.getX();
+			glyph.start = -bbox.getYMax();
+			glyph.end = -bbox.getYMin();
+		} else {
+			glyph.baseline = xy.getY();
+			glyph.start = bbox.getXMin();
+			glyph.end = bbox.getXMax();
+		}
+		return glyph;
+	}
+
+	/** reads the baseline cells of each direction/fontSize in order.
+	 *
+	 * a line starts at its lowest baseline and takes characters up to baselineFactor * fontSize beyond;
+	 * this may span adjacent cells.
+	 */
+	private List<List<Glyph>> createLines(Map<GridKey, TreeMap<Long, List<Glyph>>> grid) {
+		List<List<Glyph>> lineList = new ArrayList<List<Glyph>>();
+		for (TreeMap<Long, List<Glyph>> cells : grid.values()) {
+			List<Glyph> line = null;
+			double lineBaseline = 0.0;
+			for (List<Glyph> cell : cells.values()) {
+				Collections.sort(cell, BASELINE_COMPARATOR);
+				for (Glyph glyph : cell) {
+					double tolerance = baselineFactor * glyph.fontSize;
+					if (line == null || glyph.baseline - lineBaseline >= tolerance) {
+						line = new ArrayList<Glyph>();
+						lineList.add(line);
+						lineBaseline = glyph.baseline;
+					}
+					line.add(glyph);
+				}
+			}
+		}
+		return lineList;
+	}
+
+	/** splits a sorted line into words and phrases.
+	 */
+	private void addPhrases(List<Glyph> line) {
+		List<SVGPhrase> phraseList = line.get(0).rot90 ? rot90PhraseList : horizontalPhraseList;
+		SVGPhrase phrase = null;
+		SVGWord word = null;
+		double wordEnd = 0.0;
+		for (Glyph glyph : line) {
+			double gap = glyph.start - wordEnd;
+			if (word != null && gap <= characterGapFactor * glyph.fontSize) {
+				word.append(glyph.text);
+				wordEnd = Math.max(wordEnd, glyph.end);
+			} else {
+				if (phrase == null || gap > wordGapFactor * glyph.fontSize) {
+					phrase = new SVGPhrase();
+					phraseList.add(phrase);
+				}
+				word = new SVGWord(glyph.text, glyph.rot90);
+				phrase.addTrailingWord(word);
+				wordEnd = glyph.end;
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** creates numbered daemon threads (prefix-1, prefix-2...) for worker pools.
+ *
+ * daemon threads do not keep the JVM alive if a caller forgets to shut a pool down.
+ *
+ * @author pm286
+ *
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private String prefix;
+	private AtomicInteger count;
+
+	/**
+	 * @param prefix of thread names
+	 */
+	public DaemonThreadFactory(String prefix) {
+		this.prefix = prefix;
+		this.count = new AtomicInteger();
+	}
+
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix+"-"+count.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
@@ -0,0 +1,248 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGPoly;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGShape;
+
+/** finds items whose coordinates are equal within a tolerance in (expected) linear time.
+ *
+ * Each item is hashed by its type, number of points and the cell of its first point on a grid
+ * of size epsilon. Any item within epsilon of it lies in the same or a neighbouring cell, so only
+ * those 9 cells are probed and their items compared point by point. This replaces pairwise scans
+ * with hasEqualCoordinates(). Points are compared in order (as SVGPolyline.hasEqualCoordinates()).
+ * <p>
+ * Items without coordinates are compared by their exact geometric hash.
+ *
+ * <pre>
+ *   GeometricDeduplicator&lt;SVGLine&gt; deduplicator = new GeometricDeduplicator&lt;SVGLine&gt;(0.01);
+ *   for (SVGLine line : lines) {
+ *       if (deduplicator.add(line, GeometricDeduplicator.createCoordinates(line))) {
+ *           ... first occurrence
+ *       }
+ *   }
+ * </pre>
+ *
+ * @author pm286
+ *
+ * @param <T> item (usually SVGShape)
+ */
+public class GeometricDeduplicator<T> {
+
+	private static final Logger LOG = Logger.getLogger(GeometricDeduplicator.class);
+
+	private double epsilon;
+	private Map<CellKey, List<Real2Array>> coordinatesByCell;
+	private Set<String> exactKeys;
+	private List<T> items;
+	private int duplicateCount;
+
+	public GeometricDeduplicator(double epsilon) {
+		if (!(epsilon > 0.0)) {
+			throw new RuntimeException("epsilon must be positive: "+epsilon);
+		}
+		this.epsilon = epsilon;
+		coordinatesByCell = new HashMap<CellKey, List<Real2Array>>();
+		exactKeys = new HashSet<String>();
+		items = new ArrayList<T>();
+	}
+
+	/** adds item unless it duplicates one already added.
+	 *
+	 * @param item
+	 * @param coordinates kept, so should not be modified later (null or empty items are never duplicates)
+	 * @return true if added (first occurrence)
+	 */
+	public boolean add(T item, Real2Array coordinates) {
+		return add(item, item.getClass(), coordinates);
+	}
+
+	/** adds shape unless it duplicates one already added.
+	 *
+	 * paths are only duplicates if they have the same signature.
+	 * shapes without coordinates (see createCoordinates()) are compared by exact geometric hash.
+	 *
+	 * @param shape
+	 * @return true if added (first occurrence)
+	 */
+	public boolean addShape(T shape) {
+		if (!(shape instanceof SVGShape)) {
+			throw new RuntimeException("not a shape: "+shape);
+		}
+		SVGShape svgShape = (SVGShape) shape;
+		Real2Array coordinates = createCoordinates(svgShape);
+		if (coordinates == null) {
+			String key = shape.getClass().getName()+" "+svgShape.getGeometricHash();
+			if (!exactKeys.add(key)) {
+				duplicateCount++;
+				return false;
+			}
+			items.add(shape);
+			return true;
+		}
+		Object type = (shape instanceof SVGPath) ? shape.getClass().getName()+" "+svgShape.getSignature() : shape.getClass();
+		return add(shape, type, coordinates);
+	}
+
+	private boolean add(T item, Object type, Real2Array coordinates) {
+		if (coordinates != null && coordinates.size() > 0) {
+			Real2 first = coordinates.get(0);
+			long ix = cell(first.getX());
+			long iy = cell(first.getY());
+			int size = coordinates.size();
+			for (long jx = ix - 1; jx <= ix + 1; jx++) {
+				for (long jy = iy - 1; jy <= iy + 1; jy++) {
+					List<Real2Array> cellCoordinates = coordinatesByCell.get(new CellKey(type, size, jx, jy));
+					if (cellCoordinates != null) {
+						for (Real2Array coordinates0 : cellCoordinates) {
+							if (isEqual(coordinates0, coordinates)) {
+								LOG.trace("duplicate: "+item);
+								duplicateCount++;
+								return false;
+							}
+						}
+					}
+				}
+			}
+			CellKey key = new CellKey(type, size, ix, iy);
+			List<Real2Array> cellCoordinates = coordinatesByCell.get(key);
+			if (cellCoordinates == null) {
+				cellCoordinates = new ArrayList<Real2Array>(1);
+				coordinatesByCell.put(key, cellCoordinates);
+			}
+			cellCoordinates.add(coordinates);
+		}
+		items.add(item);
+		return true;
+	}
+
+	private long cell(double coordinate) {
+		return (long) Math.floor(coordinate / epsilon);
+	}
+
+	/** points must be strictly closer than epsilon (as SVGLine.hasEqualCoordinates() and SVGRect.isEqual()).
+	 * 
+	 * the same rule is used for all shapes, so polylines exactly epsilon apart are different
+	 * (SVGPolyline.hasEqualCoordinates() would treat them as equal).
+	 */
+	private boolean isEqual(Real2Array coordinates0, Real2Array coordinates1) {
+		for (int i = 0; i < coordinates0.size(); i++) {
+			if (coordinates0.get(i).getDistance(coordinates1.get(i)) >= epsilon) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** items added (first occurrences) in order of adding.
+	 *
+	 * @return
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	public int getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	/** coordinates compared for each type of shape.
+	 *
+	 * path: first point of each primitive (as SVGPath.hasEqualCoordinates())
+	 * poly: points
+	 * line: end points
+	 * rect: corners of bounding box (as SVGRect.isEqual())
+	 *
+	 * @param shape
+	 * @return null for other shapes
+	 */
+	public static Real2Array createCoordinates(SVGShape shape) {
+		Real2Array coordinates = null;
+		if (shape instanceof SVGPath) {
+			SVGPath path = (SVGPath) shape;
+			coordinates = (path.getDString() == null) ? null : path.getCoords();
+		} else if (shape instanceof SVGPoly) {
+			Real2Array points = ((SVGPoly) shape).getReal2Array();
+			coordinates = (points == null) ? null : new Real2Array(points);
+		} else if (shape instanceof SVGLine) {
+			SVGLine line = (SVGLine) shape;
+			coordinates = new Real2Array();
+			coordinates.add(line.getXY(0));
+			coordinates.add(line.getXY(1));
+		} else if (shape instanceof SVGRect) {
+			Real2Range bbox = shape.getBoundingBox();
+			if (bbox != null) {
+				coordinates = new Real2Array();
+				for (Real2 corner : bbox.getCorners()) {
+					coordinates.add(corner);
+				}
+			}
+		}
+		return coordinates;
+	}
+
+	/** removes shapes equal (within epsilon) to an earlier one.
+	 *
+	 * @param shapeList not altered
+	 * @param epsilon
+	 * @return new list of first occurrences, in order
+	 */
+	public static <S extends SVGShape> List<S> removeDuplicates(List<S> shapeList, double epsilon) {
+		GeometricDeduplicator<S> deduplicator = new GeometricDeduplicator<S>(epsilon);
+		for (S shape : shapeList) {
+			if (shape != null) {
+				deduplicator.addShape(shape);
+			}
+		}
+		LOG.trace("removed "+deduplicator.getDuplicateCount()+" duplicates");
+		return deduplicator.getItems();
+	}
+
+	private static class CellKey {
+		private Object type;
+		private int size;
+		private long ix;
+		private long iy;
+
+		CellKey(Object type, int size, long ix, long iy) {
+			this.type = type;
+			this.size = size;
+			this.ix = ix;
+			this.iy = iy;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = type.hashCode();
+			hash = 31 * hash + size;
+			hash = 31 * hash + (int) (ix ^ (ix >>> 32));
+			hash = 31 * hash + (int) (iy ^ (iy >>> 32));
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CellKey)) {
+				return false;
+			}
+			CellKey key = (CellKey) obj;
+			return size == key.size && ix == key.ix && iy == key.iy && type.equals(key.type);
+		}
+	}
+}
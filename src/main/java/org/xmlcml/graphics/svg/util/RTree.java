@@ -0,0 +1,602 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGElement;
+
+/** R-tree of items indexed by their bounding boxes.
+ *
+ * Supports intersection, containment and k-nearest-neighbour queries in (typically) logarithmic time,
+ * replacing linear scans over element lists. Trees created from a list are bulk-loaded with
+ * Sort-Tile-Recursive packing (nearly full, non-overlapping nodes); insert() and delete() then
+ * update the tree incrementally.
+ * <p>
+ * Boxes are copied when items are added, so later changes to an element do not move it in the index;
+ * delete and re-insert elements whose geometry changes. Items with null or invalid boxes are not indexed.
+ * Items are compared by identity.
+ * <p>
+ * Query results are returned in the order the items were added (as a scan of the original list would give).
+ * Comparisons are inclusive (boxes that touch intersect).
+ *
+ * @author pm286
+ *
+ * @param <T> item (usually SVGElement or Real2Range)
+ */
+public class RTree<T> {
+
+	private static final Logger LOG = Logger.getLogger(RTree.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 16;
+	private static final int MIN_MAX_ENTRIES = 4;
+
+	private final int maxEntries;
+	private final int minEntries;
+	private Node<T> root;
+	private Map<T, Node<T>> entryByItem;
+	private int sequence;
+
+	/** node, or (if item is set) an entry in a leaf node.
+	 */
+	private static class Node<T> {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		boolean leaf;
+		List<Node<T>> children;
+		T item;
+		int sequence;
+
+		Node(boolean leaf) {
+			this.leaf = leaf;
+			this.children = new ArrayList<Node<T>>();
+		}
+
+		Node(T item, double minX, double minY, double maxX, double maxY, int sequence) {
+			this.item = item;
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.sequence = sequence;
+		}
+
+		void add(Node<T> child) {
+			children.add(child);
+			extend(child);
+		}
+
+		void extend(Node<T> node) {
+			minX = Math.min(minX, node.minX);
+			minY = Math.min(minY, node.minY);
+			maxX = Math.max(maxX, node.maxX);
+			maxY = Math.max(maxY, node.maxY);
+		}
+
+		void recalculate() {
+			minX = Double.POSITIVE_INFINITY;
+			minY = Double.POSITIVE_INFINITY;
+			maxX = Double.NEGATIVE_INFINITY;
+			maxY = Double.NEGATIVE_INFINITY;
+			for (Node<T> child : children) {
+				extend(child);
+			}
+		}
+
+		boolean intersects(double x0, double y0, double x1, double y1) {
+			return minX <= x1 && x0 <= maxX && minY <= y1 && y0 <= maxY;
+		}
+
+		boolean isContainedIn(double x0, double y0, double x1, double y1) {
+			return x0 <= minX && maxX <= x1 && y0 <= minY && maxY <= y1;
+		}
+
+		boolean contains(Node<T> node) {
+			return node.isContainedIn(minX, minY, maxX, maxY);
+		}
+
+		double area() {
+			return (maxX - minX) * (maxY - minY);
+		}
+
+		double enlargedArea(Node<T> node) {
+			return (Math.max(maxX, node.maxX) - Math.min(minX, node.minX)) *
+					(Math.max(maxY, node.maxY) - Math.min(minY, node.minY));
+		}
+
+		double centreX() {
+			return (minX + maxX) / 2.0;
+		}
+
+		double centreY() {
+			return (minY + maxY) / 2.0;
+		}
+
+		/** squared distance from point to box; 0 if inside */
+		double distanceSquared(double x, double y) {
+			double dx = Math.max(Math.max(minX - x, 0.0), x - maxX);
+			double dy = Math.max(Math.max(minY - y, 0.0), y - maxY);
+			return dx * dx + dy * dy;
+		}
+	}
+
+	/** node or entry queued by distance in nearest-neighbour search.
+	 */
+	private static class Candidate<T> {
+		Node<T> node;
+		double distanceSquared;
+
+		Candidate(Node<T> node, double distanceSquared) {
+			this.node = node;
+			this.distanceSquared = distanceSquared;
+		}
+	}
+
+	private static final Comparator<Node<?>> X_COMPARATOR = new Comparator<Node<?>>() {
+		public int compare(Node<?> n0, Node<?> n1) {
+			return Double.compare(n0.centreX(), n1.centreX());
+		}
+	};
+
+	private static final Comparator<Node<?>> Y_COMPARATOR = new Comparator<Node<?>>() {
+		public int compare(Node<?> n0, Node<?> n1) {
+			return Double.compare(n0.centreY(), n1.centreY());
+		}
+	};
+
+	private static final Comparator<Node<?>> SEQUENCE_COMPARATOR = new Comparator<Node<?>>() {
+		public int compare(Node<?> n0, Node<?> n1) {
+			return n0.sequence - n1.sequence;
+		}
+	};
+
+	private static final Comparator<Candidate<?>> DISTANCE_COMPARATOR = new Comparator<Candidate<?>>() {
+		public int compare(Candidate<?> c0, Candidate<?> c1) {
+			int compare = Double.compare(c0.distanceSquared, c1.distanceSquared);
+			// entries before nodes at same distance, then order of addition
+			if (compare == 0) {
+				boolean entry0 = c0.node.item != null;
+				boolean entry1 = c1.node.item != null;
+				compare = (entry0 == entry1) ? c0.node.sequence - c1.node.sequence : (entry0 ? -1 : 1);
+			}
+			return compare;
+		}
+	};
+
+	public RTree() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries maximum children per node (at least 4)
+	 */
+	public RTree(int maxEntries) {
+		if (maxEntries < MIN_MAX_ENTRIES) {
+			throw new RuntimeException("maxEntries must be at least "+MIN_MAX_ENTRIES+"; found: "+maxEntries);
+		}
+		this.maxEntries = maxEntries;
+		this.minEntries = Math.max(2, (maxEntries * 2) / 5);
+		clear();
+	}
+
+	/** bulk-loads elements by their bounding boxes.
+	 *
+	 * @param elementList
+	 * @return
+	 */
+	public static <E extends SVGElement> RTree<E> createElementTree(List<E> elementList) {
+		List<Real2Range> bboxList = new ArrayList<Real2Range>();
+		for (SVGElement element : elementList) {
+			bboxList.add(element.getBoundingBox());
+		}
+		RTree<E> tree = new RTree<E>();
+		tree.load(elementList, bboxList);
+		return tree;
+	}
+
+	/** bulk-loads boxes indexed by themselves.
+	 *
+	 * @param bboxList
+	 * @return
+	 */
+	public static RTree<Real2Range> createBoxTree(List<Real2Range> bboxList) {
+		RTree<Real2Range> tree = new RTree<Real2Range>();
+		tree.load(bboxList, bboxList);
+		return tree;
+	}
+
+	public void clear() {
+		root = new Node<T>(true);
+		entryByItem = new IdentityHashMap<T, Node<T>>();
+		sequence = 0;
+	}
+
+	/** adds items.
+	 *
+	 * uses STR packing if tree is empty, else inserts one by one.
+	 *
+	 * @param items
+	 * @param bboxList boxes of items (same order and size)
+	 */
+	public void load(List<? extends T> items, List<Real2Range> bboxList) {
+		if (items.size() != bboxList.size()) {
+			throw new RuntimeException("items ("+items.size()+") and boxes ("+bboxList.size()+") differ in size");
+		}
+		if (!isEmpty()) {
+			for (int i = 0; i < items.size(); i++) {
+				insert(items.get(i), bboxList.get(i));
+			}
+			return;
+		}
+		List<Node<T>> entries = new ArrayList<Node<T>>(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			if (entryByItem.containsKey(items.get(i))) {
+				throw new RuntimeException("item already indexed: "+items.get(i));
+			}
+			Node<T> entry = createEntry(items.get(i), bboxList.get(i));
+			if (entry != null) {
+				entries.add(entry);
+				entryByItem.put(entry.item, entry);
+			}
+		}
+		if (entries.size() > 0) {
+			root = packSortTileRecursive(entries);
+		}
+	}
+
+	private Node<T> packSortTileRecursive(List<Node<T>> nodes) {
+		boolean leafLevel = true;
+		while (nodes.size() > maxEntries) {
+			int nparents = (nodes.size() + maxEntries - 1) / maxEntries;
+			int nslices = (int) Math.ceil(Math.sqrt(nparents));
+			int sliceSize = nslices * maxEntries;
+			Collections.sort(nodes, X_COMPARATOR);
+			List<Node<T>> parents = new ArrayList<Node<T>>(nparents);
+			for (int i = 0; i < nodes.size(); i += sliceSize) {
+				List<Node<T>> slice = new ArrayList<Node<T>>(nodes.subList(i, Math.min(i + sliceSize, nodes.size())));
+				Collections.sort(slice, Y_COMPARATOR);
+				for (int j = 0; j < slice.size(); j += maxEntries) {
+					parents.add(createParent(slice.subList(j, Math.min(j + maxEntries, slice.size())), leafLevel));
+				}
+			}
+			nodes = parents;
+			leafLevel = false;
+		}
+		return createParent(nodes, leafLevel);
+	}
+
+	private Node<T> createParent(List<Node<T>> children, boolean leaf) {
+		Node<T> parent = new Node<T>(leaf);
+		for (Node<T> child : children) {
+			parent.add(child);
+		}
+		return parent;
+	}
+
+	/** adds item.
+	 *
+	 * @param item
+	 * @param bbox
+	 * @return false if item is null or box is null or invalid (item not indexed)
+	 * @throws RuntimeException if item is already indexed
+	 */
+	public boolean insert(T item, Real2Range bbox) {
+		if (entryByItem.containsKey(item)) {
+			throw new RuntimeException("item already indexed: "+item);
+		}
+		Node<T> entry = createEntry(item, bbox);
+		if (entry == null) {
+			return false;
+		}
+		entryByItem.put(item, entry);
+		insertEntry(entry);
+		return true;
+	}
+
+	private void insertEntry(Node<T> entry) {
+		Node<T> sibling = insert(root, entry);
+		if (sibling != null) {
+			Node<T> newRoot = new Node<T>(false);
+			newRoot.add(root);
+			newRoot.add(sibling);
+			root = newRoot;
+		}
+	}
+
+	/**
+	 * @return new sibling if node was split, else null
+	 */
+	private Node<T> insert(Node<T> node, Node<T> entry) {
+		node.extend(entry);
+		if (node.leaf) {
+			node.children.add(entry);
+		} else {
+			Node<T> sibling = insert(chooseSubtree(node, entry), entry);
+			if (sibling != null) {
+				node.children.add(sibling);
+			}
+		}
+		return (node.children.size() > maxEntries) ? split(node) : null;
+	}
+
+	/** child needing least enlargement; ties resolved by smaller area.
+	 */
+	private Node<T> chooseSubtree(Node<T> node, Node<T> entry) {
+		Node<T> best = null;
+		double bestEnlargement = Double.POSITIVE_INFINITY;
+		double bestArea = Double.POSITIVE_INFINITY;
+		for (Node<T> child : node.children) {
+			double area = child.area();
+			double enlargement = child.enlargedArea(entry) - area;
+			if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+				best = child;
+				bestEnlargement = enlargement;
+				bestArea = area;
+			}
+		}
+		return best;
+	}
+
+	/** splits children at median of the axis with larger spread of centres.
+	 *
+	 * @return new sibling holding upper half
+	 */
+	private Node<T> split(Node<T> node) {
+		double minCX = Double.POSITIVE_INFINITY;
+		double maxCX = Double.NEGATIVE_INFINITY;
+		double minCY = Double.POSITIVE_INFINITY;
+		double maxCY = Double.NEGATIVE_INFINITY;
+		for (Node<T> child : node.children) {
+			minCX = Math.min(minCX, child.centreX());
+			maxCX = Math.max(maxCX, child.centreX());
+			minCY = Math.min(minCY, child.centreY());
+			maxCY = Math.max(maxCY, child.centreY());
+		}
+		Collections.sort(node.children, (maxCX - minCX >= maxCY - minCY) ? X_COMPARATOR : Y_COMPARATOR);
+		int half = node.children.size() / 2;
+		Node<T> sibling = new Node<T>(node.leaf);
+		List<Node<T>> upper = node.children.subList(half, node.children.size());
+		for (Node<T> child : upper) {
+			sibling.add(child);
+		}
+		upper.clear();
+		node.recalculate();
+		return sibling;
+	}
+
+	/** removes item.
+	 *
+	 * @param item
+	 * @return false if item was not indexed
+	 */
+	public boolean delete(T item) {
+		Node<T> entry = entryByItem.remove(item);
+		if (entry == null) {
+			return false;
+		}
+		List<Node<T>> orphans = new ArrayList<Node<T>>();
+		if (!delete(root, entry, orphans)) {
+			throw new RuntimeException("index corrupted; cannot find "+item);
+		}
+		while (!root.leaf && root.children.size() == 1) {
+			root = root.children.get(0);
+		}
+		if (root.children.size() == 0) {
+			root = new Node<T>(true);
+		}
+		List<Node<T>> orphanEntries = new ArrayList<Node<T>>();
+		for (Node<T> orphan : orphans) {
+			addEntries(orphan, orphanEntries);
+		}
+		for (Node<T> orphanEntry : orphanEntries) {
+			insertEntry(orphanEntry);
+		}
+		return true;
+	}
+
+	/** removes entry; underfull nodes are detached and added to orphans.
+	 */
+	private boolean delete(Node<T> node, Node<T> entry, List<Node<T>> orphans) {
+		if (node.leaf) {
+			for (int i = 0; i < node.children.size(); i++) {
+				if (node.children.get(i) == entry) {
+					node.children.remove(i);
+					node.recalculate();
+					return true;
+				}
+			}
+			return false;
+		}
+		for (int i = 0; i < node.children.size(); i++) {
+			Node<T> child = node.children.get(i);
+			if (child.contains(entry) && delete(child, entry, orphans)) {
+				if (child.children.size() < minEntries) {
+					node.children.remove(i);
+					orphans.add(child);
+				}
+				node.recalculate();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addEntries(Node<T> node, List<Node<T>> entries) {
+		if (node.leaf) {
+			entries.addAll(node.children);
+		} else {
+			for (Node<T> child : node.children) {
+				addEntries(child, entries);
+			}
+		}
+	}
+
+	private Node<T> createEntry(T item, Real2Range bbox) {
+		if (item == null) {
+			return null;
+		}
+		RealRange xRange = (bbox == null) ? null : bbox.getXRange();
+		RealRange yRange = (bbox == null) ? null : bbox.getYRange();
+		if (xRange == null || yRange == null ||
+				!(xRange.getMin() <= xRange.getMax()) || !(yRange.getMin() <= yRange.getMax())) {
+			LOG.trace("cannot index item with box: "+bbox);
+			return null;
+		}
+		return new Node<T>(item, xRange.getMin(), yRange.getMin(), xRange.getMax(), yRange.getMax(), sequence++);
+	}
+
+	public int size() {
+		return entryByItem.size();
+	}
+
+	public boolean isEmpty() {
+		return entryByItem.isEmpty();
+	}
+
+	public boolean contains(T item) {
+		return entryByItem.containsKey(item);
+	}
+
+	/** number of levels (1 for a single leaf).
+	 *
+	 * @return
+	 */
+	public int getHeight() {
+		int height = 1;
+		for (Node<T> node = root; !node.leaf; node = node.children.get(0)) {
+			height++;
+		}
+		return height;
+	}
+
+	/** box enclosing all items.
+	 *
+	 * @return null if empty
+	 */
+	public Real2Range getBoundingBox() {
+		return isEmpty() ? null :
+			new Real2Range(new RealRange(root.minX, root.maxX), new RealRange(root.minY, root.maxY));
+	}
+
+	/** items whose boxes intersect (or touch) box.
+	 *
+	 * @param bbox
+	 * @return empty list if bbox is null
+	 */
+	public List<T> findIntersecting(Real2Range bbox) {
+		List<Node<T>> entries = new ArrayList<Node<T>>();
+		if (bbox != null && bbox.getXRange() != null && bbox.getYRange() != null) {
+			RealRange xRange = bbox.getXRange();
+			RealRange yRange = bbox.getYRange();
+			findIntersecting(root, xRange.getMin(), yRange.getMin(), xRange.getMax(), yRange.getMax(), entries);
+		}
+		return createItemList(entries);
+	}
+
+	private void findIntersecting(Node<T> node, double x0, double y0, double x1, double y1, List<Node<T>> entries) {
+		for (Node<T> child : node.children) {
+			if (child.intersects(x0, y0, x1, y1)) {
+				if (node.leaf) {
+					entries.add(child);
+				} else {
+					findIntersecting(child, x0, y0, x1, y1, entries);
+				}
+			}
+		}
+	}
+
+	/** items whose boxes lie completely within box.
+	 *
+	 * @param bbox
+	 * @return empty list if bbox is null
+	 */
+	public List<T> findContainedIn(Real2Range bbox) {
+		List<Node<T>> entries = new ArrayList<Node<T>>();
+		if (bbox != null && bbox.getXRange() != null && bbox.getYRange() != null) {
+			RealRange xRange = bbox.getXRange();
+			RealRange yRange = bbox.getYRange();
+			findContainedIn(root, xRange.getMin(), yRange.getMin(), xRange.getMax(), yRange.getMax(), entries);
+		}
+		return createItemList(entries);
+	}
+
+	private void findContainedIn(Node<T> node, double x0, double y0, double x1, double y1, List<Node<T>> entries) {
+		for (Node<T> child : node.children) {
+			if (node.leaf) {
+				if (child.isContainedIn(x0, y0, x1, y1)) {
+					entries.add(child);
+				}
+			} else if (child.isContainedIn(x0, y0, x1, y1)) {
+				addEntries(child, entries);
+			} else if (child.intersects(x0, y0, x1, y1)) {
+				findContainedIn(child, x0, y0, x1, y1, entries);
+			}
+		}
+	}
+
+	/** items whose boxes contain (or touch) point.
+	 *
+	 * @param point
+	 * @return
+	 */
+	public List<T> findContaining(Real2 point) {
+		List<Node<T>> entries = new ArrayList<Node<T>>();
+		if (point != null) {
+			findIntersecting(root, point.getX(), point.getY(), point.getX(), point.getY(), entries);
+		}
+		return createItemList(entries);
+	}
+
+	/** k items with boxes nearest to point.
+	 *
+	 * distance is from point to nearest point of box (0 if inside).
+	 *
+	 * @param point
+	 * @param k
+	 * @return up to k items, nearest first (ties in order of addition)
+	 */
+	public List<T> findNearest(Real2 point, int k) {
+		List<T> nearest = new ArrayList<T>();
+		if (point == null || k <= 0 || isEmpty()) {
+			return nearest;
+		}
+		double x = point.getX();
+		double y = point.getY();
+		PriorityQueue<Candidate<T>> queue = new PriorityQueue<Candidate<T>>(2 * maxEntries, DISTANCE_COMPARATOR);
+		queue.add(new Candidate<T>(root, root.distanceSquared(x, y)));
+		while (!queue.isEmpty() && nearest.size() < k) {
+			Node<T> node = queue.poll().node;
+			if (node.item != null) {
+				nearest.add(node.item);
+			} else {
+				for (Node<T> child : node.children) {
+					queue.add(new Candidate<T>(child, child.distanceSquared(x, y)));
+				}
+			}
+		}
+		return nearest;
+	}
+
+	private List<T> createItemList(List<Node<T>> entries) {
+		Collections.sort(entries, SEQUENCE_COMPARATOR);
+		List<T> items = new ArrayList<T>(entries.size());
+		for (Node<T> entry : entries) {
+			items.add(entry.item);
+		}
+		return items;
+	}
+
+	public String toString() {
+		return "RTree: size "+size()+"; height "+getHeight()+"; box "+getBoundingBox();
+	}
+}
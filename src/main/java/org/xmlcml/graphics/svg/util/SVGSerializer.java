@@ -4,10 +4,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 
+import nu.xom.Attribute;
+import nu.xom.Element;
 import nu.xom.Serializer;
 import nu.xom.Text;
 
 import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGImage;
 
 public class SVGSerializer extends Serializer {
 	private final static Logger LOG = Logger.getLogger(SVGSerializer.class);
@@ -20,20 +23,36 @@ public class SVGSerializer extends Serializer {
 	}
 
 
+	@Override
+	/**
+	 * writes the href of images holding compact data (see SVGImage.compactImageData())
+	 */
+	protected void writeAttributes(Element element) throws IOException {
+		super.writeAttributes(element);
+		if (element instanceof SVGImage) {
+			Attribute hrefAttribute = ((SVGImage) element).createCompactHrefAttribute();
+			if (hrefAttribute != null) {
+				write(hrefAttribute);
+			}
+		}
+	}
+
 	@Override
 	/**
 	 * replaces occurrences of (char)12345 by &#12345; in outputStream
 	 */
 	public void write(Text text) throws IOException {
 		String s = text.getValue();
-		LOG.trace(s.length());
-		StringBuilder sb = new StringBuilder();
+		if (!needsEscaping(s)) {
+			writeRaw(s);
+			return;
+		}
+		StringBuilder sb = new StringBuilder(s.length() + 16);
 		int codePointCount = s.codePointCount(0, s.length());
 		int charIndex = 0;
 		for (int i = 0; i < codePointCount; i++) {
 			int codepoint = s.codePointAt(charIndex);
 			int charCount = Character.charCount(codepoint);
-			LOG.trace(codepoint+" "+charCount);
 			charIndex += charCount;
 			if (codepoint > 127) {
 				sb.append("&#");
@@ -57,4 +76,14 @@ public class SVGSerializer extends Serializer {
 		writeRaw(sb.toString());
 	}
 
+	private static boolean needsEscaping(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c > 127 || c == '&' || c == '<' || c == '>' || c == '\'' || c == '"') {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
@@ -0,0 +1,636 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import nu.xom.Attribute;
+import nu.xom.Comment;
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.ProcessingInstruction;
+import nu.xom.Text;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGConstants;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGImage;
+
+/** streams elements to a buffered (optionally gzipped) output without XOM's Serializer.
+ *
+ * <p>Runs of characters which need no escaping are written in one call. By default characters
+ * above 127 are written as numeric references (as SVGSerializer). If decimal places are set,
+ * numbers in coordinate attributes (x, y, width, d, points, transform...) are rounded
+ * as they are written; the elements are not changed. Transforms keep extra places (as
+ * SVGElement.format()); arc flags in path data are copied unchanged. Numbers are written
+ * from long arithmetic rather than through Double.toString(), without trailing zeros.
+ * Use it instead of SVGElement.format(places) when rounding is only needed for output
+ * (as SVGSVG.wrapAndWriteAsSVG() does); format() is still needed where rounded values are
+ * used in memory.</p>
+ *
+ * <pre>
+ *   SVGWriter writer = new SVGWriter(new File("page.svgz")); // gzipped by suffix
+ *   writer.setDecimalPlaces(2);
+ *   writer.writeDocument(svgElement);
+ *   writer.close();
+ * </pre>
+ *
+ * Not thread-safe; use one writer per output.
+ *
+ * @author pm286
+ *
+ */
+public class SVGWriter implements Closeable {
+
+	private static final Logger LOG = Logger.getLogger(SVGWriter.class);
+
+	public static final String SVGZ = "svgz";
+	private static final String TRANSFORM = "transform";
+	private static final String D = "d";
+	// arc parameters are rx ry x-axis-rotation large-arc-flag sweep-flag x y
+	private static final int ARC_PARAMETERS = 7;
+	private static final int ARC_LARGE_FLAG = 3;
+	private static final int ARC_SWEEP_FLAG = 4;
+	public static final int BUFFER_SIZE = 65536;
+
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+	private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+	private static final int MAX_DECIMAL_PLACES = 10;
+	private static final long[] POWERS_OF_TEN = new long[MAX_DECIMAL_PLACES + 1];
+	static {
+		POWERS_OF_TEN[0] = 1L;
+		for (int i = 1; i <= MAX_DECIMAL_PLACES; i++) {
+			POWERS_OF_TEN[i] = 10L * POWERS_OF_TEN[i - 1];
+		}
+	}
+	// limit of exact long arithmetic for the scaled value
+	private static final double MAX_SCALED = 1.0e17;
+	private static final int MAX_MANTISSA_DIGITS = 17;
+
+	/** attributes whose numbers are rounded.
+	 */
+	public static final Set<String> NUMERIC_ATTRIBUTES = new HashSet<String>();
+	static {
+		String[] names = {"x", "y", "x1", "y1", "x2", "y2", "cx", "cy", "r", "rx", "ry",
+				"width", "height", "d", "points", "transform", "stroke-width", "font-size"};
+		for (String name : names) {
+			NUMERIC_ATTRIBUTES.add(name);
+		}
+	}
+
+	private Writer writer;
+	private int indent;
+	private int decimalPlaces = -1;
+	private boolean escapeNonAscii = true;
+	private List<Map<String, String>> namespaceStack;
+	private char[] digits = new char[20];
+	private long elementCount;
+
+	/**
+	 * @param os buffered and written as UTF-8; closed by close()
+	 */
+	public SVGWriter(OutputStream os) {
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"), BUFFER_SIZE);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot create writer", e);
+		}
+		namespaceStack = new ArrayList<Map<String, String>>();
+		Map<String, String> rootNamespaces = new HashMap<String, String>();
+		rootNamespaces.put("", "");
+		rootNamespaces.put("xml", XML_NS);
+		namespaceStack.add(rootNamespaces);
+	}
+
+	/** writes to file, gzipped if suffix is .svgz.
+	 *
+	 * @param file parent directories are created
+	 */
+	public SVGWriter(File file) {
+		this(file, file.getName().toLowerCase().endsWith("."+SVGZ));
+	}
+
+	/**
+	 * @param file parent directories are created
+	 * @param gzip
+	 */
+	public SVGWriter(File file, boolean gzip) {
+		this(createOutputStream(file, gzip));
+	}
+
+	private static OutputStream createOutputStream(File file, boolean gzip) {
+		try {
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			OutputStream os = new FileOutputStream(file);
+			return gzip ? new GZIPOutputStream(os, BUFFER_SIZE) : new BufferedOutputStream(os, BUFFER_SIZE);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot write to "+file, e);
+		}
+	}
+
+	/**
+	 * @param indent spaces per level; 0 (default) writes no whitespace between elements
+	 */
+	public void setIndent(int indent) {
+		this.indent = indent;
+	}
+
+	public int getIndent() {
+		return indent;
+	}
+
+	/**
+	 * @param decimalPlaces numbers in NUMERIC_ATTRIBUTES are rounded to this; negative (default) for unchanged
+	 */
+	public void setDecimalPlaces(int decimalPlaces) {
+		if (decimalPlaces > MAX_DECIMAL_PLACES) {
+			throw new RuntimeException("too many decimal places: "+decimalPlaces);
+		}
+		this.decimalPlaces = decimalPlaces;
+	}
+
+	public int getDecimalPlaces() {
+		return decimalPlaces;
+	}
+
+	/**
+	 * @param escapeNonAscii if true (default) write characters above 127 as &amp;#nnn;
+	 */
+	public void setEscapeNonAscii(boolean escapeNonAscii) {
+		this.escapeNonAscii = escapeNonAscii;
+	}
+
+	/** number of elements written so far.
+	 *
+	 * @return
+	 */
+	public long getElementCount() {
+		return elementCount;
+	}
+
+	/** writes XML declaration and element.
+	 *
+	 * @param element
+	 */
+	public void writeDocument(Element element) {
+		try {
+			writer.write(XML_DECLARATION);
+			writer.write('\n');
+			writeElement(element, 0);
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new RuntimeException("cannot write element", e);
+		}
+	}
+
+	/** writes element (without declaration); may be called repeatedly.
+	 *
+	 * @param element
+	 */
+	public void writeElement(Element element) {
+		try {
+			writeElement(element, 0);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot write element", e);
+		}
+	}
+
+	/** writes elements in an svg wrapper without building a tree.
+	 *
+	 * equivalent of SVGSVG.wrapAndWriteAsSVG(elementList, file) (elements are not copied or detached).
+	 *
+	 * @param elementList
+	 * @param height
+	 * @param width
+	 */
+	public void writeWrapped(List<? extends Element> elementList, double height, double width) {
+		try {
+			writer.write(XML_DECLARATION);
+			writer.write("\n<svg xmlns=\"");
+			writer.write(SVGConstants.SVG_NAMESPACE);
+			writer.write("\" height=\"");
+			writeNumberAttributeValue(String.valueOf(height));
+			writer.write("\" width=\"");
+			writeNumberAttributeValue(String.valueOf(width));
+			writer.write("\">");
+			writeNewline(1);
+			writer.write("<g>");
+			Map<String, String> svgNamespaces = new HashMap<String, String>(namespaceStack.get(0));
+			svgNamespaces.put("", SVGConstants.SVG_NAMESPACE);
+			namespaceStack.add(svgNamespaces);
+			for (Element element : elementList) {
+				writeNewline(2);
+				writeElement(element, 2);
+			}
+			namespaceStack.remove(namespaceStack.size() - 1);
+			writeNewline(1);
+			writer.write("</g>");
+			writeNewline(0);
+			writer.write("</svg>\n");
+		} catch (IOException e) {
+			throw new RuntimeException("cannot write elements", e);
+		}
+	}
+
+	public void flush() {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new RuntimeException("cannot flush", e);
+		}
+	}
+
+	/** flushes and closes the underlying stream (finishing gzip).
+	 */
+	public void close() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new RuntimeException("cannot close", e);
+		}
+		LOG.trace("wrote "+elementCount+" elements");
+	}
+
+	/** convenience method.
+	 *
+	 * @param element
+	 * @param file gzipped if suffix is .svgz
+	 * @param decimalPlaces negative for unchanged
+	 */
+	public static void writeDocument(Element element, File file, int decimalPlaces) {
+		SVGWriter svgWriter = new SVGWriter(file);
+		try {
+			svgWriter.setDecimalPlaces(decimalPlaces);
+			svgWriter.writeDocument(element);
+		} finally {
+			svgWriter.close();
+		}
+	}
+
+	private void writeElement(Element element, int level) throws IOException {
+		elementCount++;
+		String qualifiedName = element.getQualifiedName();
+		writer.write('<');
+		writer.write(qualifiedName);
+		Map<String, String> namespaces = writeNamespaceDeclarations(element);
+		int attributeCount = element.getAttributeCount();
+		for (int i = 0; i < attributeCount; i++) {
+			writeAttribute(element.getAttribute(i));
+		}
+		if (element instanceof SVGImage) {
+			Attribute hrefAttribute = ((SVGImage) element).createCompactHrefAttribute();
+			if (hrefAttribute != null) {
+				writeAttribute(hrefAttribute);
+			}
+		}
+		int childCount = element.getChildCount();
+		if (childCount == 0) {
+			writer.write("/>");
+		} else {
+			writer.write('>');
+			boolean indentChildren = indent > 0 && !hasTextChild(element);
+			for (int i = 0; i < childCount; i++) {
+				Node child = element.getChild(i);
+				if (indentChildren) {
+					writeNewline(level + 1);
+				}
+				writeNode(child, level + 1);
+			}
+			if (indentChildren) {
+				writeNewline(level);
+			}
+			writer.write("</");
+			writer.write(qualifiedName);
+			writer.write('>');
+		}
+		if (namespaces != null) {
+			namespaceStack.remove(namespaceStack.size() - 1);
+		}
+	}
+
+	private void writeNode(Node child, int level) throws IOException {
+		if (child instanceof Element) {
+			writeElement((Element) child, level);
+		} else if (child instanceof Text) {
+			writeEscaped(child.getValue(), false);
+		} else if (child instanceof Comment) {
+			writer.write("<!--");
+			writer.write(child.getValue());
+			writer.write("-->");
+		} else if (child instanceof ProcessingInstruction) {
+			ProcessingInstruction pi = (ProcessingInstruction) child;
+			writer.write("<?");
+			writer.write(pi.getTarget());
+			if (pi.getValue().length() > 0) {
+				writer.write(' ');
+				writer.write(pi.getValue());
+			}
+			writer.write("?>");
+		}
+	}
+
+	/** declares namespaces of element and attributes not already in scope.
+	 *
+	 * @return new scope (pushed) or null if unchanged
+	 */
+	private Map<String, String> writeNamespaceDeclarations(Element element) throws IOException {
+		Map<String, String> inScope = namespaceStack.get(namespaceStack.size() - 1);
+		Map<String, String> namespaces = null;
+		int count = element.getNamespaceDeclarationCount();
+		for (int i = 0; i < count; i++) {
+			String prefix = element.getNamespacePrefix(i);
+			String uri = element.getNamespaceURI(prefix);
+			if ("xml".equals(prefix) || uri.equals(inScope.get(prefix)) ||
+					("".equals(uri) && !inScope.containsKey(prefix))) {
+				continue;
+			}
+			if (namespaces == null) {
+				namespaces = new HashMap<String, String>(inScope);
+			}
+			namespaces.put(prefix, uri);
+			writer.write(prefix.length() == 0 ? " xmlns=\"" : " xmlns:"+prefix+"=\"");
+			writeEscaped(uri, true);
+			writer.write('"');
+		}
+		if (namespaces != null) {
+			namespaceStack.add(namespaces);
+		}
+		return namespaces;
+	}
+
+	private void writeAttribute(Attribute attribute) throws IOException {
+		writer.write(' ');
+		writer.write(attribute.getQualifiedName());
+		writer.write("=\"");
+		String value = attribute.getValue();
+		String name = attribute.getLocalName();
+		if (attribute.getNamespaceURI().length() == 0 && NUMERIC_ATTRIBUTES.contains(name)) {
+			if (decimalPlaces >= 0 && TRANSFORM.equals(name)) {
+				writeNumbers(value, Math.min(decimalPlaces + SVGElement.EXTRA_TRANSFORM_PRECISION, MAX_DECIMAL_PLACES), false);
+			} else if (decimalPlaces >= 0 && D.equals(name)) {
+				writeNumbers(value, decimalPlaces, true);
+			} else {
+				writeNumberAttributeValue(value);
+			}
+		} else {
+			writeEscaped(value, true);
+		}
+		writer.write('"');
+	}
+
+	private void writeNumberAttributeValue(String value) throws IOException {
+		if (decimalPlaces >= 0) {
+			writeNumbers(value, decimalPlaces, false);
+		} else {
+			writeEscaped(value, true);
+		}
+	}
+
+	private static boolean hasTextChild(Element element) {
+		for (int i = 0; i < element.getChildCount(); i++) {
+			if (element.getChild(i) instanceof Text) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeNewline(int level) throws IOException {
+		if (indent > 0) {
+			writer.write('\n');
+			for (int i = 0; i < level * indent; i++) {
+				writer.write(' ');
+			}
+		}
+	}
+
+	/** writes runs that need no escaping in single calls.
+	 *
+	 * @param s
+	 * @param isAttribute also escape quote and whitespace controls
+	 */
+	private void writeEscaped(String s, boolean isAttribute) throws IOException {
+		int length = s.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			String replacement = null;
+			if (c == '&') {
+				replacement = "&amp;";
+			} else if (c == '<') {
+				replacement = "&lt;";
+			} else if (c == '>') {
+				replacement = "&gt;";
+			} else if (isAttribute && c == '"') {
+				replacement = "&quot;";
+			} else if (isAttribute && c < ' ') {
+				replacement = "&#"+(int) c+";";
+			} else if (c > 127 && escapeNonAscii) {
+				int codePoint = s.codePointAt(i);
+				replacement = "&#"+codePoint+";";
+				if (Character.charCount(codePoint) == 2) {
+					writer.write(s, start, i - start);
+					writer.write(replacement);
+					i++;
+					start = i + 1;
+					continue;
+				}
+			}
+			if (replacement != null) {
+				writer.write(s, start, i - start);
+				writer.write(replacement);
+				start = i + 1;
+			}
+		}
+		writer.write(s, start, length - start);
+	}
+
+	/** writes value with each number rounded to places.
+	 *
+	 * other characters (commands, separators, transform keywords) are copied.
+	 * In path data the large-arc and sweep flags of arcs (A, a) are not numbers: they are
+	 * copied as single characters (they may be written without separators, e.g. "0 011").
+	 * @param isPathData value is a d attribute
+	 */
+	private void writeNumbers(String value, int places, boolean isPathData) throws IOException {
+		int length = value.length();
+		int i = 0;
+		int lastNumberEnd = -1;
+		char command = 0;
+		int parameter = 0;
+		while (i < length) {
+			char c = value.charAt(i);
+			if (isPathData && (command == 'A' || command == 'a') && (c == '0' || c == '1') &&
+					(parameter % ARC_PARAMETERS == ARC_LARGE_FLAG || parameter % ARC_PARAMETERS == ARC_SWEEP_FLAG)) {
+				writer.write(c);
+				i++;
+				parameter++;
+				continue;
+			}
+			int end = scanNumber(value, i);
+			if (end == i) {
+				if (c == '&' || c == '<' || c == '>' || c == '"' || c > 127 || c < ' ') {
+					writeEscaped(value.substring(i, i + 1), true);
+				} else {
+					writer.write(c);
+				}
+				if (isPathData && Character.isLetter(c)) {
+					command = c;
+					parameter = 0;
+				}
+				i++;
+			} else {
+				// adjacent numbers (e.g. "1-2" or ".5.5") may need a separator once rewritten
+				writeNumber(parseNumber(value, i, end), places, value, i, end, i == lastNumberEnd);
+				i = end;
+				lastNumberEnd = end;
+				parameter++;
+			}
+		}
+	}
+
+	/** end of number starting at start ([sign] digits [. digits] [e [sign] digits]).
+	 *
+	 * @return start if no number
+	 */
+	private static int scanNumber(String s, int start) {
+		int length = s.length();
+		int i = start;
+		if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			i++;
+		}
+		int digitStart = i;
+		while (i < length && isDigit(s.charAt(i))) {
+			i++;
+		}
+		if (i < length && s.charAt(i) == '.') {
+			int fractionStart = i + 1;
+			int j = fractionStart;
+			while (j < length && isDigit(s.charAt(j))) {
+				j++;
+			}
+			if (j > fractionStart || i > digitStart) {
+				i = j;
+			}
+		}
+		if (i == digitStart || (i == digitStart + 1 && s.charAt(digitStart) == '.')) {
+			return start;
+		}
+		if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			int j = i + 1;
+			if (j < length && (s.charAt(j) == '-' || s.charAt(j) == '+')) {
+				j++;
+			}
+			if (j < length && isDigit(s.charAt(j))) {
+				while (j < length && isDigit(s.charAt(j))) {
+					j++;
+				}
+				i = j;
+			}
+		}
+		return i;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/** parses without creating a String unless there is an exponent or many digits.
+	 */
+	private static double parseNumber(String s, int start, int end) {
+		long mantissa = 0;
+		int mantissaDigits = 0;
+		int fractionDigits = 0;
+		boolean inFraction = false;
+		boolean negative = false;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c == '-') {
+				negative = true;
+			} else if (c == '.') {
+				inFraction = true;
+			} else if (isDigit(c)) {
+				mantissa = 10 * mantissa + (c - '0');
+				if (mantissa > 0) {
+					mantissaDigits++;
+				}
+				if (inFraction) {
+					fractionDigits++;
+				}
+			} else if (c != '+') {
+				// exponent
+				return Double.parseDouble(s.substring(start, end));
+			}
+		}
+		if (mantissaDigits > MAX_MANTISSA_DIGITS || fractionDigits > MAX_MANTISSA_DIGITS) {
+			return Double.parseDouble(s.substring(start, end));
+		}
+		double value = (fractionDigits == 0) ? mantissa : mantissa / Math.pow(10.0, fractionDigits);
+		return negative ? -value : value;
+	}
+
+	/** writes value rounded to decimalPlaces; no trailing zeros or decimal point (10.0 is written as 10).
+	 *
+	 * if the value is too large for long arithmetic the original text is written
+	 * @param separate if true and the number does not start with '-' precede it with a space
+	 */
+	private void writeNumber(double value, int decimalPlaces, String s, int start, int end, boolean separate) throws IOException {
+		long scale = POWERS_OF_TEN[decimalPlaces];
+		double scaled = value * scale;
+		if (Double.isNaN(scaled) || Math.abs(scaled) >= MAX_SCALED) {
+			if (separate && s.charAt(start) != '-') {
+				writer.write(' ');
+			}
+			writer.write(s, start, end - start);
+			return;
+		}
+		long rounded = Math.round(scaled);
+		if (rounded < 0) {
+			writer.write('-');
+			rounded = -rounded;
+		} else if (separate) {
+			writer.write(' ');
+		}
+		writeLong(rounded / scale, 0);
+		long fraction = rounded % scale;
+		if (fraction != 0) {
+			writer.write('.');
+			int places = decimalPlaces;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				places--;
+			}
+			writeLong(fraction, places);
+		}
+	}
+
+	/** writes non-negative value, zero-padded to width.
+	 */
+	private void writeLong(long value, int width) throws IOException {
+		int pos = digits.length;
+		do {
+			digits[--pos] = (char) ('0' + (value % 10));
+			value /= 10;
+		} while (value > 0);
+		while (digits.length - pos < width) {
+			digits[--pos] = '0';
+		}
+		writer.write(digits, pos, digits.length - pos);
+	}
+}
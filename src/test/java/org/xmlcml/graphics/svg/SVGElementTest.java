@@ -26,10 +26,12 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.xmlcml.euclid.Angle;
 import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.euclid.RealRange.Direction;
 import org.xmlcml.euclid.RealRangeArray;
 import org.xmlcml.euclid.Transform2;
+import org.xmlcml.euclid.Vector2;
 import org.xmlcml.testutil.TestUtils;
 import org.xmlcml.xml.XMLConstants;
 
@@ -197,4 +199,45 @@ public class SVGElementTest {
 		Assert.assertEquals(2,  rotatedElements.size());
 		
 	}
+
+	@Test
+	public void testBoundingBoxInvalidation() {
+		SVGG g = new SVGG();
+		SVGRect rect = new SVGRect(new Real2(0., 10.), new Real2(30., 40.));
+		g.appendChild(rect);
+		Real2Range bbox = g.getBoundingBox();
+		Assert.assertEquals("x", 30., bbox.getXRange().getMax(), 0.001);
+		Assert.assertSame("cached", bbox, g.getBoundingBox());
+		// non-geometric
+		rect.setFill("red");
+		Assert.assertSame("cached", bbox, g.getBoundingBox());
+		// attribute change invalidates ancestors
+		rect.setX(100.);
+		Assert.assertEquals("moved", 130., g.getBoundingBox().getXRange().getMax(), 0.001);
+		SVGCircle circle = new SVGCircle(new Real2(200., 20.), 5.);
+		g.appendChild(circle);
+		Assert.assertEquals("appended", 205., g.getBoundingBox().getXRange().getMax(), 0.001);
+		circle.detach();
+		Assert.assertEquals("detached", 130., g.getBoundingBox().getXRange().getMax(), 0.001);
+		rect.applyTransform(new Transform2(new Vector2(10., 0.)));
+		Assert.assertEquals("transformed", 140., g.getBoundingBox().getXRange().getMax(), 0.001);
+	}
+
+	@Test
+	public void testInheritedFontInvalidatesText() {
+		SVGG g = new SVGG();
+		SVGG g1 = new SVGG();
+		g.appendChild(g1);
+		SVGText text = new SVGText(new Real2(10., 20.), "abc");
+		text.setFontSize(10.);
+		g1.appendChild(text);
+		Real2Range bbox = text.getBoundingBox();
+		Assert.assertSame("cached", bbox, text.getBoundingBox());
+		// inherited font changes reach descendants
+		g.setFontSize(20.);
+		Assert.assertNotSame("recalculated", bbox, text.getBoundingBox());
+		bbox = text.getBoundingBox();
+		g.setId("g0");
+		Assert.assertSame("cached", bbox, text.getBoundingBox());
+	}
 }
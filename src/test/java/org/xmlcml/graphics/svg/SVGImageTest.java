@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -13,6 +15,10 @@ import java.net.URL;
 
 import javax.imageio.ImageIO;
 
+import nu.xom.Document;
+import nu.xom.Element;
+
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -21,6 +27,8 @@ import org.xmlcml.euclid.Angle;
 import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.RealArray;
 import org.xmlcml.euclid.Transform2;
+import org.xmlcml.graphics.svg.util.SVGSerializer;
+import org.xmlcml.graphics.svg.util.SVGWriter;
 
 public class SVGImageTest {
 
@@ -64,6 +72,56 @@ public class SVGImageTest {
 	    		 svgImage1.toXML());
 	}
 
+	@Test
+	public void testLazyImageData() throws Exception {
+		SVGStreamReader reader = new SVGStreamReader();
+		reader.setCompactImageData(true);
+		SVGElement svgElement = reader.read(new ByteArrayInputStream(Fixtures.IMAGE_SVG.getBytes("UTF-8")));
+		SVGImage svgImage = SVGImage.extractSelfAndDescendantImages(svgElement).get(0);
+		Assert.assertTrue(svgImage.hasCompactImageData());
+		Assert.assertNull(svgImage.getAttribute("href", "http://www.w3.org/1999/xlink"));
+		String dataValue = svgImage.getImageValue();
+		Assert.assertTrue(dataValue.startsWith("data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAABAAAAAQ"));
+		BufferedImage image = svgImage.getBufferedImage();
+		Assert.assertEquals(16, image.getWidth());
+		Assert.assertSame(image, svgImage.getBufferedImage());
+		SVGImage copy = (SVGImage) svgImage.copy();
+		Assert.assertSame(image, copy.getBufferedImage());
+		// other readers are not affected
+		SVGImage image1 = SVGImage.extractSelfAndDescendantImages(SVGUtil.parseToSVGElement(Fixtures.IMAGE_SVG)).get(0);
+		Assert.assertFalse(image1.hasCompactImageData());
+
+		// writers restore the href
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SVGSerializer serializer = new SVGSerializer(baos, "UTF-8");
+		serializer.write(new Document((Element) svgElement.copy()));
+		Assert.assertTrue(baos.toString("UTF-8").contains(dataValue));
+		baos = new ByteArrayOutputStream();
+		SVGWriter writer = new SVGWriter(baos);
+		writer.writeDocument(svgElement);
+		writer.close();
+		String written = baos.toString("UTF-8");
+		Assert.assertTrue(written.contains("xlink:href=\""+dataValue+"\""));
+		Assert.assertTrue(written.contains("xmlns:xlink=\"http://www.w3.org/1999/xlink\""));
+		File file = new File("target/images/compact.svg");
+		file.getParentFile().mkdirs();
+		FileOutputStream fos = new FileOutputStream(file);
+		SVGUtil.debug(svgElement, fos, 1);
+		fos.close();
+		Assert.assertTrue(FileUtils.readFileToString(file, "UTF-8").contains(dataValue));
+		Assert.assertTrue(svgImage.hasCompactImageData());
+		Assert.assertNull(svgImage.getAttribute("href", "http://www.w3.org/1999/xlink"));
+		
+
+		SVGImage.inflateImages(svgElement);
+		Assert.assertFalse(svgImage.hasCompactImageData());
+		Assert.assertEquals(dataValue, svgImage.getAttributeValue("href", "http://www.w3.org/1999/xlink"));
+		Assert.assertEquals(16, svgImage.getBufferedImage().getHeight());
+		Assert.assertTrue(svgImage.compactImageData());
+		svgImage.setImageData(null);
+		Assert.assertNull(svgImage.getImageValue());
+	}
+
 	@Test
 	public void testPNGWrite() throws Exception {
 		BufferedImage bufferedImage = ImageIO.read(Fixtures.IMAGE_TEST_PNG);
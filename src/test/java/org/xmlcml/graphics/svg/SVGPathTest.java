@@ -241,5 +241,17 @@ public class SVGPathTest {
 		Assert.assertNotNull(line);
 	}
 
+	@Test
+	public void testCreateHeuristicPolylineOnNewPath() {
+		// signature comes from the packed primitives; primitives are not yet built
+		SVGPath path = new SVGPath("M10 10 L20 10 L30 20 C35 25 40 25 45 20 L50 10");
+		SVGPoly polyline = path.createHeuristicPolyline(3, 1, 5);
+		Assert.assertNotNull(polyline);
+		// curve is replaced by a line to its end point
+		String newD = polyline.getAttributeValue("d");
+		Assert.assertTrue(newD, newD.contains("L45.0 20.0"));
+		Assert.assertEquals(-1, newD.indexOf("C"));
+	}
+
 
 }
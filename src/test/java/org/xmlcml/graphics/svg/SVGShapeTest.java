@@ -1,5 +1,7 @@
 package org.xmlcml.graphics.svg;
 
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -194,6 +196,42 @@ private static final Logger LOG = Logger.getLogger(SVGShapeTest.class);
 		Assert.assertEquals(1,  shapes.size());
 	}
 
-	
+	@Test
+	public void testCachedAWTShape() {
+		SVGLine line = new SVGLine(new Real2(0., 0.), new Real2(10., 0.));
+		Shape shape = line.getAWTShape();
+		Assert.assertSame(shape, line.getAWTShape());
+		// style does not change geometry
+		line.setStroke("red");
+		Assert.assertSame(shape, line.getAWTShape());
+		Assert.assertTrue(line.isHitBy(new Real2(5., 0.05), 0.1));
+		Assert.assertFalse(line.isHitBy(new Real2(5., 1.0), 0.1));
+		line.setXY(new Real2(0., 1.), 1);
+		Assert.assertNotSame(shape, line.getAWTShape());
+		Assert.assertTrue(line.isHitBy(new Real2(5., 0.5), 0.1));
+
+		SVGPolygon polygon = new SVGPolygon(new Real2Array(
+				new RealArray(new double[]{0., 10., 10.}), new RealArray(new double[]{0., 0., 10.})));
+		Assert.assertTrue(polygon.isHitBy(new Real2(8., 2.), 0.01));
+		AffineTransform transform = AffineTransform.getScaleInstance(2., 2.);
+		Shape transformed = polygon.getTransformedAWTShape(transform);
+		Assert.assertSame(transformed, polygon.getTransformedAWTShape(AffineTransform.getScaleInstance(2., 2.)));
+		Assert.assertEquals(20., transformed.getBounds2D().getMaxX(), 0.000001);
+		polygon.setReal2Array(new Real2Array(
+				new RealArray(new double[]{0., 20., 20.}), new RealArray(new double[]{0., 0., 20.})));
+		Assert.assertEquals(40., polygon.getTransformedAWTShape(transform).getBounds2D().getMaxX(), 0.000001);
+
+		// points added in place
+		SVGPolyline polyline = new SVGPolyline(new Real2Array(
+				new RealArray(new double[]{0., 10.}), new RealArray(new double[]{0., 0.})));
+		Shape polylineShape = polyline.getAWTShape();
+		Assert.assertEquals(0., polylineShape.getBounds2D().getMaxY(), 0.000001);
+		Assert.assertEquals(0., polyline.getTransformedAWTShape(transform).getBounds2D().getMaxY(), 0.000001);
+		polyline.add(new Real2(10., 10.));
+		Assert.assertNotSame(polylineShape, polyline.getAWTShape());
+		Assert.assertEquals(10., polyline.getAWTShape().getBounds2D().getMaxY(), 0.000001);
+		Assert.assertEquals(20., polyline.getTransformedAWTShape(transform).getBounds2D().getMaxY(), 0.000001);
+		Assert.assertTrue(polyline.isHitBy(new Real2(10., 5.), 0.1));
+	}
 
 }
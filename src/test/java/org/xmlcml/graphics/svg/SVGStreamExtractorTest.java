@@ -0,0 +1,81 @@
+package org.xmlcml.graphics.svg;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2Range;
+
+public class SVGStreamExtractorTest {
+	private static final Logger LOG = Logger.getLogger(SVGStreamExtractorTest.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	private final static String SVG_STRING = ""
+			+ "<svg xmlns='http://www.w3.org/2000/svg'>"
+			+ " <defs><clipPath id='c1'><path d='M0 0 L100 0 L100 100 Z'/></clipPath></defs>"
+			+ " <g transform='translate(10,20)'>"
+			+ "  <path d='M0 0 L1 2'/>"
+			+ "  <g transform='translate(100,0)'><path d='M0 0 L1 2'/></g>"
+			+ "  <text x='5' y='5'>A</text>"
+			+ " </g>"
+			+ " <line x1='0' y1='0' x2='3' y2='0'/>"
+			+ "</svg>";
+
+	@Test
+	public void testPathHandlerWithTransforms() {
+		final List<Real2Range> boxes = new ArrayList<Real2Range>();
+		SVGStreamExtractor extractor = new SVGStreamExtractor();
+		extractor.setSkipDefs(true);
+		extractor.addPathHandler(new SVGElementHandler() {
+			public void handleElement(SVGElement element) {
+				Assert.assertTrue(element instanceof SVGPath);
+				Assert.assertNull("detached", element.getParent());
+				boxes.add(element.getBoundingBox());
+			}
+		});
+		extractor.extract(new ByteArrayInputStream(SVG_STRING.getBytes()));
+		Assert.assertEquals("paths", 2, extractor.getHandledCount());
+		Assert.assertEquals("x0", 10.0, boxes.get(0).getXRange().getMin(), 0.001);
+		Assert.assertEquals("y0", 22.0, boxes.get(0).getYRange().getMax(), 0.001);
+		Assert.assertEquals("x1", 110.0, boxes.get(1).getXRange().getMin(), 0.001);
+	}
+
+	@Test
+	public void testTextAndLineHandlers() {
+		final List<SVGElement> elements = new ArrayList<SVGElement>();
+		SVGElementHandler handler = new SVGElementHandler() {
+			public void handleElement(SVGElement element) {
+				elements.add(element);
+			}
+		};
+		SVGStreamExtractor extractor = new SVGStreamExtractor();
+		extractor.addTextHandler(handler);
+		extractor.addLineHandler(handler);
+		extractor.extract(new ByteArrayInputStream(SVG_STRING.getBytes()));
+		Assert.assertEquals("elements", 2, elements.size());
+		SVGText text = (SVGText) elements.get(0);
+		Assert.assertEquals("text", "A", text.getValue());
+		Assert.assertEquals("x", 15.0, text.getX(), 0.001);
+		Assert.assertEquals("y", 25.0, text.getY(), 0.001);
+		Assert.assertTrue(elements.get(1) instanceof SVGLine);
+	}
+
+	@Test
+	public void testDefsReportedByDefault() {
+		final int[] count = new int[1];
+		SVGStreamExtractor extractor = new SVGStreamExtractor();
+		extractor.addPathHandler(new SVGElementHandler() {
+			public void handleElement(SVGElement element) {
+				count[0]++;
+			}
+		});
+		extractor.extract(new ByteArrayInputStream(SVG_STRING.getBytes()));
+		Assert.assertEquals("paths", 3, count[0]);
+	}
+}
@@ -0,0 +1,54 @@
+package org.xmlcml.graphics.svg;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.graphics.svg.objects.SVGArrow;
+import org.xmlcml.graphics.svg.text.SVGWord;
+
+public class SVGStreamReaderTest {
+	private static final Logger LOG = Logger.getLogger(SVGStreamReaderTest.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	@Test
+	public void testReadFileSameAsTreeCopy() {
+		SVGElement copied = SVGElement.readAndCreateSVG(Fixtures.PATHS_BMCLOGO_SVG);
+		SVGElement streamed = SVGStreamReader.readAndCreateSVG(Fixtures.PATHS_BMCLOGO_SVG);
+		Assert.assertEquals("root", SVGSVG.class, streamed.getClass());
+		List<SVGElement> copiedList = SVGElement.extractSelfAndDescendantElements(copied);
+		List<SVGElement> streamedList = SVGElement.extractSelfAndDescendantElements(streamed);
+		Assert.assertEquals("elements", copiedList.size(), streamedList.size());
+		for (int i = 0; i < copiedList.size(); i++) {
+			Assert.assertEquals("class "+i, copiedList.get(i).getClass(), streamedList.get(i).getClass());
+			Assert.assertEquals("attributes "+i, copiedList.get(i).getAttributeCount(), streamedList.get(i).getAttributeCount());
+		}
+		Assert.assertEquals("xml", copied.toXML(), streamed.toXML());
+	}
+
+	@Test
+	public void testClassDispatch() {
+		String svgString = ""
+				+ "<svg xmlns='http://www.w3.org/2000/svg' xmlns:xlink='http://www.w3.org/1999/xlink'>"
+				+ " <g class='word'><text x='1' y='2'>ab<tspan>c</tspan></text></g>"
+				+ " <line class='arrow' x1='0' y1='0' x2='10' y2='0'/>"
+				+ " <image xlink:href='foo.png' x='0' y='0' width='1' height='1'/>"
+				+ " <foo/>"
+				+ "</svg>";
+		SVGElement svg = new SVGStreamReader().read(new ByteArrayInputStream(svgString.getBytes()));
+		Assert.assertEquals("word", SVGWord.class, svg.getChildElements().get(0).getClass());
+		Assert.assertEquals("arrow", SVGArrow.class, svg.getChildElements().get(1).getClass());
+		SVGImage image = (SVGImage) svg.getChildElements().get(2);
+		Assert.assertEquals("href", "foo.png", image.getAttributeValue("href", SVGConstants.XLINK_NS));
+		SVGElement foo = (SVGElement) svg.getChildElements().get(3);
+		Assert.assertEquals("unknown", SVGG.class, foo.getClass());
+		Assert.assertEquals("unknown", "foo", foo.getSVGClassName());
+		SVGText text = SVGText.extractSelfAndDescendantTexts(svg).get(0);
+		Assert.assertEquals("text", "abc", text.getValue());
+	}
+}
@@ -180,6 +180,34 @@ public class SVGUtilTest {
 		Assert.assertEquals("both just", 2, includedList.size());
 	}
 
+	@Test
+	public void testApplyAndRemoveCumulativeTransforms() {
+		SVGSVG svg = new SVGSVG();
+		SVGG g = new SVGG();
+		g.setTransform(new Transform2(new Vector2(10., 20.)));
+		svg.appendChild(g);
+		SVGG g1 = new SVGG();
+		g1.setTransform(new Transform2(new double[]{2., 0., 0., 0., 2., 0., 0., 0., 1.}));
+		g.appendChild(g1);
+		SVGLine line = new SVGLine(new Real2(0., 0.), new Real2(5., 0.));
+		g1.appendChild(line);
+		SVGCircle circle = new SVGCircle(new Real2(1., 1.), 1.);
+		circle.setTransform(new Transform2(new Vector2(3., 0.)));
+		g.appendChild(circle);
+		SVGText text = new SVGText(new Real2(1., 2.), "a");
+		g.appendChild(text);
+		
+		SVGUtil.applyAndRemoveCumulativeTransformsFromDocument(circle);
+		Assert.assertTrue(line.getXY(0).isEqualTo(new Real2(10., 20.), 0.001));
+		Assert.assertTrue(line.getXY(1).isEqualTo(new Real2(20., 20.), 0.001));
+		Assert.assertTrue(circle.getXY().isEqualTo(new Real2(14., 21.), 0.001));
+		Assert.assertTrue(text.getXY().isEqualTo(new Real2(11., 22.), 0.001));
+		Assert.assertEquals(0, svg.query("//@transform").size());
+		// only once
+		SVGUtil.applyAndRemoveCumulativeTransformsFromDocument(svg);
+		Assert.assertTrue(line.getXY(0).isEqualTo(new Real2(10., 20.), 0.001));
+	}
+
 	// ================================================================
 	
 	private SVGRect createRect(Real2 xy0, Real2 xy1, String fill, String stroke, double strokeWidth) {
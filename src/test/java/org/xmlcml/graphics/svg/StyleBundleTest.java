@@ -0,0 +1,54 @@
+package org.xmlcml.graphics.svg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+
+public class StyleBundleTest {
+
+	@Test
+	public void testProcessStyle() {
+		StyleBundle styleBundle = new StyleBundle(" fill : red;stroke:blue ; stroke-width : 0.5px; ;font-size:8.0; marker-end:url(#a:b)");
+		Assert.assertEquals("red", styleBundle.getFill());
+		Assert.assertEquals("blue", styleBundle.getStroke());
+		Assert.assertEquals(0.5, styleBundle.getStrokeWidth(), 0.000001);
+		Assert.assertEquals(8.0, styleBundle.getFontSize(), 0.000001);
+		Assert.assertEquals("url(#a:b)", styleBundle.getSubStyle("marker-end"));
+		Assert.assertNull(new StyleBundle("  ").getFill());
+	}
+
+	@Test
+	public void testSharedStyleBundle() {
+		String style = "fill:red;stroke:blue;";
+		StyleBundle shared = StyleBundle.getSharedStyleBundle(style);
+		Assert.assertTrue(shared.isShared());
+		Assert.assertSame(shared, StyleBundle.getSharedStyleBundle(new String(style)));
+		try {
+			shared.setFill("green");
+			Assert.fail("should not modify shared bundle");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		StyleBundle copy = new StyleBundle(shared);
+		Assert.assertFalse(copy.isShared());
+		copy.setFill("green");
+		Assert.assertEquals("red", shared.getFill());
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+		SVGCircle circle0 = new SVGCircle(new Real2(10., 20.), 3.);
+		SVGCircle circle1 = new SVGCircle(new Real2(30., 20.), 3.);
+		for (SVGCircle circle : new SVGCircle[] {circle0, circle1}) {
+			circle.setUseStyleAttribute(true);
+			circle.setStroke("red");
+		}
+		Assert.assertEquals(circle0.getStyle(), circle1.getStyle());
+		Assert.assertEquals("red", circle0.getStroke());
+		Assert.assertEquals("red", circle1.getStroke());
+		circle0.setStroke("blue");
+		Assert.assertEquals("blue", circle0.getStroke());
+		Assert.assertEquals("red", circle1.getStroke());
+		Assert.assertEquals("red", StyleBundle.getStroke(circle1));
+	}
+}
@@ -0,0 +1,62 @@
+package org.xmlcml.graphics.svg.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.graphics.svg.Fixtures;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGImage;
+import org.xmlcml.graphics.svg.SVGUtil;
+
+public class ImageBatchExporterTest {
+	private static final Logger LOG = Logger.getLogger(ImageBatchExporterTest.class);
+
+	@Test
+	public void testExportPages() throws IOException {
+		File outputDirectory = new File("target/imagebatch");
+		ImageBatchExporter exporter = new ImageBatchExporter(outputDirectory);
+		exporter.setThreadCount(2);
+		exporter.setQueueCapacity(1);
+		List<File> files = Arrays.asList(new File[] {
+				Fixtures.LARGE_IMAGE_SVG,
+				new File(Fixtures.SVG_IMAGES_DIR, "missing.svg"),
+		});
+		int count = exporter.export(files);
+		LOG.trace(exporter.getReport());
+		List<SVGImage> imageList = SVGImage.extractSelfAndDescendantImages(
+				SVGElement.readAndCreateSVG(Fixtures.LARGE_IMAGE_SVG));
+		Assert.assertTrue(imageList.size() > 1);
+		Assert.assertEquals(imageList.size(), count);
+		Assert.assertEquals(0, exporter.getFailedImageCount());
+		Assert.assertEquals(1, exporter.getPageCount());
+		Assert.assertEquals(1, exporter.getFailedPageCount());
+		Assert.assertTrue(exporter.getImageWriterCount() <= 2);
+		Assert.assertTrue(exporter.getByteCount() > 0);
+		String fileroot = "multiple-image-page6";
+		for (int i = 0; i < imageList.size(); i++) {
+			BufferedImage expected = imageList.get(i).getBufferedImage();
+			BufferedImage image = ImageIO.read(new File(outputDirectory, fileroot+"."+(i + 1)+".png"));
+			Assert.assertEquals(expected.getWidth(), image.getWidth());
+			Assert.assertEquals(expected.getHeight(), image.getHeight());
+			Assert.assertEquals(expected.getRGB(0, 0), image.getRGB(0, 0));
+		}
+	}
+
+	@Test
+	public void testExportElement() throws IOException {
+		SVGElement svgElement = SVGUtil.parseToSVGElement(Fixtures.IMAGE_SVG);
+		ImageBatchExporter exporter = new ImageBatchExporter(new File("target/imagebatch"));
+		Assert.assertEquals(1, exporter.export(svgElement, "single"));
+		BufferedImage image = ImageIO.read(new File("target/imagebatch/single.1.png"));
+		Assert.assertEquals(16, image.getWidth());
+		Assert.assertEquals(1, exporter.getImageWriterCount());
+	}
+}
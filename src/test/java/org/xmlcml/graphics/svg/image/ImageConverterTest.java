@@ -10,10 +10,17 @@ import org.xmlcml.graphics.svg.SVGImage;
 import org.xmlcml.graphics.svg.SVGUtil;
 import org.xmlcml.xml.XMLUtil;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.List;
 
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+
 
 public class ImageConverterTest {
 
@@ -99,4 +106,62 @@ public class ImageConverterTest {
 		SVGUtil.debug(svgElement, "target/largeElement.svg", 1);
 	}
 	
+	@Test
+	public void testStreamingExtraction() throws IOException {
+		ImageConverter imageConverter = new ImageConverter();
+		imageConverter.readSVGFile(Fixtures.LARGE_IMAGE_SVG);
+		imageConverter.setImageDirectory(new File(new File("target"), "images/"));
+		imageConverter.setFileroot("imagey");
+		imageConverter.createImageFiles();
+		imageConverter.replaceHrefDataWithFileRef("../");
+		String svgString = imageConverter.getSVGString();
+
+		ImageConverter streamingConverter = new ImageConverter();
+		streamingConverter.setImageDirectory(new File(new File("target"), "images/"));
+		streamingConverter.setFileroot("imagey");
+		File outputFile = new File("target/streaming/largeElement.svg");
+		List<String> imageFilenameList = streamingConverter.extractImageFiles(Fixtures.LARGE_IMAGE_SVG, outputFile, "../");
+		Assert.assertEquals(svgString, FileUtils.readFileToString(outputFile, "UTF-8"));
+		Assert.assertTrue(imageFilenameList.size() > 0);
+		for (String filename : imageFilenameList) {
+			Assert.assertNotNull(filename, ImageIO.read(new File(filename)));
+		}
+	}
+	
+	@Test
+	public void testStreamingDecode() throws IOException {
+		File svgFile = new File("target/streaming/image.svg");
+		FileUtils.writeStringToFile(svgFile, Fixtures.IMAGE_SVG, "UTF-8");
+		StreamingImageExtractor extractor = new StreamingImageExtractor(new File("target/streaming/images"));
+		List<File> imageFiles = extractor.extractImages(svgFile);
+		Assert.assertEquals(1, imageFiles.size());
+		Assert.assertEquals(SVGImage.IMAGE_PNG, extractor.getEmbeddedMimeTypes().get(0));
+		BufferedImage image = ImageIO.read(imageFiles.get(0));
+		ImageConverter imageConverter = new ImageConverter();
+		imageConverter.readSVGString(Fixtures.IMAGE_SVG);
+		BufferedImage expected = SVGImage.readSrcDataToBufferedImage(imageConverter.extractHrefStrings().get(0));
+		Assert.assertEquals(16, image.getWidth());
+		for (int y = 0; y < 16; y++) {
+			for (int x = 0; x < 16; x++) {
+				Assert.assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+	}
+	
+	@Test
+	public void testStreamingLongHref() throws IOException {
+		StringBuilder href = new StringBuilder("http://www.example.org/images/");
+		for (int i = 0; i < 20; i++) {
+			href.append("abcdefghij");
+		}
+		href.append(".png");
+		String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+				+ "<image xlink:href=\""+href+"\" width=\"10\"/></svg>";
+		StreamingImageExtractor extractor = new StreamingImageExtractor(new File("target/streaming/images"));
+		StringWriter writer = new StringWriter();
+		List<File> imageFiles = extractor.extractImages(new StringReader(svg), writer, "../");
+		Assert.assertEquals(0, imageFiles.size());
+		Assert.assertEquals(svg, writer.toString());
+	}
+	
 }
@@ -0,0 +1,89 @@
+package org.xmlcml.graphics.svg.image;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Transform2;
+import org.xmlcml.euclid.Vector2;
+import org.xmlcml.graphics.svg.SVGCircle;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGSVG;
+
+public class TiledRasterizerTest {
+
+	private static SVGSVG createPage() {
+		SVGSVG svg = new SVGSVG();
+		SVGRect rect = new SVGRect(new Real2(10., 10.), new Real2(60., 40.));
+		rect.setFill("blue");
+		rect.setStroke("none");
+		svg.appendChild(rect);
+		SVGG g = new SVGG();
+		g.setTransform(new Transform2(new Vector2(100., 0.)));
+		svg.appendChild(g);
+		Random random = new Random(5);
+		for (int i = 0; i < 200; i++) {
+			SVGLine line = new SVGLine(new Real2(random.nextDouble() * 200, random.nextDouble() * 300),
+					new Real2(random.nextDouble() * 200, random.nextDouble() * 300));
+			line.setStroke("#336699");
+			line.setStrokeWidth(0.5 + random.nextDouble());
+			g.appendChild(line);
+		}
+		SVGPath path = new SVGPath("M20 200 C 60 150 120 250 180 200 L 180 280 Z");
+		path.setFill("red");
+		path.setStroke("black");
+		svg.appendChild(path);
+		SVGCircle circle = new SVGCircle(new Real2(250., 250.), 30.);
+		circle.setFill("green");
+		svg.appendChild(circle);
+		return svg;
+	}
+
+	@Test
+	public void testTilesAgainstSingleTile() {
+		SVGSVG svg = createPage();
+		TiledRasterizer rasterizer = new TiledRasterizer();
+		rasterizer.setThreadCount(1);
+		rasterizer.setTileSize(1000);
+		BufferedImage expected = rasterizer.render(svg, 320, 320);
+		Assert.assertEquals(203, rasterizer.getItemCount());
+		rasterizer.setThreadCount(4);
+		rasterizer.setTileSize(37);
+		BufferedImage image = rasterizer.render(svg, 320, 320);
+		for (int y = 0; y < 320; y++) {
+			for (int x = 0; x < 320; x++) {
+				Assert.assertEquals("pixel "+x+","+y, expected.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+		Assert.assertEquals(Color.BLUE.getRGB(), image.getRGB(30, 30));
+		Assert.assertEquals(Color.WHITE.getRGB(), image.getRGB(5, 5));
+		Assert.assertEquals(Color.GREEN.getRGB(), image.getRGB(250, 250));
+	}
+
+	@Test
+	public void testScale() {
+		SVGSVG svg = createPage();
+		TiledRasterizer rasterizer = new TiledRasterizer();
+		rasterizer.setScale(0.5);
+		BufferedImage image = rasterizer.render(svg);
+		// covers the circle (to 280, 280), not more than the lines (to 300, 300)
+		Assert.assertTrue(image.getWidth() >= 140 && image.getWidth() <= 150);
+		Assert.assertTrue(image.getHeight() >= 140 && image.getHeight() <= 150);
+		Assert.assertEquals(Color.BLUE.getRGB(), image.getRGB(15, 15));
+	}
+
+	@Test
+	public void testCachedPath2D() {
+		SVGPath path = new SVGPath("M10 10 L20 10 L20 20");
+		Assert.assertSame(path.getOrCreatePath2D(), path.getOrCreatePath2D());
+		Assert.assertEquals(20.0, path.getOrCreatePath2D().getBounds2D().getMaxY(), 0.000001);
+		path.setDString("M10 10 L20 10 L20 30");
+		Assert.assertEquals(30.0, path.getOrCreatePath2D().getBounds2D().getMaxY(), 0.000001);
+	}
+}
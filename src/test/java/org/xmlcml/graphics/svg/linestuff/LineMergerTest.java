@@ -98,5 +98,45 @@ public class LineMergerTest {
 		}
 	}
 
+	@Test
+	public void testJoinTouchingLines() {
+		List<SVGLine> svgLines = new ArrayList<SVGLine>();
+		svgLines.add(new SVGLine(new Real2(1., 0.), new Real2(2., 0.)));
+		// antiparallel
+		svgLines.add(new SVGLine(new Real2(3., 0.), new Real2(2., 0.)));
+		// overlaps but does not touch
+		svgLines.add(new SVGLine(new Real2(1.5, 0.), new Real2(2.5, 0.)));
+		svgLines.add(new SVGLine(new Real2(0., 0.), new Real2(1., 0.)));
+		int i = 0;
+		for (SVGLine line : svgLines) {
+			line.setId("H"+(i++));
+		}
+		svgLines = LineMerger.mergeLines(svgLines, EPS, MergeMethod.TOUCHING_LINES);
+		Assert.assertEquals(2, svgLines.size());
+		Assert.assertEquals("H2", svgLines.get(0).getId());
+		SVGLine newLine = svgLines.get(1);
+		Assert.assertEquals("H0xx", newLine.getId());
+		Assert.assertTrue(SVGLine.isEqual(new SVGLine(new Real2(0., 0.), new Real2(3., 0.)), newLine, EPS));
+	}
+
+	@Test
+	public void testJoinGridLines() {
+		List<SVGLine> svgLines = new ArrayList<SVGLine>();
+		// 50 rows and 50 columns each of 40 touching segments, in scrambled order
+		for (int k = 0; k < 40; k++) {
+			for (int j = 0; j < 50; j++) {
+				int seg = (k * 17) % 40;
+				svgLines.add(new SVGLine(new Real2(seg * 10., j * 10.), new Real2((seg + 1) * 10., j * 10.)));
+				svgLines.add(new SVGLine(new Real2(j * 10., (seg + 1) * 10.), new Real2(j * 10., seg * 10.)));
+			}
+		}
+		List<SVGLine> merged = LineMerger.mergeLines(svgLines, EPS, MergeMethod.OVERLAP);
+		Assert.assertEquals(100, merged.size());
+		for (SVGLine line : merged) {
+			Assert.assertEquals(400., line.getLength(), EPS);
+		}
+		Assert.assertEquals(100, SVGLine.mergeParallelLines(svgLines, EPS).size());
+	}
+
 
 }
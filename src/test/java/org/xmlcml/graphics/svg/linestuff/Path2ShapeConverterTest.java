@@ -1,5 +1,6 @@
 package org.xmlcml.graphics.svg.linestuff;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -22,6 +23,7 @@ import org.xmlcml.graphics.svg.SVGRect;
 import org.xmlcml.graphics.svg.SVGSVG;
 import org.xmlcml.graphics.svg.SVGShape;
 import org.xmlcml.graphics.svg.SVGUtil;
+import org.xmlcml.graphics.svg.util.SVGWriter;
 import org.xmlcml.xml.XMLUtil;
 
 
@@ -458,6 +460,73 @@ public class Path2ShapeConverterTest {
     }
 
 
+    @Test
+    public void testParallelConversion() {
+    	File file = new File(Fixtures.FIGURE_DIR, "10.1186_s12885-016-2685-3_page7.svg");
+    	List<SVGPath> serialPaths = SVGPath.extractPaths(SVGElement.readAndCreateSVG(file));
+    	List<SVGPath> parallelPaths = SVGPath.extractPaths(SVGElement.readAndCreateSVG(file));
+    	Assert.assertTrue(serialPaths.size() > 50);
+    	List<SVGShape> serialShapes = new Path2ShapeConverter().convertPathsToShapes(serialPaths);
+    	Path2ShapeConverter parallelConverter = new Path2ShapeConverter();
+    	parallelConverter.setParallel(true);
+    	parallelConverter.setParallelism(4);
+    	List<SVGShape> parallelShapes = parallelConverter.convertPathsToShapes(parallelPaths);
+    	Assert.assertEquals(serialShapes.size(), parallelShapes.size());
+    	for (int i = 0; i < serialShapes.size(); i++) {
+    		Assert.assertEquals("shape "+i, serialShapes.get(i).toXML(), parallelShapes.get(i).toXML());
+    	}
+    }
+
+
+    @Test
+    public void testShapeCache() {
+    	Path2ShapeConverter converter = new Path2ShapeConverter();
+    	converter.setUseShapeCache(true);
+    	Path2ShapeConverter uncachedConverter = new Path2ShapeConverter();
+    	double[][] offsets = {{10., 20.}, {110.5, 20.}, {30.25, 300.75}};
+    	for (double[] offset : offsets) {
+    		double x = offset[0];
+    		double y = offset[1];
+    		// small square symbol and a tick mark
+    		String[] ds = {
+    				"M"+x+" "+y+" L"+(x+4.)+" "+y+" L"+(x+4.)+" "+(y+4.)+" L"+x+" "+(y+4.)+" Z",
+    				"M"+x+" "+y+" L"+(x+0.5)+" "+y+" L"+(x+0.5)+" "+(y+6.)+" L"+x+" "+(y+6.)+" Z",
+    		};
+    		for (String d : ds) {
+    			SVGPath path = new SVGPath(d);
+    			path.setStroke("black");
+    			SVGShape shape = converter.convertPathToShape(path);
+    			SVGShape uncachedShape = uncachedConverter.convertPathToShape(new SVGPath(path));
+    			Assert.assertEquals(uncachedShape.getClass(), shape.getClass());
+    			Assert.assertEquals(uncachedShape.toXML(), shape.toXML());
+    		}
+    	}
+    	Assert.assertEquals(2, converter.getShapeCacheSize());
+    	converter.setRectEpsilon(0.05);
+    	Assert.assertEquals(0, converter.getShapeCacheSize());
+    }
+
+    @Test
+    public void testUnformattedShapes() throws Exception {
+    	String d = "M10.12345 20.0 L14.12345 20.0 L14.12345 24.0 L10.12345 24.0 Z";
+    	SVGShape formatted = new Path2ShapeConverter().convertPathToShape(new SVGPath(d));
+    	Assert.assertTrue(formatted instanceof SVGRect);
+    	Assert.assertEquals(10.123, ((SVGRect) formatted).getX(), 0.0000001);
+    	Path2ShapeConverter converter = new Path2ShapeConverter();
+    	converter.setFormatShapes(false);
+    	SVGShape shape = converter.convertPathToShape(new SVGPath(d));
+    	Assert.assertEquals(10.12345, ((SVGRect) shape).getX(), 0.0000001);
+    	// rounded only on output
+    	ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    	SVGWriter writer = new SVGWriter(baos);
+    	writer.setDecimalPlaces(2);
+    	writer.writeElement(shape);
+    	writer.close();
+    	Assert.assertTrue(baos.toString("UTF-8").contains(" x=\"10.12\""));
+    	Assert.assertEquals(10.12345, ((SVGRect) shape).getX(), 0.0000001);
+    }
+
+
 	// =============================
 	
 	private void writeColouredShapes(List<SVGShape> shapes, File file) {
@@ -0,0 +1,65 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGPolyline;
+
+public class PolylineJoinerTest {
+
+	private static SVGPolyline createPolyline(double... xy) {
+		Real2Array points = new Real2Array();
+		for (int i = 0; i < xy.length; i += 2) {
+			points.add(new Real2(xy[i], xy[i + 1]));
+		}
+		return new SVGPolyline(points);
+	}
+
+	@Test
+	public void testJoinShuffledSegments() {
+		List<SVGPolyline> segmentList = new ArrayList<SVGPolyline>();
+		for (int i = 0; i < 1000; i++) {
+			// small gaps within eps
+			segmentList.add(createPolyline(i, Math.sin(i * 0.1), i + 0.9995, Math.sin((i + 1) * 0.1)));
+		}
+		Collections.shuffle(segmentList, new Random(3));
+		List<SVGPolyline> joinedList = SVGPolyline.mergePolylinesAtEndPoints(segmentList, 0.001);
+		Assert.assertEquals(1, joinedList.size());
+		Real2Array points = joinedList.get(0).getReal2Array();
+		Assert.assertEquals(1001, points.size());
+		Assert.assertEquals(0.0, points.get(0).getX(), 0.000001);
+		Assert.assertEquals(999.9995, points.get(1000).getX(), 0.000001);
+	}
+
+	@Test
+	public void testBranchesAndLoops() {
+		List<SVGPolyline> polylineList = new ArrayList<SVGPolyline>();
+		polylineList.add(createPolyline(0., 0., 10., 0.));
+		// two polylines start at (10,0); the first is taken
+		polylineList.add(createPolyline(10., 0., 20., 0.));
+		polylineList.add(createPolyline(10., 0., 10., 10.));
+		// triangle as three open sides
+		polylineList.add(createPolyline(100., 0., 110., 0.));
+		polylineList.add(createPolyline(105., 10., 100., 0.));
+		polylineList.add(createPolyline(110., 0., 105., 10.));
+		// reversed direction is not joined
+		polylineList.add(createPolyline(30., 30., 20., 0.));
+		List<List<SVGPolyline>> chains = new PolylineJoiner(0.01).createChains(polylineList);
+		Assert.assertEquals(4, chains.size());
+		Assert.assertEquals(2, chains.get(0).size());
+		Assert.assertSame(polylineList.get(1), chains.get(0).get(1));
+		Assert.assertSame(polylineList.get(2), chains.get(1).get(0));
+		Assert.assertEquals(3, chains.get(2).size());
+		Assert.assertSame(polylineList.get(3), chains.get(2).get(0));
+		Assert.assertSame(polylineList.get(5), chains.get(2).get(1));
+		Assert.assertSame(polylineList.get(6), chains.get(3).get(0));
+		SVGPolyline triangle = PolylineJoiner.createJoinedPolyline(chains.get(2));
+		Assert.assertEquals(4, triangle.getReal2Array().size());
+	}
+}
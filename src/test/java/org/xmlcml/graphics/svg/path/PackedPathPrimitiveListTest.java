@@ -0,0 +1,81 @@
+package org.xmlcml.graphics.svg.path;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.SVGPath;
+
+public class PackedPathPrimitiveListTest {
+	private static final Logger LOG = Logger.getLogger(PackedPathPrimitiveListTest.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	private static final String D = "M10 20 L30 20 l0 10 C40 40 50 40 60 30 Q70 20 80 30 H5 z";
+
+	@Test
+	public void testSignature() {
+		PackedPathPrimitiveList packed = new SVGPathParser().parseDStringToPacked(D);
+		PathPrimitiveList primitiveList = new SVGPathParser().parseDString(D);
+		Assert.assertEquals("size", 7, packed.size());
+		Assert.assertEquals("sig", primitiveList.createSignature(), packed.createSignature());
+		Assert.assertEquals("sig", "MLLCQLZ", packed.createSignature());
+	}
+
+	@Test
+	public void testCursor() {
+		PackedPathPrimitiveList packed = new SVGPathParser().parseDStringToPacked(D);
+		PackedPathPrimitiveList.Cursor cursor = packed.cursor();
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(PackedPathPrimitiveList.MOVE, cursor.getOpcode());
+		Assert.assertTrue(cursor.next());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals('L', cursor.getTag());
+		Assert.assertEquals("relative", 30.0, cursor.getLastY(), 0.000001);
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(PackedPathPrimitiveList.CUBIC, cursor.getOpcode());
+		Assert.assertEquals(3, cursor.getPointCount());
+		Assert.assertEquals(50.0, cursor.getX(1), 0.000001);
+		Assert.assertEquals(60.0, cursor.getLastX(), 0.000001);
+		Assert.assertTrue(cursor.next());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals("horizontal", 5.0, cursor.getX(0), 0.000001);
+		Assert.assertEquals("horizontal", 30.0, cursor.getY(0), 0.000001);
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(PackedPathPrimitiveList.CLOSE, cursor.getOpcode());
+		Assert.assertEquals(10.0, cursor.getX(0), 0.000001);
+		Assert.assertFalse(cursor.next());
+	}
+
+	@Test
+	public void testBoundingBox() {
+		PackedPathPrimitiveList packed = new SVGPathParser().parseDStringToPacked(D);
+		Real2Range bbox = packed.getBoundingBox();
+		Assert.assertEquals("x", 5.0, bbox.getXRange().getMin(), 0.000001);
+		Assert.assertEquals("x", 80.0, bbox.getXRange().getMax(), 0.000001);
+		Assert.assertEquals("y", 40.0, bbox.getYRange().getMax(), 0.000001);
+		// control points are not first points
+		Real2Range firstBBox = packed.getFirstPointBoundingBox();
+		Assert.assertEquals("y", 40.0, firstBBox.getYRange().getMax(), 0.000001);
+		Assert.assertEquals("x", 70.0, firstBBox.getXRange().getMax(), 0.000001);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		PathPrimitiveList primitiveList = new SVGPathParser().parseDString(D);
+		PackedPathPrimitiveList packed = PackedPathPrimitiveList.createPackedList(primitiveList);
+		Assert.assertEquals("d", primitiveList.createD(), packed.createPathPrimitiveList().createD());
+	}
+
+	@Test
+	public void testSVGPath() {
+		SVGPath path = new SVGPath(D);
+		Assert.assertEquals("sig", "MLLCQLZ", path.getSignature());
+		Assert.assertEquals("coords", 7, path.getCoords().size());
+		Assert.assertSame("cached", path.getPackedPrimitives(), path.getPackedPrimitives());
+		path.setDString("M0 0 L1 1");
+		Assert.assertEquals("reset", 2, path.getPackedPrimitives().size());
+	}
+}
@@ -253,4 +253,58 @@ public class SVGPathDStringParserTest {
 	}
 	
 
+	@Test
+	public void testCompactNumbers() {
+		// SVG allows numbers without separators
+		PathPrimitiveList primitives = new SVGPathParser().parseDString("M1-2L.5.5-3e1,+4E-1z");
+		Assert.assertEquals("signature", "MLLZ", primitives.createSignature());
+		Assert.assertEquals("x0", 1.0, primitives.get(0).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals("y0", -2.0, primitives.get(0).getFirstCoord().getY(), 0.0);
+		Assert.assertEquals("x1", 0.5, primitives.get(1).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals("y1", 0.5, primitives.get(1).getFirstCoord().getY(), 0.0);
+		Assert.assertEquals("x2", -30.0, primitives.get(2).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals("y2", 0.4, primitives.get(2).getFirstCoord().getY(), 0.0);
+	}
+
+	@Test
+	public void testNumbersSameAsParseDouble() {
+		String[] numbers = {"327.397", "0.000123", "-0.5", "12345678.9", "0.30000000000000004", "1.5e-7", "123456789012345678901"};
+		SVGPathParser parser = new SVGPathParser();
+		for (String number : numbers) {
+			PathPrimitiveList primitives = parser.parseDString("M"+number+" "+number);
+			double expected = Double.parseDouble(number);
+			Assert.assertEquals(number, expected, primitives.get(0).getFirstCoord().getX(), 0.0);
+			Assert.assertEquals(number, expected, primitives.get(0).getFirstCoord().getY(), 0.0);
+		}
+	}
+
+	@Test
+	public void testReuseParser() {
+		SVGPathParser parser = new SVGPathParser();
+		PathPrimitiveList primitives1 = parser.parseDString(dString);
+		PathPrimitiveList primitives2 = parser.parseDString("M0 0 L1 1");
+		PathPrimitiveList primitives3 = parser.parseDString(dString);
+		Assert.assertEquals("first", 31, primitives1.size());
+		Assert.assertEquals("second", 2, primitives2.size());
+		Assert.assertEquals("third", primitives1.createSignature(), primitives3.createSignature());
+	}
+
+	@Test
+	public void testCoordsFollowDString() {
+		SVGPath path = new SVGPath("M0 0 L1 1");
+		Assert.assertEquals("coords", 2, path.getCoords().size());
+		path.setDString("M0 0 L1 1 L2 2");
+		Assert.assertEquals("coords", 3, path.getCoords().size());
+	}
+
+	@Test
+	public void testBadCharacter() {
+		try {
+			new SVGPathParser().parseDString("M0 0 L1 1 ; L2 2");
+			Assert.fail("should throw");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Unknown character"));
+		}
+	}
+
 }
@@ -98,6 +98,48 @@ public class PlotBoxTest {
 		plotBox.writeProcessedSVG(new File(TARGET_PLOT+fileRoot+".svg"));
 	}
 	
+	@Test
+	public void testInMemoryPipeline() throws IOException {
+		String fileRoot = "bakkerplot";
+		File inputSVGFile = new File(Fixtures.PLOT_DIR, fileRoot + ".svg");
+		PlotBox plotBox0 = new PlotBox();
+		plotBox0.readAndCreateCSVPlot(inputSVGFile);
+
+		PlotPipeline pipeline = PlotPipeline.createInMemoryPipeline();
+		Assert.assertEquals(PlotBox.Stage.values().length - 2, pipeline.getStages().size());
+		PlotBox plotBox = pipeline.run(inputSVGFile);
+		Assert.assertEquals(plotBox0.getCSV(), plotBox.getCSV());
+		Assert.assertTrue(plotBox.getScaledXYs().size() > 0);
+		pipeline.run(inputSVGFile);
+		Assert.assertEquals(2, pipeline.getRunCount());
+		Assert.assertEquals(0, pipeline.getFailedRunCount());
+		long points = pipeline.getStageCounts().get(PlotBox.Stage.EXTRACT_POINTS.getName());
+		Assert.assertEquals(2 * plotBox.getScreenXYs().size(), points);
+		Assert.assertFalse(pipeline.getStageNanos().containsKey(PlotBox.Stage.WRITE_CSV.getName()));
+		LOG.trace(pipeline.getReport());
+
+		// reuse the graphics: rescale with fewer decimals
+		PlotPipeline rescale = new PlotPipeline();
+		rescale.addStage(PlotBox.Stage.SCALE_POINTS).addStage(PlotBox.Stage.CREATE_CSV);
+		plotBox.setNdecimal(0);
+		rescale.run(plotBox);
+		Assert.assertEquals(plotBox0.getScaledXYs().size(), plotBox.getScaledXYs().size());
+	}
+
+	@Test
+	public void testPipelineFailure() throws IOException {
+		PlotPipeline pipeline = PlotPipeline.createInMemoryPipeline();
+		try {
+			pipeline.run(new File(Fixtures.PLOT_DIR, "13148-016-0230-5fig2.svg"));
+			Assert.fail("should throw exception as cannot yet do glyphs");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("No axial tickbox: BOTTOM", e.getMessage());
+		}
+		Assert.assertEquals(1, pipeline.getFailedRunCount());
+		Assert.assertTrue(pipeline.getStageMillis().containsKey(PlotBox.Stage.READ_GRAPHICS.getName()));
+		Assert.assertFalse(pipeline.getStageMillis().containsKey(PlotBox.Stage.CREATE_CSV.getName()));
+	}
+
 	@Test
 	public void testTilburgVectors() throws IOException {
 		File TILBURG_DIR = new File(Fixtures.PLOT_DIR, "tilburgVectors");
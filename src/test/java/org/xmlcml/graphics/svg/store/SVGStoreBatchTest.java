@@ -0,0 +1,59 @@
+package org.xmlcml.graphics.svg.store;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.graphics.svg.Fixtures;
+
+public class SVGStoreBatchTest {
+	private static final Logger LOG = Logger.getLogger(SVGStoreBatchTest.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	@Test
+	public void testParallelBatch() {
+		List<File> files = Arrays.asList(new File[] {
+				new File(Fixtures.FIGURE_DIR, "10.1186_s12885-016-2685-3_page7.svg"),
+				Fixtures.LINEPLOTS_10_2_SVG,
+				new File(Fixtures.PLOT_DIR, "missing.svg"),
+				Fixtures.SCATTERPLOT_7_2_SVG,
+		});
+		SVGStoreBatch batch = new SVGStoreBatch();
+		batch.setThreadCount(2);
+		List<SVGStorePageResult> results = batch.process(files);
+		Assert.assertEquals(4, results.size());
+		SVGStoreBatch serialBatch = new SVGStoreBatch();
+		for (int i = 0; i < files.size(); i++) {
+			SVGStorePageResult result = results.get(i);
+			LOG.trace(result);
+			Assert.assertEquals("order", files.get(i), result.getFile());
+			SVGStorePageResult serialResult = serialBatch.processPage(files.get(i));
+			Assert.assertEquals("ok", serialResult.isOK(), result.isOK());
+			if (result.isOK()) {
+				Assert.assertNotNull(result.getStore());
+				Assert.assertEquals(5, result.getStageMillis().size());
+				Assert.assertEquals(serialResult.getHorizontalLineCount(), result.getHorizontalLineCount());
+				Assert.assertEquals(serialResult.getVerticalLineCount(), result.getVerticalLineCount());
+				Assert.assertEquals(serialResult.getHorizontalTextCount(), result.getHorizontalTextCount());
+				Assert.assertEquals(serialResult.hasFullLineBox(), result.hasFullLineBox());
+			}
+		}
+		Assert.assertFalse("missing", results.get(2).isOK());
+	}
+
+	@Test
+	public void testDiscardStores() {
+		SVGStoreBatch batch = new SVGStoreBatch();
+		batch.setKeepStores(false);
+		SVGStorePageResult result = batch.processPage(Fixtures.LINEPLOTS_10_2_SVG);
+		Assert.assertTrue(result.isOK());
+		Assert.assertNull(result.getStore());
+		Assert.assertTrue(result.getTotalMillis() >= result.getReadMillis());
+	}
+}
@@ -2,11 +2,14 @@ package org.xmlcml.graphics.svg.store;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.junit.Assert;
 import org.junit.Test;
 import org.xmlcml.graphics.svg.Fixtures;
+import org.xmlcml.graphics.svg.SVGSVG;
 import org.xmlcml.graphics.svg.plot.PlotBox;
 
 public class SVGStoreTest {
@@ -24,4 +27,21 @@ public class SVGStoreTest {
 		store.readGraphicsComponents(inputSVGFile);
 	}
 
+	@Test
+	public void testDebugModes() throws IOException {
+		String fileRoot = "10.1186_s12885-016-2685-3_page7";
+		File inputSVGFile = new File(Fixtures.FIGURE_DIR, fileRoot+".svg");
+		SVGStore store = new SVGStore();
+		Assert.assertFalse("default off", store.getDebugSink().isActive());
+		store.readGraphicsComponents(inputSVGFile);
+		Assert.assertEquals(0, store.getDebugSink().getSVGByFile().size());
+		
+		store = new SVGStore();
+		store.setDebugMode(SVGDebugSink.DebugMode.MEMORY);
+		store.readGraphicsComponents(inputSVGFile);
+		Map<File, SVGSVG> svgByFile = store.getDebugSink().getSVGByFile();
+		Assert.assertTrue(svgByFile.containsKey(new File("target/debug/"+fileRoot+".lines.svg")));
+		Assert.assertTrue(svgByFile.containsKey(new File("target/paths/"+fileRoot+".debug.svg")));
+	}
+
 }
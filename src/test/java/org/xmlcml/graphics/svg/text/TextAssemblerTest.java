@@ -0,0 +1,106 @@
+package org.xmlcml.graphics.svg.text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Angle;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.SVGText;
+
+public class TextAssemblerTest {
+
+	private static final double FONT_SIZE = 10.0;
+
+	/** single characters; ' ' is a word gap and '|' a phrase gap.
+	 *
+	 * characters abut (ROT90 read up the page).
+	 */
+	private static List<SVGText> createCharacters(String s, Real2 origin, boolean rot90) {
+		List<SVGText> textList = new ArrayList<SVGText>();
+		double next = rot90 ? origin.getY() : origin.getX();
+		for (char c : s.toCharArray()) {
+			if (c == ' ') {
+				next += (rot90 ? -0.5 : 0.5) * FONT_SIZE;
+				continue;
+			} else if (c == '|') {
+				next += (rot90 ? -5.0 : 5.0) * FONT_SIZE;
+				continue;
+			}
+			if (rot90) {
+				// place the box so its yMax is at next
+				SVGText text = createCharacter(c, new Real2(origin.getX(), 0.0), true);
+				double yOffset = text.getBoundingBox().getYMax();
+				text = createCharacter(c, new Real2(origin.getX(), next - yOffset), true);
+				next = text.getBoundingBox().getYMin();
+				textList.add(text);
+			} else {
+				SVGText text = createCharacter(c, new Real2(next, origin.getY()), false);
+				next = text.getBoundingBox().getXMax();
+				textList.add(text);
+			}
+		}
+		return textList;
+	}
+
+	private static SVGText createCharacter(char c, Real2 xy, boolean rot90) {
+		SVGText text = new SVGText(xy, String.valueOf(c));
+		text.setFontSize(FONT_SIZE);
+		if (rot90) {
+			text.rotateText(new Angle(Math.PI / 2));
+		}
+		return text;
+	}
+
+	@Test
+	public void testUnorderedCharacters() {
+		List<SVGText> textList = new ArrayList<SVGText>();
+		textList.addAll(createCharacters("The quick|brown fox", new Real2(50., 100.), false));
+		textList.addAll(createCharacters("jumps", new Real2(50., 120.), false));
+		List<SVGText> rot90List = createCharacters("Axis label", new Real2(20., 300.), true);
+		Assert.assertTrue(rot90List.get(0).isRot90());
+		textList.addAll(rot90List);
+		Collections.shuffle(textList, new Random(3));
+
+		TextAssembler assembler = new TextAssembler();
+		List<SVGPhrase> phraseList = assembler.assemble(textList);
+		Assert.assertEquals(3, assembler.getLineCount());
+		Assert.assertEquals(0, assembler.getUnassembledTexts().size());
+		Assert.assertEquals(4, phraseList.size());
+		Assert.assertEquals("The quick", phraseList.get(0).toString());
+		Assert.assertEquals("brown fox", phraseList.get(1).toString());
+		Assert.assertEquals("jumps", phraseList.get(2).toString());
+		Assert.assertEquals(1, assembler.getRot90Phrases().size());
+		Assert.assertEquals("Axis label", assembler.getRot90Phrases().get(0).toString());
+		Assert.assertEquals(2, phraseList.get(0).getOrCreateWordList().size());
+	}
+
+	@Test
+	public void testBaselineAndFontSize() {
+		List<SVGText> textList = createCharacters("ab", new Real2(0., 100.), false);
+		// slightly displaced baseline is in the same line
+		SVGText c = new SVGText(new Real2(textList.get(1).getBoundingBox().getXMax(), 100.5), "c");
+		c.setFontSize(FONT_SIZE);
+		textList.add(c);
+		// superscript is a separate line
+		SVGText sup = new SVGText(new Real2(c.getBoundingBox().getXMax(), 96.), "2");
+		sup.setFontSize(6.0);
+		textList.add(sup);
+		// other rotations are not assembled
+		SVGText rotated = new SVGText(new Real2(0., 0.), "x");
+		rotated.setFontSize(FONT_SIZE);
+		rotated.rotateText(new Angle(Math.PI / 4));
+		textList.add(rotated);
+		Collections.reverse(textList);
+		List<SVGPhrase> phraseList = SVGPhrase.createPhrasesFromUnorderedCharacters(textList);
+		Assert.assertEquals(2, phraseList.size());
+		Assert.assertEquals("2", phraseList.get(0).toString());
+		Assert.assertEquals("abc", phraseList.get(1).toString());
+		Real2Range bbox = phraseList.get(1).getBoundingBox();
+		Assert.assertNotNull(bbox);
+	}
+}
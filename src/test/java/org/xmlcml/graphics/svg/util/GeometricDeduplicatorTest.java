@@ -0,0 +1,94 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.euclid.RealArray;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGPolyline;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.SVGUtil;
+
+public class GeometricDeduplicatorTest {
+
+	@Test
+	public void testLinesAgainstPairwise() {
+		double eps = 0.1;
+		Random random = new Random(17);
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		for (int i = 0; i < 500; i++) {
+			Real2 xy0 = new Real2(random.nextInt(100) * 0.5, random.nextInt(100) * 0.5);
+			Real2 xy1 = xy0.plus(new Real2(random.nextInt(3) * 0.5, random.nextInt(3) * 0.5));
+			if (random.nextBoolean()) {
+				// jitter so that some duplicates lie across cell boundaries
+				xy0 = xy0.plus(new Real2(random.nextDouble() * 0.06 - 0.03, random.nextDouble() * 0.06 - 0.03));
+			}
+			lineList.add(new SVGLine(xy0, xy1));
+		}
+		List<SVGLine> expected = new ArrayList<SVGLine>();
+		for (SVGLine line : lineList) {
+			boolean found = false;
+			for (SVGLine line0 : expected) {
+				if (line0.hasEqualCoordinates(line, eps)) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				expected.add(line);
+			}
+		}
+		List<SVGLine> unique = GeometricDeduplicator.removeDuplicates(lineList, eps);
+		Assert.assertTrue(expected.size() < lineList.size());
+		Assert.assertEquals(expected, unique);
+	}
+
+	@Test
+	public void testMixedShapes() {
+		SVGG g = new SVGG();
+		List<SVGShape> shapeList = new ArrayList<SVGShape>();
+		shapeList.add(new SVGPath("M10 10 L20 10 L20 20"));
+		shapeList.add(new SVGPath("M10.001 10 L20 10 L20 20.001"));
+		shapeList.add(new SVGPath("M10 10 L20 10 L20 20 Z"));
+		shapeList.add(new SVGRect(new Real2(0., 0.), new Real2(5., 5.)));
+		shapeList.add(new SVGRect(new Real2(-0.002, 0.001), new Real2(5., 5.)));
+		shapeList.add(new SVGLine(new Real2(0., 0.), new Real2(5., 5.)));
+		shapeList.add(new SVGLine(new Real2(5., 5.), new Real2(0., 0.)));
+		for (SVGShape shape : shapeList) {
+			g.appendChild(shape);
+		}
+		List<SVGShape> unique = SVGUtil.removeDuplicateShapes(shapeList, 0.01);
+		Assert.assertEquals(5, unique.size());
+		Assert.assertNull(shapeList.get(1).getParent());
+		Assert.assertNull(shapeList.get(4).getParent());
+		Assert.assertEquals(5, g.getChildCount());
+	}
+
+	@Test
+	public void testEpsilonIsExclusive() {
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		lineList.add(new SVGLine(new Real2(0., 0.), new Real2(10., 0.)));
+		// exactly epsilon apart
+		lineList.add(new SVGLine(new Real2(0.5, 0.), new Real2(10.5, 0.)));
+		lineList.add(new SVGLine(new Real2(0.25, 0.), new Real2(10.25, 0.)));
+		List<SVGLine> unique = GeometricDeduplicator.removeDuplicates(lineList, 0.5);
+		Assert.assertEquals(2, unique.size());
+		Assert.assertSame(lineList.get(1), unique.get(1));
+
+		// same rule for polylines
+		List<SVGPolyline> polylineList = new ArrayList<SVGPolyline>();
+		polylineList.add(new SVGPolyline(new Real2Array(
+				new RealArray(new double[]{0., 10., 10.}), new RealArray(new double[]{0., 0., 10.}))));
+		polylineList.add(new SVGPolyline(new Real2Array(
+				new RealArray(new double[]{0.5, 10.5, 10.5}), new RealArray(new double[]{0., 0., 10.}))));
+		Assert.assertEquals(2, GeometricDeduplicator.removeDuplicates(polylineList, 0.5).size());
+	}
+}
@@ -0,0 +1,132 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGUtil;
+
+public class RTreeTest {
+	private static final Logger LOG = Logger.getLogger(RTreeTest.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	private static List<Real2Range> createRandomBoxes(int count, long seed) {
+		Random random = new Random(seed);
+		List<Real2Range> boxList = new ArrayList<Real2Range>();
+		for (int i = 0; i < count; i++) {
+			double x = random.nextDouble() * 500.0;
+			double y = random.nextDouble() * 800.0;
+			boxList.add(new Real2Range(
+					new RealRange(x, x + random.nextDouble() * 20.0),
+					new RealRange(y, y + random.nextDouble() * 10.0)));
+		}
+		return boxList;
+	}
+
+	private static boolean intersects(Real2Range box0, Real2Range box1) {
+		return box0.getXRange().getMin() <= box1.getXRange().getMax() &&
+				box1.getXRange().getMin() <= box0.getXRange().getMax() &&
+				box0.getYRange().getMin() <= box1.getYRange().getMax() &&
+				box1.getYRange().getMin() <= box0.getYRange().getMax();
+	}
+
+	private static boolean isContainedIn(Real2Range box, Real2Range container) {
+		return container.getXRange().getMin() <= box.getXRange().getMin() &&
+				box.getXRange().getMax() <= container.getXRange().getMax() &&
+				container.getYRange().getMin() <= box.getYRange().getMin() &&
+				box.getYRange().getMax() <= container.getYRange().getMax();
+	}
+
+	@Test
+	public void testBulkLoadAgainstScan() {
+		List<Real2Range> boxList = createRandomBoxes(2000, 17);
+		RTree<Real2Range> tree = RTree.createBoxTree(boxList);
+		Assert.assertEquals("size", 2000, tree.size());
+		Assert.assertTrue("height", tree.getHeight() >= 3);
+		List<Real2Range> queryList = createRandomBoxes(50, 42);
+		for (Real2Range query : queryList) {
+			query = new Real2Range(
+					new RealRange(query.getXRange().getMin(), query.getXRange().getMin() + 60.0),
+					new RealRange(query.getYRange().getMin(), query.getYRange().getMin() + 60.0));
+			List<Real2Range> intersecting = new ArrayList<Real2Range>();
+			List<Real2Range> contained = new ArrayList<Real2Range>();
+			for (Real2Range box : boxList) {
+				if (intersects(box, query)) {
+					intersecting.add(box);
+				}
+				if (isContainedIn(box, query)) {
+					contained.add(box);
+				}
+			}
+			// same boxes in same order
+			Assert.assertEquals("intersecting", intersecting, tree.findIntersecting(query));
+			Assert.assertEquals("contained", contained, tree.findContainedIn(query));
+		}
+	}
+
+	@Test
+	public void testInsertDelete() {
+		List<Real2Range> boxList = createRandomBoxes(300, 3);
+		RTree<Real2Range> tree = new RTree<Real2Range>(4);
+		for (Real2Range box : boxList) {
+			Assert.assertTrue(tree.insert(box, box));
+		}
+		Assert.assertEquals("size", 300, tree.size());
+		for (int i = 0; i < boxList.size(); i += 2) {
+			Assert.assertTrue(tree.delete(boxList.get(i)));
+		}
+		Assert.assertFalse("deleted", tree.delete(boxList.get(0)));
+		Assert.assertEquals("size", 150, tree.size());
+		Real2Range all = new Real2Range(new RealRange(-1.0, 1000.0), new RealRange(-1.0, 1000.0));
+		List<Real2Range> found = tree.findIntersecting(all);
+		Assert.assertEquals("found", 150, found.size());
+		for (int i = 0; i < found.size(); i++) {
+			Assert.assertSame(boxList.get(2 * i + 1), found.get(i));
+		}
+		Assert.assertFalse("invalid box", tree.insert(new Real2Range(), new Real2Range()));
+	}
+
+	@Test
+	public void testNearest() {
+		List<Real2Range> boxList = new ArrayList<Real2Range>();
+		for (int i = 0; i < 10; i++) {
+			boxList.add(new Real2Range(new RealRange(i * 10.0, i * 10.0 + 5.0), new RealRange(0.0, 5.0)));
+		}
+		RTree<Real2Range> tree = RTree.createBoxTree(boxList);
+		List<Real2Range> nearest = tree.findNearest(new Real2(33.0, 2.0), 3);
+		Assert.assertEquals("nearest", 3, nearest.size());
+		Assert.assertSame("inside", boxList.get(3), nearest.get(0));
+		Assert.assertSame(boxList.get(4), nearest.get(1));
+		Assert.assertSame(boxList.get(2), nearest.get(2));
+		Assert.assertEquals("containing", 1, tree.findContaining(new Real2(41.0, 1.0)).size());
+		Assert.assertEquals("gap", 0, tree.findContaining(new Real2(47.0, 1.0)).size());
+	}
+
+	@Test
+	public void testElementTree() {
+		List<SVGElement> rectList = new ArrayList<SVGElement>();
+		for (int i = 0; i < 20; i++) {
+			rectList.add(new SVGRect(new Real2(i * 10.0, 0.0), new Real2(i * 10.0 + 8.0, 8.0)));
+		}
+		RTree<SVGElement> tree = RTree.createElementTree(rectList);
+		Real2Range box = new Real2Range(new RealRange(15.0, 51.0), new RealRange(-1.0, 9.0));
+		Assert.assertEquals("within", SVGUtil.findElementsWithin(box, rectList),
+				SVGUtil.findElementsWithin(box, tree));
+		Assert.assertEquals("within", 3, SVGUtil.findElementsWithin(box, tree).size());
+		Assert.assertEquals("intersecting", SVGUtil.findElementsIntersecting(box, rectList),
+				SVGUtil.findElementsIntersecting(box, tree));
+		Assert.assertEquals("contained", SVGElement.extractElementsContainedInBox(rectList, box),
+				SVGElement.extractElementsContainedInBox(tree, box));
+	}
+}
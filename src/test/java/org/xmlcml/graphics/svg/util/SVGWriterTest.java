@@ -0,0 +1,130 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import nu.xom.Builder;
+import nu.xom.Document;
+import nu.xom.Element;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.graphics.svg.SVGConstants;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGSVG;
+import org.xmlcml.xml.XMLUtil;
+
+public class SVGWriterTest {
+
+	private static final String SVG_STRING = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+		+ "<g transform=\"matrix(1.00001,0,0,-1,0,792.123456)\">"
+		+ "<path d=\"M1.23456 2.0L3.14159-2.5e-3 .5.25Z\" style=\"fill:none;\"/>"
+		+ "<text x=\"10.0\" y=\"20.556\">a&lt;b &amp; é</text>"
+		+ "<image xlink:href=\"x.png\" width=\"1e3\"/>"
+		+ "</g></svg>";
+
+	@Test
+	public void testWriteWithPrecision() throws Exception {
+		SVGElement svgElement = SVGElement.readAndCreateSVG(XMLUtil.parseXML(SVG_STRING));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SVGWriter writer = new SVGWriter(baos);
+		writer.setDecimalPlaces(2);
+		writer.writeDocument(svgElement);
+		writer.close();
+		String output = baos.toString("UTF-8");
+		Assert.assertTrue(output, output.contains("d=\"M1.23 2L3.14 0 0.5 0.25Z\""));
+		Assert.assertTrue(output, output.contains("transform=\"matrix(1,0,0,-1,0,792.1235)\""));
+		Assert.assertTrue(output, output.contains("y=\"20.56\">a&lt;b &amp; &#233;</text>"));
+		Assert.assertTrue(output, output.contains("xlink:href=\"x.png\" width=\"1000\""));
+		Assert.assertEquals(5, writer.getElementCount());
+
+		Document document = new Builder().build(new ByteArrayInputStream(baos.toByteArray()));
+		Element path = (Element) document.query("//*[local-name()='path']").get(0);
+		Assert.assertEquals(SVGConstants.SVG_NAMESPACE, path.getNamespaceURI());
+		Assert.assertEquals("M1.23 2L3.14 0 0.5 0.25Z", path.getAttributeValue("d"));
+		Assert.assertEquals("a<b & é", document.query("//*[local-name()='text']").get(0).getValue());
+		// element is not changed
+		Assert.assertEquals("M1.23456 2.0L3.14159-2.5e-3 .5.25Z",
+				((Element) svgElement.query("//*[local-name()='path']").get(0)).getAttributeValue("d"));
+	}
+
+	@Test
+	public void testUnchangedNumbers() throws Exception {
+		SVGElement svgElement = SVGElement.readAndCreateSVG(XMLUtil.parseXML(SVG_STRING));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SVGWriter writer = new SVGWriter(baos);
+		writer.setIndent(1);
+		writer.writeDocument(svgElement);
+		writer.close();
+		Document document = new Builder().build(new ByteArrayInputStream(baos.toByteArray()));
+		Element path = (Element) document.query("//*[local-name()='path']").get(0);
+		Assert.assertEquals("M1.23456 2.0L3.14159-2.5e-3 .5.25Z", path.getAttributeValue("d"));
+		Assert.assertTrue(baos.toString("UTF-8").contains("\n  <path "));
+	}
+
+	@Test
+	public void testGzipAndWrapped() throws Exception {
+		SVGG g = new SVGG();
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		for (int i = 0; i < 3; i++) {
+			SVGLine line = new SVGLine(new Real2(i, 0.123456), new Real2(i, 10.0));
+			g.appendChild(line);
+			lineList.add(line);
+		}
+		File file = new File("target/svgwriter/lines.svgz");
+		SVGWriter writer = new SVGWriter(file);
+		writer.setDecimalPlaces(3);
+		writer.writeWrapped(lineList, 800., 700.);
+		writer.close();
+		Assert.assertSame("not detached", g, lineList.get(0).getParent());
+
+		InputStream is = new GZIPInputStream(new FileInputStream(file));
+		Document document = new Builder().build(is);
+		is.close();
+		Element root = document.getRootElement();
+		Assert.assertEquals("svg", root.getLocalName());
+		Assert.assertEquals("800", root.getAttributeValue("height"));
+		Element line = (Element) root.query("*[local-name()='g']/*[local-name()='line']").get(2);
+		Assert.assertEquals(SVGConstants.SVG_NAMESPACE, line.getNamespaceURI());
+		Assert.assertEquals("0.123", line.getAttributeValue("y1"));
+	}
+
+	@Test
+	public void testWrapAndWriteWithPrecision() throws Exception {
+		SVGLine line = new SVGLine(new Real2(1.23456, 0.0), new Real2(1.23456, 10.0));
+		File file = new File("target/svgwriter/wrapped.svg");
+		SVGSVG.wrapAndWriteAsSVG(line, file, 800., 700., 2);
+		InputStream is = new FileInputStream(file);
+		Document document = new Builder().build(is);
+		is.close();
+		Element line1 = (Element) document.query("//*[local-name()='line']").get(0);
+		Assert.assertEquals("1.23", line1.getAttributeValue("x1"));
+		Assert.assertEquals("10", line1.getAttributeValue("y2"));
+		Assert.assertEquals("element not formatted", 1.23456, line.getXY(0).getX(), 0.0000001);
+	}
+
+	@Test
+	public void testArcFlags() throws Exception {
+		SVGElement svgElement = SVGElement.readAndCreateSVG(XMLUtil.parseXML(
+			"<svg xmlns=\"http://www.w3.org/2000/svg\">"
+			+ "<path d=\"M0 0A5.123 5 0 0 1 10.126 10a5 5 30 0 011 2.0L1.0 1.0\"/></svg>"));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SVGWriter writer = new SVGWriter(baos);
+		writer.setDecimalPlaces(2);
+		writer.writeDocument(svgElement);
+		writer.close();
+		Document document = new Builder().build(new ByteArrayInputStream(baos.toByteArray()));
+		Element path = (Element) document.query("//*[local-name()='path']").get(0);
+		// flags are copied as single characters; "0 011 2" is large-arc 0, sweep 0, x 11, y 2
+		Assert.assertEquals("M0 0A5.12 5 0 0 1 10.13 10a5 5 30 0 011 2L1 1", path.getAttributeValue("d"));
+	}
+}